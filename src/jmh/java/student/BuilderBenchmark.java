@@ -0,0 +1,56 @@
+package student;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures parsing a single CSV line into an employee or time card.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BuilderBenchmark {
+    /** a typical hourly employee line. */
+    private String hourlyLine = "HOURLY,Luffy,s192,30.00,0,20000,4530";
+
+    /** a typical salary employee line. */
+    private String salaryLine = "SALARY,Misa Amane,x102,150000,500,12000.50,3500.25";
+
+    /** a typical time card line. */
+    private String timeCardLine = "s192,45.5";
+
+    /**
+     * Parses an hourly employee line.
+     *
+     * @return the employee
+     */
+    @Benchmark
+    public IEmployee buildHourlyEmployeeFromCSV() {
+        return Builder.buildEmployeeFromCSV(hourlyLine);
+    }
+
+    /**
+     * Parses a salary employee line.
+     *
+     * @return the employee
+     */
+    @Benchmark
+    public IEmployee buildSalaryEmployeeFromCSV() {
+        return Builder.buildEmployeeFromCSV(salaryLine);
+    }
+
+    /**
+     * Parses a time card line.
+     *
+     * @return the time card
+     */
+    @Benchmark
+    public ITimeCard buildTimeCardFromCSV() {
+        return Builder.buildTimeCardFromCSV(timeCardLine);
+    }
+}
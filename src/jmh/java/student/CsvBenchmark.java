@@ -0,0 +1,70 @@
+package student;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures formatting employees and pay stubs as CSV lines.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CsvBenchmark {
+    /** an hourly employee. */
+    private IEmployee hourly = new HourlyEmployee("Luffy", "s192", 30.00, 20000.00, 4530.00, 0);
+
+    /** a salary employee. */
+    private IEmployee salary =
+            new SalaryEmployee("Nami", "s193", 200000.00, 17017.00, 4983.00, 1000);
+
+    /** a pay stub with two decimal places. */
+    private IPayStub payStub = new PayStub("Luffy", 1102.24, 322.76, 21102.24, 4852.76);
+
+    /** a pay stub with one decimal place. */
+    private IPayStub roundPayStub = new PayStub("Nami", 5672.3, 1661.0, 22689.3, 6644.0);
+
+    /**
+     * Formats an hourly employee.
+     *
+     * @return the CSV line
+     */
+    @Benchmark
+    public String hourlyEmployeeToCSV() {
+        return hourly.toCSV();
+    }
+
+    /**
+     * Formats a salary employee.
+     *
+     * @return the CSV line
+     */
+    @Benchmark
+    public String salaryEmployeeToCSV() {
+        return salary.toCSV();
+    }
+
+    /**
+     * Formats a pay stub.
+     *
+     * @return the CSV line
+     */
+    @Benchmark
+    public String payStubToCSV() {
+        return payStub.toCSV();
+    }
+
+    /**
+     * Formats a pay stub whose amounts print with one decimal place.
+     *
+     * @return the CSV line
+     */
+    @Benchmark
+    public String roundPayStubToCSV() {
+        return roundPayStub.toCSV();
+    }
+}
@@ -0,0 +1,75 @@
+package student;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares paying a table of hourly employees one row at a time with paying it through the
+ * Vector API kernel.
+ *
+ * The table is recreated every iteration so the YTD totals it accumulates stay in a realistic
+ * range.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PayKernelBenchmark {
+    /** rows in the table. */
+    private static final int ROWS = 4096;
+
+    /** the roster. */
+    private EmployeeTable table;
+
+    /** hours worked by each row, a quarter of them with overtime. */
+    private final double[] hours = new double[ROWS];
+
+    /** receives the net pay of each row. */
+    private final long[] netPay = new long[ROWS];
+
+    /** receives the taxes of each row. */
+    private final long[] taxesPaid = new long[ROWS];
+
+    /**
+     * Creates a fresh table.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        Random random = new Random(2265);
+        table = new EmployeeTable(ROWS);
+        for (int row = 0; row < ROWS; row++) {
+            table.addCSV("HOURLY,n" + row + ",id" + row + "," + (15 + random.nextInt(50))
+                    + ".50,25.00,0,0");
+            hours[row] = random.nextInt(4) == 0 ? 45.5 : 40;
+        }
+    }
+
+    /**
+     * Pays the table one row at a time.
+     *
+     * @return the net pay array
+     */
+    @Benchmark
+    public long[] scalar() {
+        table.runPayrollScalar(0, ROWS, hours, netPay, taxesPaid);
+        return netPay;
+    }
+
+    /**
+     * Pays the table with the Vector API kernel.
+     *
+     * @return the net pay array
+     */
+    @Benchmark
+    public long[] vector() {
+        table.runPayrollVector(0, ROWS, hours, netPay, taxesPaid, TaxTable.FLAT.flatRate());
+        return netPay;
+    }
+}
@@ -0,0 +1,67 @@
+package student;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the payroll calculation for each kind of employee.
+ *
+ * The employees are recreated every iteration so the YTD totals they accumulate stay in a
+ * realistic range.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PayrollBenchmark {
+    /** an hourly employee. */
+    private IEmployee hourly;
+
+    /** a salary employee. */
+    private IEmployee salary;
+
+    /**
+     * Creates fresh employees.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        hourly = new HourlyEmployee("Luffy", "s192", 30.00, 20000.00, 4530.00, 0);
+        salary = new SalaryEmployee("Nami", "s193", 200000.00, 17017.00, 4983.00, 1000);
+    }
+
+    /**
+     * Pays an hourly employee with no overtime.
+     *
+     * @return the pay stub
+     */
+    @Benchmark
+    public IPayStub hourlyRunPayrollRegular() {
+        return hourly.runPayroll(40);
+    }
+
+    /**
+     * Pays an hourly employee with overtime.
+     *
+     * @return the pay stub
+     */
+    @Benchmark
+    public IPayStub hourlyRunPayrollOvertime() {
+        return hourly.runPayroll(45.5);
+    }
+
+    /**
+     * Pays a salary employee.
+     *
+     * @return the pay stub
+     */
+    @Benchmark
+    public IPayStub salaryRunPayroll() {
+        return salary.runPayroll(0);
+    }
+}
@@ -0,0 +1,132 @@
+package student;
+
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Runs payroll for many companies in one JVM.
+ *
+ * A batch manifest lists one company per line as employee_file,time_cards_file,payroll_file
+ * (relative paths are relative to the manifest). Each company's payroll runs as a
+ * {@link StreamingPayroll} on its own thread, so one company's reads and writes overlap with
+ * the others'. These are virtual threads when the JVM has them (Java 21 and later) and pooled
+ * platform threads otherwise. The pay calculations of every company share one ForkJoinPool of
+ * a fixed size, so the CPU side stays bounded however many companies are in flight.
+ *
+ * At most {@link #MAX_OPEN_COMPANIES} companies run at once, which bounds open files and write
+ * buffers. A company that fails is reported and doesn't stop the others.
+ */
+public final class BatchPayroll {
+    /** header line of the batch manifest. */
+    static final String MANIFEST_HEADER = "employee_file,time_cards_file,payroll_file";
+
+    /** most companies with files open at the same time. */
+    static final int MAX_OPEN_COMPANIES = 64;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private BatchPayroll() {
+
+    }
+
+    /**
+     * Runs payroll for every company in a batch manifest.
+     *
+     * @param manifestFile the batch manifest
+     * @param workers the number of threads pay is computed on, shared by every company
+     * @return the number of companies that failed
+     */
+    public static int run(String manifestFile, int workers) {
+        List<String[]> companies = readManifest(manifestFile);
+        ForkJoinPool cpu = new ForkJoinPool(workers);
+        ExecutorService io = newIoExecutor();
+        Semaphore open = new Semaphore(MAX_OPEN_COMPANIES);
+        List<String> failures = new ArrayList<>();
+        try {
+            for (String[] company : companies) {
+                open.acquireUninterruptibly();
+                io.execute(() -> {
+                    boolean written = false;
+                    try {
+                        FileUtil.recoverStaged(company[0]);
+                        // an I/O error is printed and reported as false
+                        written = StreamingPayroll.run(company[0], company[1], company[2], cpu,
+                                PayrollMetrics.DISABLED, null);
+                    } catch (RuntimeException e) {
+                        System.err.println("Error running payroll for " + company[0] + ": "
+                                + e.getMessage());
+                    } finally {
+                        if (!written) {
+                            synchronized (failures) {
+                                failures.add(company[0]);
+                            }
+                        }
+                        open.release();
+                    }
+                });
+            }
+            io.shutdown();
+            io.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            io.shutdownNow();
+        } finally {
+            cpu.shutdown();
+        }
+        synchronized (failures) {
+            return failures.size();
+        }
+    }
+
+    /**
+     * Reads the companies from a batch manifest.
+     *
+     * @param manifestFile the batch manifest
+     * @return the employee, time card and payroll file of each company
+     * @throws IllegalArgumentException if a line doesn't have three files
+     */
+    static List<String[]> readManifest(String manifestFile) {
+        Path base = Path.of(manifestFile).toAbsolutePath().getParent();
+        List<String[]> companies = new ArrayList<>();
+        CsvTokenizer fields = new CsvTokenizer();
+        try (Stream<CharSequence> lines = FileUtil.mapLines(manifestFile)) {
+            lines.forEach(line -> {
+                fields.reset(line);
+                if (fields.fieldCount() == 1 && fields.text(0).isEmpty()) {
+                    return; // blank line
+                }
+                if (fields.fieldCount() != 3) {
+                    throw new IllegalArgumentException("Invalid batch manifest record: " + line);
+                }
+                companies.add(new String[] {base.resolve(fields.text(0)).toString(),
+                    base.resolve(fields.text(1)).toString(),
+                    base.resolve(fields.text(2)).toString()});
+            });
+        }
+        return companies;
+    }
+
+    /**
+     * Creates the executor each company's file work runs on: a new virtual thread per company
+     * where the JVM supports them, otherwise a pool of platform threads.
+     *
+     * @return the executor
+     */
+    static ExecutorService newIoExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
@@ -7,6 +7,22 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 public final class Builder {
+    /** result code of a record that can be built. */
+    static final int VALID = 0;
+
+    /** result code of a record with the wrong number of fields. */
+    static final int WRONG_FIELD_COUNT = 1;
+
+    /** result code of an employee record whose type is neither HOURLY nor SALARY. */
+    static final int UNKNOWN_TYPE = 2;
+
+    /** result code of a record with a field that isn't a number; the field index is added. */
+    static final int NOT_A_NUMBER = 16;
+
+    /** a tokenizer for each thread, reused from line to line. */
+    private static final ThreadLocal<CsvTokenizer> TOKENIZER =
+            ThreadLocal.withInitial(CsvTokenizer::new);
+
     // Private constructor to prevent instantiation
     private Builder() {
         throw new UnsupportedOperationException("Utility class");
@@ -36,32 +52,132 @@ public final class Builder {
      * @param csvLine A line from the employees.csv file
      * @return IEmployee object (HourlyEmployee or SalaryEmployee)
      */
-    public static IEmployee buildEmployeeFromCSV(String csvLine) {
-        String[] parts = csvLine.split(",");
+    public static IEmployee buildEmployeeFromCSV(CharSequence csvLine) {
+        return buildEmployee(TOKENIZER.get().reset(csvLine));
+    }
 
-        if (parts.length != 7) {
-            // throw an exception
-            throw new IllegalArgumentException("Invalid employee record: " + csvLine);
-        }
+    /**
+     * Splits a line into fields with this thread's tokenizer, which is reused by the next call.
+     *
+     * @param csvLine the line to split
+     * @return the tokenized line
+     */
+    static CsvTokenizer tokenize(CharSequence csvLine) {
+        return TOKENIZER.get().reset(csvLine);
+    }
 
+    /**
+     * Builds an IEmployee from a tokenized employees.csv line.
+     *
+     * @param fields the tokenized line
+     * @return IEmployee object (HourlyEmployee or SalaryEmployee)
+     */
+    static IEmployee buildEmployee(CsvTokenizer fields) {
         // Extract employee data from CSV line
-        String type = parts[0].trim();
-        String name = parts[1].trim();
-        String id = parts[2].trim();
-        double payRate = Double.parseDouble(parts[3].trim());
-        double pretaxDeductions = Double.parseDouble(parts[4].trim());
-        double ytdEarnings = Double.parseDouble(parts[5].trim());
-        double ytdTaxesPaid = Double.parseDouble(parts[6].trim());
+        boolean hourly = isHourly(fields);
+        String name = fields.text(1);
+        String id = fields.text(2);
+        double payRate = fields.parseDouble(3);
+        double pretaxDeductions = fields.parseDouble(4);
+        double ytdEarnings = fields.parseDouble(5);
+        double ytdTaxesPaid = fields.parseDouble(6);
 
         // Create the appropriate employee type
-        switch (type.toUpperCase()) {
-            case "HOURLY":
-                return new HourlyEmployee(name, id, payRate, ytdEarnings, ytdTaxesPaid, pretaxDeductions);
-            case "SALARY":
-                return new SalaryEmployee(name, id, payRate, ytdEarnings, ytdTaxesPaid, pretaxDeductions);
-            default:
-                throw new IllegalArgumentException("Unknown employee type: " + type);
+        if (hourly) {
+            return new HourlyEmployee(name, id, payRate, ytdEarnings, ytdTaxesPaid, pretaxDeductions);
+        }
+        return new SalaryEmployee(name, id, payRate, ytdEarnings, ytdTaxesPaid, pretaxDeductions);
+    }
+
+    /**
+     * Checks a tokenized employees.csv line has the right number of fields and a known employee
+     * type.
+     *
+     * @param fields the tokenized line
+     * @return true for an HOURLY employee, false for a SALARY employee
+     * @throws IllegalArgumentException if the line is not a valid employee record
+     */
+    static boolean isHourly(CsvTokenizer fields) {
+        if (fields.fieldCount() != 7) {
+            // throw an exception
+            throw new IllegalArgumentException("Invalid employee record: " + fields.line());
+        }
+        if (fields.fieldEqualsIgnoreCase(0, "HOURLY")) {
+            return true;
+        }
+        if (fields.fieldEqualsIgnoreCase(0, "SALARY")) {
+            return false;
+        }
+        throw new IllegalArgumentException("Unknown employee type: " + fields.text(0));
+    }
+
+    /**
+     * Checks a tokenized employees.csv line can be built, without throwing. Valid lines take the
+     * same path every time, so a roster with few bad lines costs little more than the checks in
+     * {@link #buildEmployee}.
+     *
+     * @param fields the tokenized line
+     * @return {@link #VALID}, or the result code saying what is wrong
+     * @see #describe(int, CsvTokenizer)
+     */
+    static int validateEmployee(CsvTokenizer fields) {
+        if (fields.fieldCount() != 7) {
+            return WRONG_FIELD_COUNT;
+        }
+        if (!fields.fieldEqualsIgnoreCase(0, "HOURLY")
+                && !fields.fieldEqualsIgnoreCase(0, "SALARY")) {
+            return UNKNOWN_TYPE;
+        }
+        return validateNumbers(fields, 3, 7);
+    }
+
+    /**
+     * Checks a tokenized time_cards.csv line can be built, without throwing.
+     *
+     * @param fields the tokenized line
+     * @return {@link #VALID}, or the result code saying what is wrong
+     * @see #describe(int, CsvTokenizer)
+     */
+    static int validateTimeCard(CsvTokenizer fields) {
+        if (fields.fieldCount() != 2) {
+            return WRONG_FIELD_COUNT;
+        }
+        return validateNumbers(fields, 1, 2);
+    }
+
+    /**
+     * Explains a result code from {@link #validateEmployee} or {@link #validateTimeCard}.
+     *
+     * @param result the result code, not VALID
+     * @param fields the tokenized line that was checked
+     * @return the reason the line was rejected
+     */
+    static String describe(int result, CsvTokenizer fields) {
+        if (result == WRONG_FIELD_COUNT) {
+            return "Wrong number of fields: " + fields.fieldCount();
         }
+        if (result == UNKNOWN_TYPE) {
+            return "Unknown employee type: " + fields.text(0);
+        }
+        int field = result - NOT_A_NUMBER;
+        return "Not a number in field " + (field + 1) + ": " + fields.text(field);
+    }
+
+    /**
+     * Checks a range of fields are numbers. Every field is checked, and the first bad one is
+     * reported.
+     *
+     * @param fields the tokenized line
+     * @param from the first field, inclusive
+     * @param to the last field, exclusive
+     * @return {@link #VALID}, or NOT_A_NUMBER plus the index of the first bad field
+     */
+    private static int validateNumbers(CsvTokenizer fields, int from, int to) {
+        int bad = 0;
+        for (int field = from; field < to; field++) {
+            bad |= fields.isNumber(field) ? 0 : 1 << field;
+        }
+        return bad == 0 ? VALID : NOT_A_NUMBER + Integer.numberOfTrailingZeros(bad);
     }
 
     /**
@@ -88,19 +204,47 @@ public final class Builder {
      * @param csvLine A line from the time_cards.csv file
      * @return ITimeCard object
      */
-    public static ITimeCard buildTimeCardFromCSV(String csvLine) {
-        String[] parts = csvLine.split(",");
+    public static ITimeCard buildTimeCardFromCSV(CharSequence csvLine) {
+        return buildTimeCard(TOKENIZER.get().reset(csvLine));
+    }
 
+    /**
+     * Builds an ITimeCard from a tokenized time_cards.csv line.
+     *
+     * @param fields the tokenized line
+     * @return ITimeCard object
+     */
+    static ITimeCard buildTimeCard(CsvTokenizer fields) {
+        checkTimeCard(fields);
+
+        // Return a new TimeCard object
+        return new TimeCard(fields.text(0), fields.parseDouble(1));
+    }
+
+    /**
+     * Checks a tokenized time_cards.csv line has the right number of fields.
+     *
+     * @param fields the tokenized line
+     * @throws IllegalArgumentException if the line is not a valid time card record
+     */
+    static void checkTimeCard(CsvTokenizer fields) {
         // Ensure correct CSV format
-        if (parts.length != 2) {
-            throw new IllegalArgumentException("Invalid time card record: " + csvLine);
+        if (fields.fieldCount() != 2) {
+            throw new IllegalArgumentException("Invalid time card record: " + fields.line());
         }
+    }
 
-        // Extract employee ID and hours worked from CSV line
-        String id = parts[0].trim();
-        double hoursWorked = Double.parseDouble(parts[1].trim());
-
-        // Return a new TimeCard object
-        return new TimeCard(id, hoursWorked);
+    /**
+     * Checks a tokenized time card line with a period column (employee_id,hours_worked,period)
+     * has the right number of fields.
+     *
+     * @param fields the tokenized line
+     * @throws IllegalArgumentException if the line is not a valid period time card record
+     */
+    static void checkPeriodTimeCard(CsvTokenizer fields) {
+        if (fields.fieldCount() != 3) {
+            throw new IllegalArgumentException("Invalid period time card record: "
+                    + fields.line());
+        }
     }
 }
@@ -0,0 +1,394 @@
+package student;
+
+import java.util.Arrays;
+
+/**
+ * Splits a CSV line into fields in place.
+ *
+ * The line is scanned once, and each field is recorded as a pair of offsets into it (with the
+ * surrounding whitespace trimmed, like {@link String#trim()}), so no intermediate strings or
+ * arrays are created. Numbers are parsed straight from the characters. Only the fields that are
+ * kept (names and IDs) become strings.
+ *
+ * Fields may be quoted, so a name can contain commas: {@code "Yagami, Light"}. A quote inside a
+ * quoted field is written twice.
+ *
+ * A tokenizer is reused from line to line and is not thread safe.
+ */
+public final class CsvTokenizer {
+    /** the quote character. */
+    private static final char QUOTE = '"';
+
+    /** the field separator. */
+    private static final char SEPARATOR = ',';
+
+    /** most significant digits that are always exact in a double. */
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    /** powers of ten that are exact in a double. */
+    private static final double[] POWERS_OF_TEN = new double[MAX_EXACT_DIGITS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /** the current line. */
+    private CharSequence line;
+
+    /** the start offset of each field, inside the quotes if it is quoted. */
+    private int[] starts = new int[8];
+
+    /** the end offset (exclusive) of each field, inside the quotes if it is quoted. */
+    private int[] ends = new int[8];
+
+    /** whether each field was quoted and contains a doubled quote. */
+    private boolean[] escaped = new boolean[8];
+
+    /** the number of fields in the current line. */
+    private int count;
+
+    /**
+     * Splits a line into fields, replacing the previous line.
+     *
+     * Like {@code String.split(",")}, trailing fields with nothing at all between their
+     * separators are dropped, so "s192,45," has two fields. A line without a separator is
+     * always one field, even when it is empty.
+     *
+     * @param csvLine the line to split
+     * @return this tokenizer
+     */
+    public CsvTokenizer reset(CharSequence csvLine) {
+        this.line = csvLine;
+        this.count = 0;
+        int length = csvLine.length();
+        int pos = 0;
+        int kept = 0; // fields up to the last one with any characters
+        while (true) {
+            int fieldStart = pos;
+            pos = skipWhitespace(pos, length);
+            if (pos < length && csvLine.charAt(pos) == QUOTE) {
+                pos = readQuoted(pos + 1, length);
+            } else {
+                pos = readPlain(pos, length);
+            }
+            if (pos > fieldStart) {
+                kept = count;
+            }
+            if (pos >= length) {
+                if (count > 1) { // there was a separator
+                    count = kept;
+                }
+                return this;
+            }
+            pos++; // step over the separator
+        }
+    }
+
+    /**
+     * Gets the number of fields in the current line.
+     *
+     * @return the number of fields
+     */
+    public int fieldCount() {
+        return count;
+    }
+
+    /**
+     * Gets the current line.
+     *
+     * @return the line passed to {@link #reset}
+     */
+    public CharSequence line() {
+        return line;
+    }
+
+    /**
+     * Gets a field as a string, with any quoting removed.
+     *
+     * @param field the field index
+     * @return the field text
+     */
+    public String text(int field) {
+        String text = line.subSequence(starts[field], ends[field]).toString();
+        return escaped[field] ? text.replace("\"\"", "\"") : text;
+    }
+
+    /**
+     * Checks if a field equals the given text, ignoring case.
+     *
+     * @param field the field index
+     * @param text the text to compare to
+     * @return true if the field matches
+     */
+    public boolean fieldEqualsIgnoreCase(int field, String text) {
+        int start = starts[field];
+        if (ends[field] - start != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char a = line.charAt(start + i);
+            char b = text.charAt(i);
+            if (a != b && Character.toUpperCase(a) != Character.toUpperCase(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses a field as a double, giving the same result as {@link Double#parseDouble}.
+     *
+     * Plain decimals with up to 15 significant digits are converted directly from the
+     * characters; anything else is handed to Double.parseDouble.
+     *
+     * @param field the field index
+     * @return the parsed value
+     * @throws NumberFormatException if the field is not a number
+     */
+    public double parseDouble(int field) {
+        double value = parseDecimal(starts[field], ends[field]);
+        if (Double.isNaN(value)) {
+            return Double.parseDouble(text(field));
+        }
+        return value;
+    }
+
+    /**
+     * Checks if a field can be parsed by {@link #parseDouble} without throwing.
+     *
+     * Plain decimals are recognized on the same path parseDouble takes. Anything else is checked
+     * against the decimal syntax of Double.parseDouble: a sign, digits with an optional fraction
+     * and exponent, or NaN or Infinity, and an optional float or double suffix. Hexadecimal
+     * floating point is not accepted.
+     *
+     * @param field the field index
+     * @return true if the field is a number
+     */
+    public boolean isNumber(int field) {
+        int start = starts[field];
+        int end = ends[field];
+        return !Double.isNaN(parseDecimal(start, end)) || isDecimalSyntax(start, end);
+    }
+
+    /**
+     * Appends a value as a CSV field, quoting it if it contains a separator or quote.
+     *
+     * @param csv the builder to append to
+     * @param value the field value
+     * @return the builder
+     */
+    public static StringBuilder appendField(StringBuilder csv, String value) {
+        if (value.indexOf(SEPARATOR) < 0 && value.indexOf(QUOTE) < 0) {
+            return csv.append(value);
+        }
+        return csv.append(QUOTE).append(value.replace("\"", "\"\"")).append(QUOTE);
+    }
+
+    /**
+     * Parses a plain decimal: an optional sign, digits and an optional decimal point.
+     *
+     * Both the digits (as a long under 2^53) and the power of ten are exact doubles, so the one
+     * division is correctly rounded, the same as Double.parseDouble.
+     *
+     * @param start the start offset
+     * @param end the end offset, exclusive
+     * @return the value, or NaN if it isn't a plain decimal that can be converted exactly
+     */
+    private double parseDecimal(int start, int end) {
+        int pos = start;
+        boolean negative = false;
+        if (pos < end && (line.charAt(pos) == '-' || line.charAt(pos) == '+')) {
+            negative = line.charAt(pos) == '-';
+            pos++;
+        }
+        long digits = 0;
+        int digitCount = 0;
+        int fractionDigits = -1;
+        boolean sawDigit = false;
+        for (; pos < end; pos++) {
+            char c = line.charAt(pos);
+            if (c >= '0' && c <= '9') {
+                sawDigit = true;
+                if (digits == 0 && c == '0' && fractionDigits < 0) {
+                    continue; // leading zeros don't count towards the precision
+                }
+                digits = digits * 10 + (c - '0');
+                digitCount++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (!sawDigit || digitCount > MAX_EXACT_DIGITS) {
+            return Double.NaN;
+        }
+        double value = fractionDigits > 0 ? digits / POWERS_OF_TEN[fractionDigits] : digits;
+        return negative ? -value : value;
+    }
+
+    /**
+     * Checks text against the decimal syntax accepted by Double.parseDouble.
+     *
+     * @param start the start offset
+     * @param end the end offset, exclusive
+     * @return true if Double.parseDouble would parse the text
+     */
+    private boolean isDecimalSyntax(int start, int end) {
+        int pos = start;
+        if (pos < end && (line.charAt(pos) == '-' || line.charAt(pos) == '+')) {
+            pos++;
+        }
+        if (regionEquals(pos, end, "NaN") || regionEquals(pos, end, "Infinity")) {
+            return true;
+        }
+        int digitsEnd = skipDigits(pos, end);
+        int mantissaDigits = digitsEnd - pos;
+        pos = digitsEnd;
+        if (pos < end && line.charAt(pos) == '.') {
+            digitsEnd = skipDigits(pos + 1, end);
+            mantissaDigits += digitsEnd - pos - 1;
+            pos = digitsEnd;
+        }
+        if (mantissaDigits == 0) {
+            return false;
+        }
+        if (pos < end && (line.charAt(pos) == 'e' || line.charAt(pos) == 'E')) {
+            pos++;
+            if (pos < end && (line.charAt(pos) == '-' || line.charAt(pos) == '+')) {
+                pos++;
+            }
+            digitsEnd = skipDigits(pos, end);
+            if (digitsEnd == pos) {
+                return false;
+            }
+            pos = digitsEnd;
+        }
+        if (pos < end && "fFdD".indexOf(line.charAt(pos)) >= 0) {
+            pos++;
+        }
+        return pos == end;
+    }
+
+    /**
+     * Skips over decimal digits.
+     *
+     * @param pos the first character to check
+     * @param end the end offset, exclusive
+     * @return the offset of the first character that isn't a digit, or end
+     */
+    private int skipDigits(int pos, int end) {
+        while (pos < end && line.charAt(pos) >= '0' && line.charAt(pos) <= '9') {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Checks if the text from pos to end is exactly the given text.
+     *
+     * @param pos the start offset
+     * @param end the end offset, exclusive
+     * @param text the text to compare to
+     * @return true if it matches
+     */
+    private boolean regionEquals(int pos, int end, String text) {
+        if (end - pos != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (line.charAt(pos + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads an unquoted field, trimming trailing whitespace.
+     *
+     * @param pos the first character of the field
+     * @param length the line length
+     * @return the offset of the separator, or the line length
+     */
+    private int readPlain(int pos, int length) {
+        int start = pos;
+        while (pos < length && line.charAt(pos) != SEPARATOR) {
+            pos++;
+        }
+        int end = pos;
+        while (end > start && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        addField(start, end, false);
+        return pos;
+    }
+
+    /**
+     * Reads a quoted field up to its closing quote and the next separator.
+     *
+     * @param pos the first character after the opening quote
+     * @param length the line length
+     * @return the offset of the separator, or the line length
+     */
+    private int readQuoted(int pos, int length) {
+        int start = pos;
+        boolean hasEscape = false;
+        while (pos < length) {
+            if (line.charAt(pos) == QUOTE) {
+                if (pos + 1 < length && line.charAt(pos + 1) == QUOTE) {
+                    hasEscape = true;
+                    pos += 2;
+                    continue;
+                }
+                break;
+            }
+            pos++;
+        }
+        addField(start, pos, hasEscape);
+        // anything between the closing quote and the separator is ignored
+        while (pos < length && line.charAt(pos) != SEPARATOR) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Skips leading whitespace.
+     *
+     * @param pos the offset to start at
+     * @param length the line length
+     * @return the offset of the first non whitespace character
+     */
+    private int skipWhitespace(int pos, int length) {
+        while (pos < length && line.charAt(pos) <= ' ') {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Records a field, growing the offset arrays if needed.
+     *
+     * @param start the start offset
+     * @param end the end offset, exclusive
+     * @param hasEscape whether the field contains a doubled quote
+     */
+    private void addField(int start, int end, boolean hasEscape) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+            escaped = Arrays.copyOf(escaped, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        escaped[count] = hasEscape;
+        count++;
+    }
+}
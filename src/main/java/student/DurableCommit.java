@@ -0,0 +1,228 @@
+package student;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Replaces a set of output files with their staged versions as one unit, so a crash at any point
+ * leaves either every old file or every new one.
+ *
+ * The protocol, for staged files written next to their targets:
+ *
+ * <ol>
+ * <li>Every staged file is fsynced, in parallel on the background writer threads.</li>
+ * <li>A commit marker listing the targets is written beside the first target, fsynced, and
+ * atomically renamed into place. From here on the commit has happened.</li>
+ * <li>Each target is hard linked (or copied) to its .bak, and its staged file is atomically
+ * renamed over it, so the target is never missing.</li>
+ * <li>The directory is fsynced and the marker deleted.</li>
+ * </ol>
+ *
+ * If the process dies after step 2, {@link #recover} finishes the renames the next time the
+ * first target is used. If it dies before, the old files are untouched and the staged files are
+ * simply overwritten by the next run.
+ */
+final class DurableCommit {
+    /** suffix of the commit marker, added to the first target's name. */
+    static final String MARKER_SUFFIX = ".commit";
+
+    /** suffix of the backup of a replaced target. */
+    static final String BACKUP_SUFFIX = ".bak";
+
+    /** threads that write staged files behind the caller and sync them at commit. */
+    static final ExecutorService BACKGROUND = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "payroll-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private DurableCommit() {
+
+    }
+
+    /**
+     * Replaces each target with its staged file, all or none.
+     *
+     * @param targets the files to replace; the marker is kept beside the first
+     * @param backup if true, the old version of each target is kept as its .bak
+     * @throws IOException if the commit can't be completed; if the marker was written, the
+     *         commit is finished by {@link #recover}
+     */
+    static void commit(List<Path> targets, boolean backup) throws IOException {
+        List<Future<?>> syncs = new ArrayList<>(targets.size());
+        for (Path target : targets) {
+            Path staged = staged(target);
+            syncs.add(BACKGROUND.submit(() -> {
+                sync(staged);
+                return null;
+            }));
+        }
+        for (Future<?> sync : syncs) {
+            await(sync);
+        }
+
+        Path marker = marker(targets.get(0));
+        Path markerStaged = staged(marker);
+        StringBuilder lines = new StringBuilder();
+        for (Path target : targets) {
+            lines.append(target.toAbsolutePath()).append('\n');
+        }
+        lines.append(backup).append('\n');
+        Files.write(markerStaged, lines.toString().getBytes(StandardCharsets.UTF_8));
+        sync(markerStaged);
+        Files.move(markerStaged, marker, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(marker);
+
+        install(targets, backup);
+        Files.delete(marker);
+        syncDirectory(marker);
+    }
+
+    /**
+     * Finishes a commit that was interrupted after its marker was written. Does nothing if
+     * there is no marker beside the file.
+     *
+     * @param firstTarget the first target of the commit
+     * @return true if an interrupted commit was finished
+     * @throws IOException if the commit still can't be finished
+     */
+    static boolean recover(Path firstTarget) throws IOException {
+        Path marker = marker(firstTarget);
+        if (!Files.exists(marker)) {
+            return false;
+        }
+        List<String> lines = Files.readAllLines(marker, StandardCharsets.UTF_8);
+        List<Path> targets = new ArrayList<>();
+        for (String line : lines.subList(0, lines.size() - 1)) {
+            targets.add(Path.of(line));
+        }
+        install(targets, Boolean.parseBoolean(lines.get(lines.size() - 1)));
+        Files.delete(marker);
+        syncDirectory(marker);
+        return true;
+    }
+
+    /**
+     * Renames every staged file that is still there over its target.
+     *
+     * @param targets the files to replace
+     * @param backup if true, the old version of each target is kept as its .bak
+     * @throws IOException if a file can't be renamed
+     */
+    private static void install(List<Path> targets, boolean backup) throws IOException {
+        for (Path target : targets) {
+            Path staged = staged(target);
+            if (!Files.exists(staged)) {
+                continue; // installed before an interruption
+            }
+            if (backup && Files.exists(target)) {
+                backUp(target);
+            }
+            Files.move(staged, target, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(target);
+        }
+    }
+
+    /**
+     * Points the target's .bak at its current contents without moving the target itself. A hard
+     * link is used where the file system has them, otherwise the file is copied.
+     *
+     * @param target the file to back up
+     * @throws IOException if the backup can't be made
+     */
+    private static void backUp(Path target) throws IOException {
+        Path backup = Path.of(target + BACKUP_SUFFIX);
+        Path backupStaged = staged(backup);
+        Files.deleteIfExists(backupStaged);
+        try {
+            Files.createLink(backupStaged, target);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(target, backupStaged, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(backupStaged, backup, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Forces a file's contents to disk.
+     *
+     * @param file the file
+     * @throws IOException if the file can't be synced
+     */
+    private static void sync(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Forces the directory holding a file to disk, so renames in it survive a crash. Some
+     * platforms can't open a directory, in which case this does nothing.
+     *
+     * @param file a file in the directory
+     */
+    private static void syncDirectory(Path file) {
+        Path directory = file.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not supported here, e.g. on Windows
+        }
+    }
+
+    /**
+     * Waits for background work to finish.
+     *
+     * @param future the work
+     * @throws IOException if the work failed or the wait was interrupted
+     */
+    static void await(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a write");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Gets the staged file of a target.
+     *
+     * @param target the target
+     * @return the staged file beside it
+     */
+    private static Path staged(Path target) {
+        return Path.of(target + FileUtil.STAGED_SUFFIX);
+    }
+
+    /**
+     * Gets the commit marker kept beside a target.
+     *
+     * @param target the first target of a commit
+     * @return the marker file
+     */
+    private static Path marker(Path target) {
+        return Path.of(target + MARKER_SUFFIX);
+    }
+}
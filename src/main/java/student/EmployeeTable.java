@@ -0,0 +1,546 @@
+package student;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * A roster of employees stored by column instead of as one object per employee.
+ *
+ * Type, pay rate, pretax deductions and YTD totals (in cents) are held in parallel primitive
+ * arrays indexed by row, and names and IDs are packed into {@link StringPool}s. Payroll for a
+ * range of rows is then a single loop over the arrays, which is far kinder to the cache than
+ * following a reference to each employee, and allocates nothing per row.
+ *
+ * Existing callers can still work through {@link IEmployee} with {@link #view(int)}, which
+ * reads and updates the row in place.
+ *
+ * A table is not thread safe while rows are being added. Once loaded, payroll can run on
+ * disjoint row ranges from different threads.
+ */
+public final class EmployeeTable {
+    /** marks a row that was not paid (no time card, or negative hours). */
+    public static final long NO_PAY = Long.MIN_VALUE;
+
+    /** type code for an hourly employee. */
+    static final byte HOURLY = 0;
+
+    /** type code for a salary employee. */
+    static final byte SALARY = 1;
+
+    /**
+     * whether hourly rows are paid with {@link VectorPayKernel}: the jdk.incubator.vector module
+     * has to be added to the JVM, and -Dstudent.vector=false turns it off.
+     */
+    static final boolean VECTOR_KERNEL =
+            Boolean.parseBoolean(System.getProperty("student.vector", "true"))
+                    && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    /** the type of each employee, {@link #HOURLY} or {@link #SALARY}. */
+    private byte[] types;
+
+    /** the pay rate of each employee. */
+    private double[] payRates;
+
+    /** the pretax deductions of each employee. */
+    private double[] pretaxDeductions;
+
+    /** the pay rate of each employee as a scaled long, or Money.INEXACT. */
+    private long[] scaledRates;
+
+    /** the pretax deductions of each employee as a scaled long, or Money.INEXACT. */
+    private long[] scaledDeductions;
+
+    /** the YTD earnings of each employee, in cents. */
+    private long[] ytdEarnings;
+
+    /** the YTD taxes paid by each employee, in cents. */
+    private long[] ytdTaxesPaid;
+
+    /** the name of each employee. */
+    private final StringPool names;
+
+    /** the ID of each employee. */
+    private final StringPool ids;
+
+    /** number of rows. */
+    private int size;
+
+    /** tokenizer used when adding rows from CSV. */
+    private final CsvTokenizer tokenizer = new CsvTokenizer();
+
+    /**
+     * Creates an empty table.
+     *
+     * @param capacity the number of rows to make room for
+     */
+    public EmployeeTable(int capacity) {
+        capacity = Math.max(1, capacity);
+        types = new byte[capacity];
+        payRates = new double[capacity];
+        pretaxDeductions = new double[capacity];
+        scaledRates = new long[capacity];
+        scaledDeductions = new long[capacity];
+        ytdEarnings = new long[capacity];
+        ytdTaxesPaid = new long[capacity];
+        names = new StringPool(capacity);
+        ids = new StringPool(capacity);
+    }
+
+    /**
+     * Creates a table from its columns, used when loading a saved table.
+     *
+     * @param types the type of each employee
+     * @param payRates the pay rate of each employee
+     * @param pretaxDeductions the pretax deductions of each employee
+     * @param ytdEarnings the YTD earnings of each employee, in cents
+     * @param ytdTaxesPaid the YTD taxes paid by each employee, in cents
+     * @param names the name of each employee
+     * @param ids the ID of each employee
+     */
+    EmployeeTable(byte[] types, double[] payRates, double[] pretaxDeductions,
+            long[] ytdEarnings, long[] ytdTaxesPaid, StringPool names, StringPool ids) {
+        this.size = types.length;
+        this.types = types;
+        this.payRates = payRates;
+        this.pretaxDeductions = pretaxDeductions;
+        this.ytdEarnings = ytdEarnings;
+        this.ytdTaxesPaid = ytdTaxesPaid;
+        this.names = names;
+        this.ids = ids;
+        this.scaledRates = new long[size];
+        this.scaledDeductions = new long[size];
+        for (int row = 0; row < size; row++) {
+            scaledRates[row] = Money.toScaled(payRates[row]);
+            scaledDeductions[row] = Money.toScaled(pretaxDeductions[row]);
+        }
+    }
+
+    /**
+     * Reads an employees.csv file into a table.
+     *
+     * @param employeeFile the employee file
+     * @return the table, empty if the file can't be read
+     */
+    public static EmployeeTable read(String employeeFile) {
+        EmployeeTable table = new EmployeeTable(1024);
+        try (Stream<CharSequence> lines = FileUtil.mapLines(employeeFile)) {
+            lines.forEach(table::addCSV);
+        }
+        return table;
+    }
+
+    /**
+     * Gets the number of rows.
+     *
+     * @return the number of employees
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds an employee.
+     *
+     * @param employee the employee to copy into the table
+     * @return the row of the new employee
+     */
+    public int add(IEmployee employee) {
+        return add("HOURLY".equals(employee.getEmployeeType()), employee.getName(),
+                employee.getID(), employee.getPayRate(), employee.getPretaxDeductions(),
+                Money.toCents(employee.getYTDEarnings()),
+                Money.toCents(employee.getYTDTaxesPaid()));
+    }
+
+    /**
+     * Adds an employee from an employees.csv line.
+     *
+     * @param csvLine a line from the employees.csv file
+     * @return the row of the new employee
+     * @throws IllegalArgumentException if the line is not a valid employee record
+     */
+    public int addCSV(CharSequence csvLine) {
+        CsvTokenizer fields = tokenizer.reset(csvLine);
+        boolean hourly = Builder.isHourly(fields);
+        return add(hourly, fields.text(1), fields.text(2), fields.parseDouble(3),
+                fields.parseDouble(4), Money.toCents(fields.parseDouble(5)),
+                Money.toCents(fields.parseDouble(6)));
+    }
+
+    /**
+     * Runs payroll for the rows [from, to).
+     *
+     * hoursWorked, netPay and taxesPaid are indexed by row. Rows with negative or NaN hours
+     * (NaN meaning no time card) are skipped, and get {@link #NO_PAY} for their pay and taxes.
+     * The YTD totals of every paid row are updated.
+     *
+     * @param from the first row, inclusive
+     * @param to the last row, exclusive
+     * @param hoursWorked the hours worked by each row
+     * @param netPay receives the net pay of each row, in cents
+     * @param taxesPaid receives the taxes of each row, in cents
+     */
+    public void runPayroll(int from, int to, double[] hoursWorked, long[] netPay,
+            long[] taxesPaid) {
+        long taxRate = TaxTable.active().flatRate();
+        if (VECTOR_KERNEL && taxRate >= 0 && taxRate <= Money.powerOfTen(Money.SCALE)) {
+            runPayrollVector(from, to, hoursWorked, netPay, taxesPaid, taxRate);
+        } else {
+            runPayrollScalar(from, to, hoursWorked, netPay, taxesPaid);
+        }
+    }
+
+    /**
+     * Same as {@link #runPayroll}, paying one row at a time.
+     *
+     * @param from the first row, inclusive
+     * @param to the last row, exclusive
+     * @param hoursWorked the hours worked by each row
+     * @param netPay receives the net pay of each row, in cents
+     * @param taxesPaid receives the taxes of each row, in cents
+     */
+    void runPayrollScalar(int from, int to, double[] hoursWorked, long[] netPay,
+            long[] taxesPaid) {
+        for (int row = from; row < to; row++) {
+            double hours = hoursWorked[row];
+            if (hours >= 0) {
+                payRow(row, hours, netPay, taxesPaid, row);
+            } else {
+                netPay[row] = NO_PAY;
+                taxesPaid[row] = NO_PAY;
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #runPayroll}, with the hourly rows paid by {@link VectorPayKernel} and the
+     * rows it leaves paid one at a time.
+     *
+     * @param from the first row, inclusive
+     * @param to the last row, exclusive
+     * @param hoursWorked the hours worked by each row
+     * @param netPay receives the net pay of each row, in cents
+     * @param taxesPaid receives the taxes of each row, in cents
+     * @param taxRate the flat tax rate of the active table
+     */
+    void runPayrollVector(int from, int to, double[] hoursWorked, long[] netPay,
+            long[] taxesPaid, long taxRate) {
+        VectorPayKernel.payHourly(types, scaledRates, scaledDeductions, hoursWorked, from, to,
+                taxRate, netPay, taxesPaid);
+        for (int row = from; row < to; row++) {
+            long pay = netPay[row];
+            if (pay == VectorPayKernel.SCALAR) {
+                double hours = hoursWorked[row];
+                if (hours >= 0) {
+                    payRow(row, hours, netPay, taxesPaid, row);
+                } else {
+                    netPay[row] = NO_PAY;
+                    taxesPaid[row] = NO_PAY;
+                }
+            } else if (pay != NO_PAY) {
+                ytdEarnings[row] += pay;
+                ytdTaxesPaid[row] += taxesPaid[row];
+            }
+        }
+    }
+
+    /**
+     * Gets an IEmployee that reads and updates a row of this table.
+     *
+     * @param row the row
+     * @return a view of the row
+     */
+    public IEmployee view(int row) {
+        return new RowView(row);
+    }
+
+    /**
+     * Gets the ID of a row.
+     *
+     * @param row the row
+     * @return the employee ID
+     */
+    public String getID(int row) {
+        return ids.get(row);
+    }
+
+    /**
+     * Gets the name of a row.
+     *
+     * @param row the row
+     * @return the employee name
+     */
+    public String getName(int row) {
+        return names.get(row);
+    }
+
+    /**
+     * Creates a pay stub for a row that was just paid, with its current YTD totals.
+     *
+     * @param row the row
+     * @param netPay the net pay, in cents
+     * @param taxesPaid the taxes, in cents
+     * @return the pay stub
+     */
+    public PayStub payStub(int row, long netPay, long taxesPaid) {
+        return PayStub.ofCents(names.get(row), netPay, taxesPaid, ytdEarnings[row],
+                ytdTaxesPaid[row]);
+    }
+
+    /**
+     * Formats a row as an employees.csv line, the same as {@link IEmployee#toCSV()}.
+     *
+     * @param row the row
+     * @return the CSV line
+     */
+    public String toCSV(int row) {
+        StringBuilder csv = new StringBuilder(64).append(typeName(row)).append(',');
+        CsvTokenizer.appendField(csv, names.get(row)).append(',');
+        CsvTokenizer.appendField(csv, ids.get(row)).append(',');
+        Money.appendCents(csv, Money.toCents(payRates[row])).append(',');
+        Money.appendCents(csv, Money.toCents(pretaxDeductions[row])).append(',');
+        Money.appendCents(csv, ytdEarnings[row]).append(',');
+        return Money.appendCents(csv, ytdTaxesPaid[row]).toString();
+    }
+
+    /**
+     * Gets the type codes column.
+     *
+     * @return the type of each row; only the first {@link #size()} are used
+     */
+    byte[] types() {
+        return types;
+    }
+
+    /**
+     * Gets the pay rate column.
+     *
+     * @return the pay rate of each row; only the first {@link #size()} are used
+     */
+    double[] payRates() {
+        return payRates;
+    }
+
+    /**
+     * Gets the pretax deductions column.
+     *
+     * @return the deductions of each row; only the first {@link #size()} are used
+     */
+    double[] pretaxDeductions() {
+        return pretaxDeductions;
+    }
+
+    /**
+     * Gets the scaled pay rate column.
+     *
+     * @return the scaled pay rate of each row, or Money.INEXACT
+     */
+    long[] scaledRates() {
+        return scaledRates;
+    }
+
+    /**
+     * Gets the scaled pretax deductions column.
+     *
+     * @return the scaled deductions of each row, or Money.INEXACT
+     */
+    long[] scaledDeductions() {
+        return scaledDeductions;
+    }
+
+    /**
+     * Gets the YTD earnings column.
+     *
+     * @return the YTD earnings of each row in cents; only the first {@link #size()} are used
+     */
+    long[] ytdEarnings() {
+        return ytdEarnings;
+    }
+
+    /**
+     * Gets the YTD taxes column.
+     *
+     * @return the YTD taxes of each row in cents; only the first {@link #size()} are used
+     */
+    long[] ytdTaxesPaid() {
+        return ytdTaxesPaid;
+    }
+
+    /**
+     * Gets the names column.
+     *
+     * @return the names pool
+     */
+    StringPool names() {
+        return names;
+    }
+
+    /**
+     * Gets the IDs column.
+     *
+     * @return the IDs pool
+     */
+    StringPool ids() {
+        return ids;
+    }
+
+    /**
+     * Adds a row.
+     *
+     * @param hourly true for an hourly employee, false for salary
+     * @param name the employee's name
+     * @param id the employee's ID
+     * @param payRate the pay rate
+     * @param deductions the pretax deductions
+     * @param ytdEarningsCents the YTD earnings, in cents
+     * @param ytdTaxesCents the YTD taxes paid, in cents
+     * @return the new row
+     */
+    private int add(boolean hourly, String name, String id, double payRate, double deductions,
+            long ytdEarningsCents, long ytdTaxesCents) {
+        if (size == types.length) {
+            grow();
+        }
+        int row = size++;
+        types[row] = hourly ? HOURLY : SALARY;
+        payRates[row] = payRate;
+        pretaxDeductions[row] = deductions;
+        scaledRates[row] = Money.toScaled(payRate);
+        scaledDeductions[row] = Money.toScaled(deductions);
+        ytdEarnings[row] = ytdEarningsCents;
+        ytdTaxesPaid[row] = ytdTaxesCents;
+        names.add(name);
+        ids.add(id);
+        return row;
+    }
+
+    /**
+     * Doubles the capacity of every column.
+     */
+    private void grow() {
+        int capacity = Math.max(16, types.length * 2);
+        types = Arrays.copyOf(types, capacity);
+        payRates = Arrays.copyOf(payRates, capacity);
+        pretaxDeductions = Arrays.copyOf(pretaxDeductions, capacity);
+        scaledRates = Arrays.copyOf(scaledRates, capacity);
+        scaledDeductions = Arrays.copyOf(scaledDeductions, capacity);
+        ytdEarnings = Arrays.copyOf(ytdEarnings, capacity);
+        ytdTaxesPaid = Arrays.copyOf(ytdTaxesPaid, capacity);
+    }
+
+    /**
+     * Gets the type name of a row.
+     *
+     * @param row the row
+     * @return "HOURLY" or "SALARY"
+     */
+    private String typeName(int row) {
+        return types[row] == HOURLY ? "HOURLY" : "SALARY";
+    }
+
+    /**
+     * Pays a single row and adds the pay to its YTD totals.
+     *
+     * @param row the row
+     * @param hours the hours worked, not negative
+     * @param netPay receives the net pay, in cents
+     * @param taxesPaid receives the taxes, in cents
+     * @param out the index to store the results at
+     */
+    private void payRow(int row, double hours, long[] netPay, long[] taxesPaid, int out) {
+        if (types[row] == SALARY) {
+            SalaryPayCache.Entry pay =
+                    SalaryPayCache.SHARED.pay(payRates[row], pretaxDeductions[row]);
+            ytdEarnings[row] += pay.netPay;
+            ytdTaxesPaid[row] += pay.taxes;
+            netPay[out] = pay.netPay;
+            taxesPaid[out] = pay.taxes;
+            return;
+        }
+        long netBeforeTax =
+                Money.hourlyNetBeforeTaxScaled(scaledRates[row], hours, scaledDeductions[row]);
+        long taxes;
+        long finalNetPay;
+        if (netBeforeTax != Money.INEXACT) {
+            taxes = Money.taxCents(netBeforeTax, Money.HOURLY_SCALE);
+            finalNetPay = Money.netCents(netBeforeTax, Money.HOURLY_SCALE);
+        } else {
+            BigDecimal exact =
+                    Money.hourlyNetBeforeTaxExact(payRates[row], hours, pretaxDeductions[row]);
+            taxes = Money.taxCents(exact);
+            finalNetPay = Money.netCents(exact);
+        }
+        ytdEarnings[row] += finalNetPay;
+        ytdTaxesPaid[row] += taxes;
+        netPay[out] = finalNetPay;
+        taxesPaid[out] = taxes;
+    }
+
+    /**
+     * An IEmployee backed by a row of the table.
+     */
+    private final class RowView implements IEmployee {
+        /** the row. */
+        private final int row;
+
+        /**
+         * Creates a view.
+         *
+         * @param row the row
+         */
+        RowView(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public String getName() {
+            return names.get(row);
+        }
+
+        @Override
+        public String getID() {
+            return ids.get(row);
+        }
+
+        @Override
+        public double getPayRate() {
+            return payRates[row];
+        }
+
+        @Override
+        public String getEmployeeType() {
+            return typeName(row);
+        }
+
+        @Override
+        public double getYTDEarnings() {
+            return Money.toDouble(ytdEarnings[row]);
+        }
+
+        @Override
+        public double getYTDTaxesPaid() {
+            return Money.toDouble(ytdTaxesPaid[row]);
+        }
+
+        @Override
+        public double getPretaxDeductions() {
+            return pretaxDeductions[row];
+        }
+
+        @Override
+        public IPayStub runPayroll(double hoursWorked) {
+            if (hoursWorked < 0) {
+                return null;
+            }
+            long[] netPay = new long[1];
+            long[] taxesPaid = new long[1];
+            payRow(row, hoursWorked, netPay, taxesPaid, 0);
+            return payStub(row, netPay[0], taxesPaid[0]);
+        }
+
+        @Override
+        public String toCSV() {
+            return EmployeeTable.this.toCSV(row);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package student;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts records that may not fit in memory.
+ *
+ * Records are collected in memory until their estimated size passes the memory budget, then
+ * sorted and spilled to a run file on disk. Reading the result merges every run (and whatever is
+ * still in memory) through a priority queue, one record per run at a time, so the heap holds
+ * about one budget's worth of records no matter how many are sorted.
+ *
+ * Records are ordered by key, then by sequence number, so records with the same key keep the
+ * order they were added in if their sequence numbers increase.
+ */
+final class ExternalSorter implements Closeable {
+    /** estimated heap cost of a record beyond its characters. */
+    private static final int RECORD_OVERHEAD = 96;
+
+    /** smallest read buffer for each run while merging. */
+    private static final int MIN_RUN_BUFFER = 4096;
+
+    /** largest read buffer for each run while merging. */
+    private static final int MAX_RUN_BUFFER = 1 << 20;
+
+    /** the order records are sorted in. */
+    private static final Comparator<Record> ORDER =
+            Comparator.comparing((Record r) -> r.key).thenComparingLong(r -> r.seq);
+
+    /** directory the run files are written to. */
+    private final Path spillDir;
+
+    /** estimated bytes of records to hold before spilling. */
+    private final long memoryBudget;
+
+    /** records not spilled yet. */
+    private List<Record> buffer = new ArrayList<>();
+
+    /** estimated bytes of the records in buffer. */
+    private long buffered;
+
+    /** the run files written so far. */
+    private final List<Path> runs = new ArrayList<>();
+
+    /** the open run readers while merging. */
+    private final List<DataInputStream> readers = new ArrayList<>();
+
+    /**
+     * Creates a sorter.
+     *
+     * @param spillDir the directory to write run files to
+     * @param memoryBudget estimated bytes of records to hold in memory before spilling
+     */
+    ExternalSorter(Path spillDir, long memoryBudget) {
+        this.spillDir = spillDir;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Adds a record, spilling a sorted run to disk if the budget is used up.
+     *
+     * @param key the sort key
+     * @param seq the sequence number, which orders records with equal keys
+     * @param payload the record data
+     * @throws IOException if a run can't be written
+     */
+    void add(String key, long seq, String payload) throws IOException {
+        buffer.add(new Record(key, seq, payload));
+        buffered += 2L * (key.length() + payload.length()) + RECORD_OVERHEAD;
+        if (buffered >= memoryBudget) {
+            spill();
+        }
+    }
+
+    /**
+     * Gets the number of runs spilled to disk.
+     *
+     * @return the number of run files
+     */
+    int runCount() {
+        return runs.size();
+    }
+
+    /**
+     * Gets every record added, in order. No more records can be added.
+     *
+     * @return an iterator over the sorted records
+     * @throws IOException if the runs can't be read
+     */
+    Iterator<Record> sorted() throws IOException {
+        buffer.sort(ORDER);
+        if (runs.isEmpty()) {
+            return buffer.iterator();
+        }
+        PriorityQueue<Head> heads = new PriorityQueue<>((a, b) -> ORDER.compare(a.record, b.record));
+        Iterator<Record> memory = buffer.iterator();
+        if (memory.hasNext()) {
+            heads.add(new Head(memory.next(), memory, null));
+        }
+        int bufferSize = (int) Math.max(MIN_RUN_BUFFER,
+                Math.min(MAX_RUN_BUFFER, memoryBudget / Math.max(1, runs.size())));
+        for (Path run : runs) {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(run), bufferSize));
+            readers.add(in);
+            Record first = read(in);
+            if (first != null) {
+                heads.add(new Head(first, null, in));
+            }
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public Record next() {
+                Head head = heads.poll();
+                if (head == null) {
+                    throw new NoSuchElementException();
+                }
+                Record record = head.record;
+                try {
+                    head.record = head.memory != null
+                            ? (head.memory.hasNext() ? head.memory.next() : null)
+                            : read(head.in);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (head.record != null) {
+                    heads.add(head);
+                }
+                return record;
+            }
+        };
+    }
+
+    /**
+     * Closes the run files and deletes them.
+     *
+     * @throws IOException if a run can't be deleted
+     */
+    @Override
+    public void close() throws IOException {
+        for (DataInputStream in : readers) {
+            in.close();
+        }
+        readers.clear();
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+        buffer = new ArrayList<>();
+    }
+
+    /**
+     * Sorts the buffered records and writes them to a new run file.
+     *
+     * @throws IOException if the run can't be written
+     */
+    private void spill() throws IOException {
+        buffer.sort(ORDER);
+        Path run = Files.createTempFile(spillDir, "payroll-run-", ".bin");
+        runs.add(run);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(run), MAX_RUN_BUFFER))) {
+            for (Record record : buffer) {
+                writeString(out, record.key);
+                out.writeLong(record.seq);
+                writeString(out, record.payload);
+            }
+        }
+        buffer = new ArrayList<>();
+        buffered = 0;
+    }
+
+    /**
+     * Reads the next record of a run.
+     *
+     * @param in the run
+     * @return the record, or null at the end of the run
+     * @throws IOException if the run can't be read
+     */
+    private static Record read(DataInputStream in) throws IOException {
+        String key;
+        try {
+            key = readString(in);
+        } catch (EOFException e) {
+            return null;
+        }
+        long seq = in.readLong();
+        return new Record(key, seq, readString(in));
+    }
+
+    /**
+     * Writes a string as its UTF-8 length and bytes.
+     *
+     * @param out the run being written
+     * @param value the string
+     * @throws IOException if the run can't be written
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString}.
+     *
+     * @param in the run being read
+     * @return the string
+     * @throws IOException if the run can't be read
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A record being sorted.
+     */
+    static final class Record {
+        /** the sort key. */
+        final String key;
+
+        /** orders records with equal keys. */
+        final long seq;
+
+        /** the record data. */
+        final String payload;
+
+        /**
+         * Creates a record.
+         *
+         * @param key the sort key
+         * @param seq the sequence number
+         * @param payload the record data
+         */
+        Record(String key, long seq, String payload) {
+            this.key = key;
+            this.seq = seq;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * The next record of one run (or of the in-memory records) while merging.
+     */
+    private static final class Head {
+        /** the next record. */
+        private Record record;
+
+        /** the in-memory records, or null for a run file. */
+        private final Iterator<Record> memory;
+
+        /** the run file, or null for the in-memory records. */
+        private final DataInputStream in;
+
+        /**
+         * Creates a head.
+         *
+         * @param record the first record
+         * @param memory the in-memory records, or null
+         * @param in the run file, or null
+         */
+        Head(Record record, Iterator<Record> memory, DataInputStream in) {
+            this.record = record;
+            this.memory = memory;
+            this.in = in;
+        }
+    }
+}
@@ -3,16 +3,35 @@ package student;
 // note: java.nio was introduced in Java 17.
 // if you have an older version of Java, you will either
 // want to update, or convert this code to use Buffered reader
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.util.Collections;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Contains simple utilities for reading in a file. You are free to modify this file as you
  * need/want, but it is not required.
+ *
+ * Any file whose name ends in .gz is read and written gzip compressed, streaming through the
+ * same line and record paths as a plain file.
  */
 public final class FileUtil {
     /** header line required when writing out to the employee file. */
@@ -23,6 +42,15 @@ public final class FileUtil {
     public static final String PAY_STUB_HEADER =
             "employee_name,net_pay,taxes,ytd_earnings,ytd_taxes_paid";
 
+    /** suffix of the staging file a streamed output is written to before it is committed. */
+    static final String STAGED_SUFFIX = ".tmp";
+
+    /** suffix of files that are read and written gzip compressed. */
+    static final String GZIP_SUFFIX = ".gz";
+
+    /** buffer size of the gzip streams. */
+    static final int GZIP_BUFFER_SIZE = 1 << 16;
+
 
 
     /**
@@ -39,14 +67,168 @@ public final class FileUtil {
      * @return a list of strings, one for each line in the file
      */
     public static List<String> readFileToList(String file) {
-        List<String> lines = Collections.emptyList();
+        try (Stream<CharSequence> lines = mapLines(file)) {
+            return lines.map(CharSequence::toString).collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Lazily streams the lines of a text file, one element per line, with the header line
+     * skipped. Only the current line is held in memory, so the file size does not matter.
+     *
+     * The stream holds the file open, so callers should close it (try-with-resources).
+     * 
+     * @param file the file name
+     * @return a stream of the lines after the header, or an empty stream if the file can't be
+     *         opened
+     */
+    public static Stream<String> streamLines(String file) {
+        try {
+            if (isGzip(file)) {
+                BufferedReader reader = openGzipReader(Path.of(file));
+                return reader.lines().skip(1).onClose(() -> closeQuietly(reader));
+            }
+            return Files.lines(Path.of(file)).skip(1); // skip the header line
+        } catch (IOException e) {
+            System.err.println("Error reading file: " + e.getMessage());
+            return Stream.empty();
+        }
+    }
+
+    /**
+     * Lazily streams the lines of a text file through a memory-mapped reader, with the header
+     * line skipped. ASCII lines are views over the mapped file rather than copies, so they should
+     * be parsed (or turned into Strings) as they go by. A .gz file can't be mapped, so it is
+     * decompressed as it is read instead.
+     *
+     * The stream holds the file open, so callers should close it (try-with-resources).
+     *
+     * @param file the file name
+     * @return a stream of the lines after the header, or an empty stream if the file can't be
+     *         opened
+     * @see MappedLineReader
+     */
+    public static Stream<CharSequence> mapLines(String file) {
+        if (isGzip(file)) {
+            return streamLines(file).map(CharSequence.class::cast);
+        }
+        try {
+            MappedLineReader reader = MappedLineReader.open(Path.of(file));
+            return StreamSupport.stream(reader.all().spliterator(), false).onClose(() -> {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing file: " + e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Error reading file: " + e.getMessage());
+            return Stream.empty();
+        }
+    }
+
+    /**
+     * Opens a record writer on the staging file for outFile and writes the header to it. Lines can then
+     * be written one at a time; nothing replaces outFile until {@link #commitStaged} is called,
+     * so the input can still be streamed from outFile while its replacement is written. Full
+     * buffers are written to disk on a background thread, so the caller keeps computing.
+     * 
+     * @param outFile the file name the output will eventually be committed to
+     * @param header the header line to start the file with
+     * @return a writer on the staging file
+     * @throws IOException if the staging file can't be created
+     */
+    public static RecordWriter openStagedWriter(String outFile, String header)
+            throws IOException {
+        return RecordWriter.openWriteBehind(Path.of(outFile + STAGED_SUFFIX), isGzip(outFile),
+                header, DurableCommit.BACKGROUND);
+    }
+
+    /**
+     * Opens a record writer that adds to the end of a staged copy of outFile, so the new records
+     * appear in outFile only once {@link #commitStaged} is called. The header is written first if
+     * outFile doesn't exist yet or is empty.
+     * 
+     * @param outFile the file name the records are added to
+     * @param header the header line
+     * @return a writer on the staging file
+     * @throws IOException if outFile can't be copied or the staging file can't be opened
+     */
+    public static RecordWriter openStagedAppender(String outFile, String header)
+            throws IOException {
+        Path file = Path.of(outFile);
+        Path staged = Path.of(outFile + STAGED_SUFFIX);
+        if (Files.exists(file)) {
+            Files.copy(file, staged, StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(staged);
+        }
+        return RecordWriter.append(staged, isGzip(outFile), header);
+    }
+
+    /**
+     * Moves the staging file written through {@link #openStagedWriter} into place as outFile.
+     * 
+     * @param outFile the file name
+     * @param backup if true, will backup the file if it exists
+     * @return true if the file was replaced, false if the commit failed (the error is printed)
+     */
+    public static boolean commitStaged(String outFile, boolean backup) {
+        return commitStaged(List.of(outFile), backup);
+    }
+
+    /**
+     * Moves the staging files written through {@link #openStagedWriter} into place as one unit:
+     * they are synced to disk first, and after a crash either every file is replaced or none
+     * is. Each file is renamed atomically, so it is never missing or half written.
+     * 
+     * @param outFiles the file names, the first of which keeps the commit marker
+     * @param backup if true, will backup each file if it exists
+     * @return true if the files were replaced, false if the commit failed (the error is printed);
+     *         a commit that got as far as its marker is finished by {@link #recoverStaged}
+     * @see DurableCommit
+     */
+    public static boolean commitStaged(List<String> outFiles, boolean backup) {
+        List<Path> targets = new ArrayList<>(outFiles.size());
+        for (String outFile : outFiles) {
+            targets.add(Path.of(outFile));
+        }
+        try {
+            DurableCommit.commit(targets, backup);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error committing file: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Finishes a commit of outFile (and the files committed with it) that was cut short by a
+     * crash, so the files are read in a consistent state.
+     * 
+     * @param outFile the first file name of the commit
+     */
+    public static void recoverStaged(String outFile) {
+        try {
+            if (DurableCommit.recover(Path.of(outFile))) {
+                System.err.println("Finished an interrupted commit of " + outFile);
+            }
+        } catch (IOException e) {
+            System.err.println("Error recovering commit: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes the staging file for outFile, used when a streamed write fails part way through.
+     * 
+     * @param outFile the file name
+     */
+    public static void discardStaged(String outFile) {
         try {
-            lines = Files.readAllLines(Path.of(file));
-            lines.remove(0); // remove the header line
+            Files.deleteIfExists(Path.of(outFile + STAGED_SUFFIX));
         } catch (IOException e) {
-            System.err.println("Error reading employee file: " + e.getMessage());
+            System.err.println("Error removing staged file: " + e.getMessage());
         }
-        return lines;
     }
 
 
@@ -56,38 +238,126 @@ public final class FileUtil {
      * 
      * @param outFile the file name
      * @param lines the lines to write
+     * @return true if the file was written, false if it failed (the error is printed)
+     */
+    public static boolean writeFile(String outFile, List<String> lines) {
+        return writeFile(outFile, lines, true);
+    }
+
+    /**
+     * Writes a header and then the records to the file, one per line. Will backup the file if it
+     * exists.
+     * 
+     * @param outFile the file name
+     * @param header the header line
+     * @param records the records to write, consumed one at a time
+     * @return true if the file was written, false if it failed (the error is printed)
      */
-    public static void writeFile(String outFile, List<String> lines) {
-        writeFile(outFile, lines, true);
+    public static boolean writeFile(String outFile, String header,
+            Iterable<? extends CharSequence> records) {
+        try (RecordWriter writer = openStagedWriter(outFile, header)) {
+            for (CharSequence record : records) {
+                writer.write(record);
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing to file: " + e.getMessage());
+            discardStaged(outFile);
+            return false;
+        }
+        return commitStaged(outFile, true);
     }
 
     /**
-     * Writes the lines to the file.
+     * Writes the lines to the file, through a staging file that replaces it only once fully
+     * written.
      * 
      * @param outFile the file name
      * @param lines the lines to write
      * @param backup if true, will backup the file if it exists
+     * @return true if the file was written, false if it failed (the error is printed)
      */
-    public static void writeFile(String outFile, List<String> lines, boolean backup) {
-        if (backup) {
-            try {
-                // check for existence
-                if (Files.exists(Path.of(outFile))) {
-                    // it is alright to overwrite the backup
-                    Files.move(Path.of(outFile), Path.of(outFile + ".bak"),
-                            StandardCopyOption.REPLACE_EXISTING);
-                }
-            } catch (IOException e) {
-                System.err.println("Error backing up file: " + e.getMessage());
-                e.printStackTrace();
-                return; // don't write the file if we can't back it up
+    public static boolean writeFile(String outFile, List<String> lines, boolean backup) {
+        try (RecordWriter writer = new RecordWriter(openOutput(Path.of(outFile + STAGED_SUFFIX),
+                isGzip(outFile), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE))) {
+            for (String line : lines) {
+                writer.write(line);
             }
+        } catch (IOException e) {
+            System.err.println("Error writing to file: " + e.getMessage());
+            discardStaged(outFile);
+            return false;
         }
+        return commitStaged(outFile, backup);
+    }
 
+    /**
+     * Checks if a file is read and written gzip compressed.
+     * 
+     * @param file the file name
+     * @return true if the name ends in .gz
+     */
+    static boolean isGzip(String file) {
+        return file.endsWith(GZIP_SUFFIX);
+    }
+
+    /**
+     * Opens a file for writing, compressing what is written if asked to. Compression favors
+     * speed over size, since CSV compresses well either way.
+     * 
+     * @param file the file
+     * @param gzip if true, the file is written gzip compressed
+     * @param options how the file is opened
+     * @return the channel to write to
+     * @throws IOException if the file can't be opened
+     */
+    static WritableByteChannel openOutput(Path file, boolean gzip, OpenOption... options)
+            throws IOException {
+        if (!gzip) {
+            return FileChannel.open(file, options);
+        }
+        OutputStream out = Files.newOutputStream(file, options);
         try {
-            Files.write(Path.of(outFile), lines);
+            return Channels.newChannel(new GZIPOutputStream(out, GZIP_BUFFER_SIZE) {
+                {
+                    def.setLevel(Deflater.BEST_SPEED);
+                }
+            });
         } catch (IOException e) {
-            System.err.println("Error writing to file: " + e.getMessage());
+            out.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a gzip compressed text file for reading.
+     * 
+     * @param file the file
+     * @return a reader of the decompressed UTF-8 text
+     * @throws IOException if the file can't be opened or is not gzip compressed
+     */
+    private static BufferedReader openGzipReader(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        try {
+            return new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(in, GZIP_BUFFER_SIZE), StandardCharsets.UTF_8),
+                    GZIP_BUFFER_SIZE);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes a reader, reporting rather than throwing any error.
+     * 
+     * @param reader the reader
+     */
+    private static void closeQuietly(BufferedReader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            System.err.println("Error closing file: " + e.getMessage());
         }
     }
 }
@@ -1,7 +1,6 @@
 package student;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 
 /**
  * Description: HourlyEmployee class represents an employee who is paid based on an hourly rate.
@@ -13,7 +12,14 @@ import java.math.RoundingMode;
  *  - Generate a PayStub for each payroll cycle.
  *
  * Overtime is paid at 1.5 times the hourly rate for any hours worked beyond 40 hours per week.
- * Taxes are calculated at a total rate of 22.65% on the net pay (after pretax deductions).
+ * Taxes are calculated on the net pay (after pretax deductions) with the active TaxTable,
+ * a total rate of 22.65% unless tax rules are given.
+ *
+ * Payroll can be run for the same employee from several threads at once, such as for split
+ * shifts or time cards from several sites. The YTD totals are kept in exact cents and both are
+ * added to under the employee's own lock, so no pay is lost however many threads contend. Each
+ * pay stub's YTD earnings and taxes are the totals just after its own pay, never a mix of two
+ * payments. Only that update is locked; the pay itself is computed outside it.
  */
 public class HourlyEmployee implements IEmployee {
     /** Employee's name. */
@@ -25,11 +31,11 @@ public class HourlyEmployee implements IEmployee {
     /** Hourly pay rate. */
     private final double payRate;
 
-    /** Year-to-date earnings. */
-    private double ytdEarnings;
+    /** Year-to-date earnings, in cents, changed only while holding this employee's lock. */
+    private volatile long ytdEarnings;
 
-    /** Year-to-date taxes paid. */
-    private double ytdTaxesPaid;
+    /** Year-to-date taxes paid, in cents, changed only while holding this employee's lock. */
+    private volatile long ytdTaxesPaid;
 
     /** Pretax deductions for the employee. */
     private final double pretaxDeductions;
@@ -53,8 +59,8 @@ public class HourlyEmployee implements IEmployee {
         this.name = name;
         this.id = id;
         this.payRate = payRate;
-        this.ytdEarnings = BigDecimal.valueOf(ytdEarnings).setScale(2, RoundingMode.HALF_UP).doubleValue();
-        this.ytdTaxesPaid = BigDecimal.valueOf(ytdTaxesPaid).setScale(2, RoundingMode.HALF_UP).doubleValue();
+        this.ytdEarnings = Money.toCents(ytdEarnings);
+        this.ytdTaxesPaid = Money.toCents(ytdTaxesPaid);
         this.pretaxDeductions = pretaxDeductions;
     }
 
@@ -85,13 +91,13 @@ public class HourlyEmployee implements IEmployee {
     /** {@inheritDoc} */
     @Override
     public double getYTDEarnings() {
-        return ytdEarnings;
+        return Money.toDouble(ytdEarnings);
     }
 
     /** {@inheritDoc} */
     @Override
     public double getYTDTaxesPaid() {
-        return ytdTaxesPaid;
+        return Money.toDouble(ytdTaxesPaid);
     }
 
     /** {@inheritDoc} */
@@ -114,27 +120,28 @@ public class HourlyEmployee implements IEmployee {
             return null;
         }
 
-        BigDecimal payRateBD = BigDecimal.valueOf(payRate);
-        BigDecimal pretaxDeductionsBD = BigDecimal.valueOf(pretaxDeductions);
-
-        BigDecimal regularHours = BigDecimal.valueOf(Math.min(hoursWorked, 40));
-        BigDecimal overtimeHours = BigDecimal.valueOf(Math.max(hoursWorked - 40, 0));
-
-        BigDecimal grossPay = regularHours.multiply(payRateBD)
-                .add(overtimeHours.multiply(payRateBD).multiply(BigDecimal.valueOf(1.5)));
-
-        BigDecimal netPayBeforeTax = grossPay.subtract(pretaxDeductionsBD);
-        BigDecimal taxes = netPayBeforeTax.multiply(BigDecimal.valueOf(0.2265));
-        BigDecimal finalNetPay = netPayBeforeTax.subtract(taxes);
-
-        grossPay = grossPay.setScale(2, RoundingMode.HALF_UP);
-        taxes = taxes.setScale(2, RoundingMode.HALF_UP);
-        finalNetPay = finalNetPay.setScale(2, RoundingMode.HALF_UP);
+        long netBeforeTax = Money.hourlyNetBeforeTax(payRate, hoursWorked, pretaxDeductions);
+        long taxes;
+        long finalNetPay;
+        if (netBeforeTax != Money.INEXACT) {
+            taxes = Money.taxCents(netBeforeTax, Money.HOURLY_SCALE);
+            finalNetPay = Money.netCents(netBeforeTax, Money.HOURLY_SCALE);
+        } else {
+            BigDecimal exact = Money.hourlyNetBeforeTaxExact(payRate, hoursWorked, pretaxDeductions);
+            taxes = Money.taxCents(exact);
+            finalNetPay = Money.netCents(exact);
+        }
 
-        ytdEarnings = BigDecimal.valueOf(ytdEarnings).add(finalNetPay).setScale(2, RoundingMode.HALF_UP).doubleValue();
-        ytdTaxesPaid = BigDecimal.valueOf(ytdTaxesPaid).add(taxes).setScale(2, RoundingMode.HALF_UP).doubleValue();
+        long earnings;
+        long taxesPaid;
+        synchronized (this) { // both totals move together, so a stub never sees half a payment
+            earnings = ytdEarnings + finalNetPay;
+            taxesPaid = ytdTaxesPaid + taxes;
+            ytdEarnings = earnings;
+            ytdTaxesPaid = taxesPaid;
+        }
 
-        return new PayStub(name, finalNetPay.doubleValue(), taxes.doubleValue(), ytdEarnings, ytdTaxesPaid);
+        return PayStub.ofCents(name, finalNetPay, taxes, earnings, taxesPaid);
     }
 
     /**
@@ -145,9 +152,18 @@ public class HourlyEmployee implements IEmployee {
      */
     @Override
     public String toCSV() {
-        return String.format(
-                "HOURLY,%s,%s,%.2f,%.2f,%.2f,%.2f",
-                name, id, payRate, pretaxDeductions, ytdEarnings, ytdTaxesPaid
-        );
+        StringBuilder csv = new StringBuilder(64).append("HOURLY,");
+        CsvTokenizer.appendField(csv, name).append(',');
+        CsvTokenizer.appendField(csv, id).append(',');
+        Money.appendCents(csv, Money.toCents(payRate)).append(',');
+        Money.appendCents(csv, Money.toCents(pretaxDeductions)).append(',');
+        long earnings;
+        long taxesPaid;
+        synchronized (this) {
+            earnings = ytdEarnings;
+            taxesPaid = ytdTaxesPaid;
+        }
+        Money.appendCents(csv, earnings).append(',');
+        return Money.appendCents(csv, taxesPaid).toString();
     }
 }
@@ -0,0 +1,167 @@
+package student;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Runs payroll only for time cards that haven't been applied yet.
+ *
+ * Every applied card is recorded in a manifest as its employee ID and pay period, where the
+ * period is the base name of the time card file (time_cards_2024-06-15.csv is period
+ * time_cards_2024-06-15). A run reads the manifest, keeps only the cards it doesn't list, and
+ * then:
+ *
+ * <ul>
+ * <li>copies every employee line without a new card to the new employees.csv as is, without
+ * parsing or formatting it,</li>
+ * <li>pays the employees that do have one, updating just their rows,</li>
+ * <li>adds the new pay stubs to the end of the pay stub file, and</li>
+ * <li>adds the cards to the manifest.</li>
+ * </ul>
+ *
+ * The employee file, the pay stub file and the manifest are staged and committed together, so a
+ * run that fails or is cut short changes none of them and its cards can simply be run again.
+ * The stubs and manifest entries are added to staged copies of their files.
+ *
+ * Running again with the same time card file does nothing, so a file of late corrections
+ * (under its own name) costs a scan of the employee file and the few rows it touches.
+ */
+public final class IncrementalPayroll {
+    /** header line of the manifest file. */
+    static final String MANIFEST_HEADER = "employee_id,period";
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private IncrementalPayroll() {
+
+    }
+
+    /**
+     * Applies the time cards in timeCardFile that aren't in the manifest yet.
+     *
+     * @param employeeFile the employee file, updated in place if any card is applied
+     * @param timeCardFile the time card file, named after its pay period
+     * @param payrollFile the pay stub file new stubs are added to
+     * @param manifestFile the manifest of applied cards, created if it doesn't exist
+     * @return true if the payroll was written, false if it failed (the error is printed)
+     */
+    public static boolean run(String employeeFile, String timeCardFile, String payrollFile,
+            String manifestFile) {
+        String period = period(timeCardFile);
+        Set<String> applied = readManifest(manifestFile, period);
+        TimeCardIndex newCards = new TimeCardIndex(16);
+        CsvTokenizer fields = new CsvTokenizer();
+        try (Stream<CharSequence> cards = FileUtil.mapLines(timeCardFile)) {
+            cards.forEach(line -> {
+                Builder.checkTimeCard(fields.reset(line));
+                String id = fields.text(0);
+                if (!applied.contains(id)) {
+                    newCards.add(id, fields.parseDouble(1));
+                }
+            });
+        }
+        if (newCards.size() == 0) {
+            System.out.println("No new time cards in " + timeCardFile);
+            return true;
+        }
+
+        List<String> outputs = List.of(employeeFile, payrollFile, manifestFile);
+        int matched = 0;
+        boolean staged = false;
+        try (Stream<CharSequence> lines = FileUtil.mapLines(employeeFile);
+                RecordWriter employeeOut =
+                        FileUtil.openStagedWriter(employeeFile, FileUtil.EMPLOYEE_HEADER);
+                RecordWriter payStubOut =
+                        FileUtil.openStagedAppender(payrollFile, FileUtil.PAY_STUB_HEADER);
+                RecordWriter manifestOut =
+                        FileUtil.openStagedAppender(manifestFile, MANIFEST_HEADER)) {
+            StringBuilder entry = new StringBuilder();
+            Iterator<CharSequence> employeeLines = lines.iterator();
+            while (employeeLines.hasNext()) {
+                CharSequence line = employeeLines.next();
+                double hoursWorked = fields.reset(line).fieldCount() > 2
+                        ? newCards.hours(fields.text(2)) : TimeCardIndex.NO_CARD;
+                if (Double.isNaN(hoursWorked)) {
+                    employeeOut.write(line); // untouched, copied as is
+                    continue;
+                }
+                IEmployee employee = Builder.buildEmployee(fields);
+                IPayStub payStub = StreamingPayroll.pay(employee, hoursWorked);
+                if (payStub != null) {
+                    payStubOut.write(payStub.toCSV());
+                }
+                entry.setLength(0);
+                CsvTokenizer.appendField(entry, employee.getID()).append(',');
+                manifestOut.write(CsvTokenizer.appendField(entry, period));
+                matched++;
+                employeeOut.write(employee);
+            }
+            staged = true;
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Error running payroll: " + e.getMessage());
+            return false;
+        } finally {
+            // an I/O error, or an invalid employee line, leaves nothing behind
+            if (!staged) {
+                for (String output : outputs) {
+                    FileUtil.discardStaged(output);
+                }
+            }
+        }
+        // the cards are only recorded as applied if the pay they produced is
+        if (!FileUtil.commitStaged(outputs, true)) {
+            return false;
+        }
+
+        if (matched < newCards.size()) {
+            System.out.println((newCards.size() - matched)
+                    + " time cards did not match any employee");
+        }
+        return true;
+    }
+
+    /**
+     * Gets the pay period of a time card file, its file name without the extension. Everything
+     * from the first dot is the extension, so cards.csv and cards.csv.gz are the same period.
+     *
+     * @param timeCardFile the time card file
+     * @return the period name
+     */
+    static String period(String timeCardFile) {
+        String name = Path.of(timeCardFile).getFileName().toString();
+        int dot = name.indexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * Reads the IDs of the employees whose card for a period has been applied.
+     *
+     * @param manifestFile the manifest file
+     * @param period the pay period
+     * @return the employee IDs, empty if there is no manifest yet
+     */
+    static Set<String> readManifest(String manifestFile, String period) {
+        Set<String> ids = new HashSet<>();
+        if (!Files.exists(Path.of(manifestFile))) {
+            return ids;
+        }
+        CsvTokenizer fields = new CsvTokenizer();
+        try (Stream<CharSequence> lines = FileUtil.mapLines(manifestFile)) {
+            lines.forEach(line -> {
+                fields.reset(line);
+                if (fields.fieldCount() == 2 && fields.text(1).equals(period)) {
+                    ids.add(fields.text(0));
+                }
+            });
+        }
+        return ids;
+    }
+}
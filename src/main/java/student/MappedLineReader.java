@@ -0,0 +1,352 @@
+package student;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the lines of a CSV file through memory-mapped windows of the file.
+ *
+ * Lines are handed out lazily as CharSequence views over the mapped bytes; an ASCII line is never
+ * copied or decoded until a field of it is turned into a String. The header line is skipped by
+ * starting after it, and the data can be split into chunks at line boundaries so that several
+ * consumers can each read their own part of the file.
+ *
+ * Files larger than a single mapping are read through windows that are remapped as the reader
+ * moves along, so file size is not limited by the 2GB size of a MappedByteBuffer.
+ */
+public final class MappedLineReader implements Closeable {
+    /** default size of each mapped window. */
+    static final int DEFAULT_WINDOW = 1 << 28;
+
+    /** bytes read at a time when looking for a line boundary. */
+    private static final int PROBE_SIZE = 4096;
+
+    /** the open file. */
+    private final FileChannel channel;
+
+    /** the size of the file. */
+    private final long size;
+
+    /** offset of the first line after the header. */
+    private final long dataStart;
+
+    /** size of each mapped window, also the longest line that can be read. */
+    private final int window;
+
+    /**
+     * Opens a file for reading.
+     *
+     * @param channel the open file
+     * @param window the size of each mapped window
+     * @throws IOException if the file can't be read
+     */
+    private MappedLineReader(FileChannel channel, int window) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.window = window;
+        this.dataStart = nextLineStart(0);
+    }
+
+    /**
+     * Opens a file, skipping its header line.
+     *
+     * @param file the file to read
+     * @return the reader
+     * @throws IOException if the file can't be opened
+     */
+    public static MappedLineReader open(Path file) throws IOException {
+        return open(file, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Opens a file, skipping its header line, mapping it in windows of the given size.
+     *
+     * @param file the file to read
+     * @param window the size of each mapped window, also the longest line that can be read
+     * @return the reader
+     * @throws IOException if the file can't be opened
+     */
+    static MappedLineReader open(Path file, int window) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new MappedLineReader(channel, window);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets all the data lines as a single chunk.
+     *
+     * @return the chunk from after the header to the end of the file
+     */
+    public Chunk all() {
+        return new Chunk(dataStart, size);
+    }
+
+    /**
+     * Splits the data lines into up to count chunks of about the same size. Every chunk starts
+     * at the beginning of a line and ends just after a line break (or at the end of the file),
+     * so each line is in exactly one chunk. Fewer chunks are returned for small files.
+     *
+     * @param count the number of chunks wanted
+     * @return the chunks, in file order
+     * @throws IOException if the file can't be read
+     */
+    public List<Chunk> split(int count) throws IOException {
+        List<Chunk> chunks = new ArrayList<>(count);
+        long start = dataStart;
+        long step = Math.max(1, (size - dataStart) / count);
+        for (int i = 1; i < count && start < size; i++) {
+            long end = nextLineStart(Math.max(start, dataStart + i * step - 1));
+            if (end > start) {
+                chunks.add(new Chunk(start, end));
+                start = end;
+            }
+        }
+        if (start < size || chunks.isEmpty()) {
+            chunks.add(new Chunk(start, size));
+        }
+        return chunks;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Finds the start of the line after the one containing offset.
+     *
+     * @param offset an offset in the file
+     * @return the offset just after the next line break, or the file size if there is none
+     * @throws IOException if the file can't be read
+     */
+    private long nextLineStart(long offset) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+        long pos = offset;
+        while (pos < size) {
+            probe.clear();
+            int read = channel.read(probe, pos);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += read;
+        }
+        return size;
+    }
+
+    /**
+     * A range of whole lines in the file.
+     */
+    public final class Chunk implements Iterable<CharSequence> {
+        /** offset of the first line. */
+        private final long start;
+
+        /** offset just after the last line. */
+        private final long end;
+
+        /**
+         * Creates a chunk.
+         *
+         * @param start offset of the first line
+         * @param end offset just after the last line
+         */
+        private Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Gets the number of bytes in the chunk.
+         *
+         * @return the length in bytes
+         */
+        public long length() {
+            return end - start;
+        }
+
+        /**
+         * Iterates the lines in the chunk, without their line breaks. Each chunk can be read
+         * by a different thread.
+         *
+         * @return an iterator over the lines
+         */
+        @Override
+        public Iterator<CharSequence> iterator() {
+            return new LineIterator(start, end);
+        }
+    }
+
+    /**
+     * Walks the lines of a chunk, mapping a new window whenever the next line runs past the
+     * current one.
+     */
+    private final class LineIterator implements Iterator<CharSequence> {
+        /** offset of the next line. */
+        private long position;
+
+        /** offset just after the last line. */
+        private final long end;
+
+        /** the current window. */
+        private MappedByteBuffer buffer;
+
+        /** the file offset of the start of the current window. */
+        private long bufferStart;
+
+        /**
+         * Creates an iterator.
+         *
+         * @param start offset of the first line
+         * @param end offset just after the last line
+         */
+        LineIterator(long start, long end) {
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < end;
+        }
+
+        @Override
+        public CharSequence next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                return readLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Reads the line at the current position and moves past it.
+         *
+         * @return the line
+         * @throws IOException if the file can't be mapped, or the line is longer than a window
+         */
+        private CharSequence readLine() throws IOException {
+            if (buffer == null || position >= bufferStart + buffer.limit()) {
+                map(position);
+            }
+            int from = (int) (position - bufferStart);
+            int limit = (int) Math.min(buffer.limit(), end - bufferStart);
+            boolean ascii = true;
+            int i = from;
+            while (true) {
+                if (i == limit) {
+                    if (bufferStart + limit >= end) {
+                        break; // last line without a line break
+                    }
+                    if (from == 0) {
+                        throw new IOException("Line longer than " + window + " bytes at offset "
+                                + position);
+                    }
+                    // the line runs past this window, so map a new one starting at the line
+                    map(position);
+                    from = 0;
+                    i = 0;
+                    limit = (int) Math.min(buffer.limit(), end - bufferStart);
+                    ascii = true;
+                    continue;
+                }
+                byte b = buffer.get(i);
+                if (b == '\n') {
+                    break;
+                }
+                ascii &= b >= 0;
+                i++;
+            }
+            position = bufferStart + Math.min(i + 1, limit);
+            int lineEnd = i > from && buffer.get(i - 1) == '\r' ? i - 1 : i;
+            if (ascii) {
+                return new AsciiLine(buffer, from, lineEnd - from);
+            }
+            byte[] bytes = new byte[lineEnd - from];
+            buffer.get(from, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Maps a window starting at the given offset.
+         *
+         * @param offset the file offset to start at
+         * @throws IOException if the file can't be mapped
+         */
+        private void map(long offset) throws IOException {
+            long length = Math.min(window, size - offset);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            bufferStart = offset;
+        }
+    }
+
+    /**
+     * A line of ASCII text viewed directly in a mapped buffer. Each byte is one character.
+     */
+    static final class AsciiLine implements CharSequence {
+        /** the buffer holding the line. */
+        private final MappedByteBuffer buffer;
+
+        /** index of the first character in the buffer. */
+        private final int offset;
+
+        /** number of characters. */
+        private final int length;
+
+        /**
+         * Creates a view of part of a buffer.
+         *
+         * @param buffer the buffer holding the line
+         * @param offset index of the first character
+         * @param length number of characters
+         */
+        AsciiLine(MappedByteBuffer buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) buffer.get(offset + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new AsciiLine(buffer, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            byte[] bytes = new byte[length];
+            buffer.get(offset, bytes);
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package student;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point money arithmetic on primitive longs.
+ *
+ * Amounts are held as whole cents. Rates, hours and deductions are read as exact decimals with
+ * up to four decimal places ("scaled" values), and the payroll math is done on those scaled
+ * longs, so every intermediate value is exact and only the final HALF_UP rounding to cents is
+ * applied - the same results BigDecimal gives, without allocating.
+ *
+ * Inputs that can't be held exactly (more than four decimal places, or amounts large enough to
+ * overflow a long) are marked {@link #INEXACT}, and callers fall back to the BigDecimal versions.
+ *
+ * A negative amount that rounds to zero cents is zero, and is written as 0.00, not the -0.00
+ * that String.format gives for a small negative double.
+ */
+public final class Money {
+    /** marker for a value that can't be represented exactly as a scaled long. */
+    public static final long INEXACT = Long.MIN_VALUE;
+
+    /** number of decimal places in a scaled value. */
+    public static final int SCALE = 4;
+
+    /** decimal places of net pay before tax for hourly employees (hours * rate * 1.5). */
+    public static final int HOURLY_SCALE = 9;
+
+    /** decimal places of net pay before tax for salary employees (rate / 24 at 10 places). */
+    public static final int SALARY_SCALE = 10;
+
+    /** the flat tax rate, 1.45% medicare + 6.2% social security + 15% withholding. */
+    public static final double TAX_RATE = 0.2265;
+
+    /** number of pay periods in a year for salary employees. */
+    public static final int PAY_PERIODS = 24;
+
+    /** hours in a week before overtime applies. */
+    public static final double OVERTIME_HOURS = 40;
+
+    /** powers of ten that fit in a long. */
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /**
+     * magnitudes below this are handled without BigDecimal. Small enough that the error in the
+     * double arithmetic stays far below the rounding boundaries being tested.
+     */
+    private static final double FAST_LIMIT = 1e7;
+
+    /** largest net pay before tax (scaled) that can be multiplied by a scaled rate. */
+    private static final long MAX_NET_BEFORE_TAX = Long.MAX_VALUE / POWERS_OF_TEN[SCALE];
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Money() {
+
+    }
+
+    /**
+     * Rounds a value to whole cents, HALF_UP, exactly as
+     * {@code BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP)} would. A small
+     * negative value, down to -0.005 exclusive, is 0.
+     *
+     * @param value the value to round
+     * @return the value in cents
+     */
+    public static long toCents(double value) {
+        if (value < 0) {
+            return -toCents(-value);
+        }
+        if (value < FAST_LIMIT) {
+            double cents = value * 100;
+            double floor = Math.floor(cents);
+            double fraction = cents - floor;
+            // only a value within rounding error of a half cent needs an exact look
+            if (Math.abs(fraction - 0.5) > 1e-6) {
+                return (long) floor + (fraction > 0.5 ? 1 : 0);
+            }
+        }
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP).unscaledValue()
+                .longValueExact();
+    }
+
+    /**
+     * Converts cents back to a double amount.
+     *
+     * @param cents the amount in cents
+     * @return the amount
+     */
+    public static double toDouble(long cents) {
+        return cents / 100.0;
+    }
+
+    /**
+     * Converts a value to a long with {@link #SCALE} decimal places, if that is exact.
+     *
+     * @param value the value to convert
+     * @return the scaled value, or {@link #INEXACT} if the value has more decimal places or is
+     *         too large
+     */
+    public static long toScaled(double value) {
+        if (!(Math.abs(value) < FAST_LIMIT)) {
+            return INEXACT;
+        }
+        long scaled = Math.round(value * POWERS_OF_TEN[SCALE]);
+        return scaled / (double) POWERS_OF_TEN[SCALE] == value ? scaled : INEXACT;
+    }
+
+    /**
+     * Divides, rounding the quotient HALF_UP (halves away from zero).
+     *
+     * @param value the dividend
+     * @param divisor the divisor, must be positive
+     * @return the rounded quotient
+     */
+    public static long divideHalfUp(long value, long divisor) {
+        long quotient = value / divisor;
+        long remainder = Math.abs(value % divisor);
+        if (remainder >= divisor - remainder) {
+            quotient += value < 0 ? -1 : 1;
+        }
+        return quotient;
+    }
+
+    /**
+     * Calculates an hourly employee's pay before taxes: regular hours at the pay rate, overtime
+     * at 1.5 times the pay rate, minus the pretax deductions.
+     *
+     * @param payRate the hourly pay rate
+     * @param hoursWorked the hours worked in the pay period
+     * @param pretaxDeductions the pretax deductions
+     * @return the net pay before tax with {@link #HOURLY_SCALE} decimal places, or
+     *         {@link #INEXACT}
+     */
+    public static long hourlyNetBeforeTax(double payRate, double hoursWorked,
+            double pretaxDeductions) {
+        return hourlyNetBeforeTaxScaled(toScaled(payRate), hoursWorked, toScaled(pretaxDeductions));
+    }
+
+    /**
+     * Calculates an hourly employee's pay before taxes from an already scaled pay rate and
+     * pretax deductions.
+     *
+     * @param rate the scaled hourly pay rate, or {@link #INEXACT}
+     * @param hoursWorked the hours worked in the pay period
+     * @param deductions the scaled pretax deductions, or {@link #INEXACT}
+     * @return the net pay before tax with {@link #HOURLY_SCALE} decimal places, or
+     *         {@link #INEXACT}
+     * @see #hourlyNetBeforeTax(double, double, double)
+     */
+    public static long hourlyNetBeforeTaxScaled(long rate, double hoursWorked, long deductions) {
+        long regular = toScaled(Math.min(hoursWorked, OVERTIME_HOURS));
+        long overtime = toScaled(Math.max(hoursWorked - OVERTIME_HOURS, 0));
+        if (rate == INEXACT || regular == INEXACT || overtime == INEXACT
+                || deductions == INEXACT) {
+            return INEXACT;
+        }
+        try {
+            // regular * rate has 8 places and overtime * rate * 1.5 has 9, so work at 9
+            long gross = Math.addExact(Math.multiplyExact(Math.multiplyExact(regular, rate), 10L),
+                    Math.multiplyExact(Math.multiplyExact(overtime, rate), 15L));
+            return limit(Math.subtractExact(gross,
+                    Math.multiplyExact(deductions, POWERS_OF_TEN[HOURLY_SCALE - SCALE])));
+        } catch (ArithmeticException e) {
+            return INEXACT;
+        }
+    }
+
+    /**
+     * Calculates a salary employee's pay before taxes: the annual pay rate divided into
+     * {@link #PAY_PERIODS} periods (rounded HALF_UP to {@link #SALARY_SCALE} places), minus the
+     * pretax deductions.
+     *
+     * @param payRate the annual pay rate
+     * @param pretaxDeductions the pretax deductions
+     * @return the net pay before tax with {@link #SALARY_SCALE} decimal places, or
+     *         {@link #INEXACT}
+     */
+    public static long salaryNetBeforeTax(double payRate, double pretaxDeductions) {
+        return salaryNetBeforeTaxScaled(toScaled(payRate), toScaled(pretaxDeductions));
+    }
+
+    /**
+     * Calculates a salary employee's pay before taxes from an already scaled pay rate and
+     * pretax deductions.
+     *
+     * @param rate the scaled annual pay rate, or {@link #INEXACT}
+     * @param deductions the scaled pretax deductions, or {@link #INEXACT}
+     * @return the net pay before tax with {@link #SALARY_SCALE} decimal places, or
+     *         {@link #INEXACT}
+     * @see #salaryNetBeforeTax(double, double)
+     */
+    public static long salaryNetBeforeTaxScaled(long rate, long deductions) {
+        if (rate == INEXACT || deductions == INEXACT) {
+            return INEXACT;
+        }
+        long factor = POWERS_OF_TEN[SALARY_SCALE - SCALE];
+        try {
+            long gross = divideHalfUp(Math.multiplyExact(rate, factor), PAY_PERIODS);
+            return limit(Math.subtractExact(gross, Math.multiplyExact(deductions, factor)));
+        } catch (ArithmeticException e) {
+            return INEXACT;
+        }
+    }
+
+    /**
+     * Calculates the taxes on net pay before tax with the active {@link TaxTable}, rounded
+     * HALF_UP to cents.
+     *
+     * @param netBeforeTax the net pay before tax
+     * @param scale the number of decimal places in netBeforeTax
+     * @return the taxes in cents
+     */
+    public static long taxCents(long netBeforeTax, int scale) {
+        return TaxTable.active().taxCents(netBeforeTax, scale);
+    }
+
+    /**
+     * Calculates the final net pay (net pay before tax minus the unrounded taxes) with the
+     * active {@link TaxTable}, rounded HALF_UP to cents.
+     *
+     * @param netBeforeTax the net pay before tax
+     * @param scale the number of decimal places in netBeforeTax
+     * @return the final net pay in cents
+     */
+    public static long netCents(long netBeforeTax, int scale) {
+        return TaxTable.active().netCents(netBeforeTax, scale);
+    }
+
+    /**
+     * BigDecimal version of {@link #hourlyNetBeforeTax}, for inputs that aren't exact.
+     *
+     * @param payRate the hourly pay rate
+     * @param hoursWorked the hours worked in the pay period
+     * @param pretaxDeductions the pretax deductions
+     * @return the net pay before tax
+     */
+    public static BigDecimal hourlyNetBeforeTaxExact(double payRate, double hoursWorked,
+            double pretaxDeductions) {
+        BigDecimal payRateBD = BigDecimal.valueOf(payRate);
+        BigDecimal regularHours = BigDecimal.valueOf(Math.min(hoursWorked, OVERTIME_HOURS));
+        BigDecimal overtimeHours =
+                BigDecimal.valueOf(Math.max(hoursWorked - OVERTIME_HOURS, 0));
+
+        BigDecimal grossPay = regularHours.multiply(payRateBD)
+                .add(overtimeHours.multiply(payRateBD).multiply(BigDecimal.valueOf(1.5)));
+        return grossPay.subtract(BigDecimal.valueOf(pretaxDeductions));
+    }
+
+    /**
+     * BigDecimal version of {@link #salaryNetBeforeTax}, for inputs that aren't exact.
+     *
+     * @param payRate the annual pay rate
+     * @param pretaxDeductions the pretax deductions
+     * @return the net pay before tax
+     */
+    public static BigDecimal salaryNetBeforeTaxExact(double payRate, double pretaxDeductions) {
+        BigDecimal grossPay = BigDecimal.valueOf(payRate)
+                .divide(BigDecimal.valueOf(PAY_PERIODS), SALARY_SCALE, RoundingMode.HALF_UP);
+        return grossPay.subtract(BigDecimal.valueOf(pretaxDeductions));
+    }
+
+    /**
+     * BigDecimal version of {@link #taxCents(long, int)}.
+     *
+     * @param netBeforeTax the net pay before tax
+     * @return the taxes in cents
+     */
+    public static long taxCents(BigDecimal netBeforeTax) {
+        return cents(TaxTable.active().tax(netBeforeTax));
+    }
+
+    /**
+     * BigDecimal version of {@link #netCents(long, int)}.
+     *
+     * @param netBeforeTax the net pay before tax
+     * @return the final net pay in cents
+     */
+    public static long netCents(BigDecimal netBeforeTax) {
+        return cents(netBeforeTax.subtract(TaxTable.active().tax(netBeforeTax)));
+    }
+
+    /**
+     * Appends cents as a decimal with two places, like {@code String.format("%.2f")}, but
+     * with no sign on zero.
+     *
+     * @param sb the builder to append to
+     * @param cents the amount in cents
+     * @return the builder
+     */
+    public static StringBuilder appendCents(StringBuilder sb, long cents) {
+        return appendFixed(sb, cents, 2);
+    }
+
+    /**
+     * Appends cents rounded HALF_UP to a single decimal place, like
+     * {@code String.format("%.1f")}, but with no sign on zero: -4 cents is 0.0, not -0.0.
+     *
+     * @param sb the builder to append to
+     * @param cents the amount in cents
+     * @return the builder
+     */
+    public static StringBuilder appendTenths(StringBuilder sb, long cents) {
+        return appendFixed(sb, divideHalfUp(cents, 10), 1);
+    }
+
+    /**
+     * Appends a fixed-point value.
+     *
+     * @param sb the builder to append to
+     * @param unscaled the value without its decimal point
+     * @param places the number of decimal places in the value
+     * @return the builder
+     */
+    private static StringBuilder appendFixed(StringBuilder sb, long unscaled, int places) {
+        if (unscaled < 0) { // only a nonzero value gets a sign, so there is no -0.00
+            sb.append('-');
+            unscaled = -unscaled;
+        }
+        long power = POWERS_OF_TEN[places];
+        sb.append(unscaled / power).append('.');
+        long fraction = unscaled % power;
+        for (long digit = power / 10; digit > 0; digit /= 10) {
+            sb.append((char) ('0' + fraction / digit % 10));
+        }
+        return sb;
+    }
+
+    /**
+     * Rounds a BigDecimal HALF_UP to whole cents.
+     *
+     * @param value the value
+     * @return the value in cents
+     */
+    static long cents(BigDecimal value) {
+        return value.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Gets a power of ten.
+     *
+     * @param exponent the exponent, 0 to 18
+     * @return 10 to the exponent
+     */
+    static long powerOfTen(int exponent) {
+        return POWERS_OF_TEN[exponent];
+    }
+
+    /**
+     * Checks a net pay before tax is small enough to be taxed without overflowing.
+     *
+     * @param netBeforeTax the net pay before tax
+     * @return netBeforeTax, or {@link #INEXACT} if it is too large
+     */
+    private static long limit(long netBeforeTax) {
+        return Math.abs(netBeforeTax) <= MAX_NET_BEFORE_TAX ? netBeforeTax : INEXACT;
+    }
+}
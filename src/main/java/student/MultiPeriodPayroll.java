@@ -0,0 +1,319 @@
+package student;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+/**
+ * Runs payroll for many pay periods in one pass, such as replaying a year for reconciliation or
+ * back pay.
+ *
+ * Time cards carry a period column (employee_id,hours_worked,period). The roster is loaded
+ * once into an {@link EmployeeTable}, and each period is applied in order with the YTD totals
+ * carried in memory, giving the same pay as one run per period. Pay stubs for every period go
+ * to a single file with the period in front of each stub, written as each period is paid, and
+ * employees.csv is written once at the end.
+ *
+ * Unless the cards are already in period order, they are sorted by period with an
+ * {@link ExternalSorter} first, spilling beside the pay stub file past {@link #SORT_BUDGET}.
+ * Either way only one period's cards are in memory at once, so memory is the roster, one
+ * period and the sort budget, however many periods there are. Employees skipped for a missing
+ * card or negative hours are counted, with one line per period.
+ *
+ * Periods that are whole numbers are applied in numeric order, before any others, which are
+ * applied in text order (so 2024-06-15 style dates work too). Optionally each period's stubs
+ * are also written to a file of their own, the same as a single run for that period would
+ * write. All the files are committed as one unit.
+ */
+public final class MultiPeriodPayroll {
+    /** header line of a time card file with a period column. */
+    static final String TIME_CARD_HEADER = "employee_id,hours_worked,period";
+
+    /** header line of the combined pay stub file. */
+    static final String PAY_STUB_HEADER = "period," + FileUtil.PAY_STUB_HEADER;
+
+    /** the order periods are applied in. */
+    static final Comparator<String> PERIOD_ORDER =
+            Comparator.comparing(MultiPeriodPayroll::periodKey);
+
+    /** estimated bytes of time cards held in memory while sorting them by period. */
+    static final long SORT_BUDGET = 64L << 20;
+
+    /** field of the period in a time card line. */
+    private static final int PERIOD_FIELD = 2;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private MultiPeriodPayroll() {
+
+    }
+
+    /**
+     * Applies every period in timeCardFile, in order, to the employees in employeeFile.
+     *
+     * @param employeeFile the employee file, read once and replaced with the final YTD totals
+     * @param timeCardFile the time card file with a period column
+     * @param payrollFile the combined pay stub output file
+     * @param periodDir the directory each period's own pay stub file is written to, or null
+     * @param workers the number of threads to compute pay on, 1 to compute on the caller
+     * @return true if the payroll was written, false if it failed (the error is printed)
+     */
+    public static boolean run(String employeeFile, String timeCardFile, String payrollFile,
+            String periodDir, int workers) {
+        EmployeeTable table = EmployeeTable.read(employeeFile);
+        Path spillDir = Path.of(payrollFile).toAbsolutePath().getParent();
+
+        int rows = table.size();
+        double[] hours = new double[rows];
+        long[] netPay = new long[rows];
+        long[] taxesPaid = new long[rows];
+        List<String> outputs = new ArrayList<>(List.of(employeeFile, payrollFile));
+        StringBuilder csv = new StringBuilder(128);
+        CsvTokenizer fields = new CsvTokenizer();
+        ForkJoinPool pool = workers > 1 ? new ForkJoinPool(workers) : null;
+        try (ExternalSorter sorter = new ExternalSorter(spillDir, SORT_BUDGET);
+                Stream<CharSequence> lines = FileUtil.mapLines(timeCardFile)) {
+            // every card is checked before anything is staged
+            Iterator<ExternalSorter.Record> cards = isInPeriodOrder(timeCardFile)
+                    ? byPeriod(lines.iterator())
+                    : sort(byPeriod(lines.iterator()), sorter);
+            try (RecordWriter payStubOut =
+                    FileUtil.openStagedWriter(payrollFile, PAY_STUB_HEADER)) {
+                if (periodDir != null) {
+                    Files.createDirectories(Path.of(periodDir));
+                }
+                ExternalSorter.Record card = cards.hasNext() ? cards.next() : null;
+                while (card != null) {
+                    String key = card.key;
+                    String period = fields.reset(card.payload).text(PERIOD_FIELD);
+                    TimeCardIndex periodCards = new TimeCardIndex(16);
+                    for (; card != null && card.key.equals(key);
+                            card = cards.hasNext() ? cards.next() : null) {
+                        fields.reset(card.payload);
+                        periodCards.add(fields.text(0), fields.parseDouble(1));
+                    }
+
+                    for (int row = 0; row < rows; row++) {
+                        hours[row] = periodCards.hours(table.getID(row));
+                    }
+                    TablePayroll.pay(table, hours, netPay, taxesPaid, pool);
+
+                    String periodFile = periodDir == null ? null
+                            : periodFile(periodDir, payrollFile, period);
+                    if (periodFile != null) {
+                        outputs.add(periodFile);
+                    }
+                    int missing = 0;
+                    int negative = 0;
+                    try (RecordWriter periodOut = periodFile == null ? null
+                            : FileUtil.openStagedWriter(periodFile, FileUtil.PAY_STUB_HEADER)) {
+                        for (int row = 0; row < rows; row++) {
+                            if (netPay[row] == EmployeeTable.NO_PAY) {
+                                if (Double.isNaN(hours[row])) {
+                                    missing++;
+                                } else {
+                                    negative++;
+                                }
+                                continue;
+                            }
+                            String payStub =
+                                    table.payStub(row, netPay[row], taxesPaid[row]).toCSV();
+                            csv.setLength(0);
+                            CsvTokenizer.appendField(csv, period).append(',');
+                            payStubOut.write(csv.append(payStub));
+                            if (periodOut != null) {
+                                periodOut.write(payStub);
+                            }
+                        }
+                    }
+                    if (missing + negative > 0) {
+                        System.out.println("Period " + period + ": skipped " + missing
+                                + " employees with no time card and " + negative
+                                + " with negative worked hours");
+                    }
+                }
+
+                try (RecordWriter employeeOut =
+                        FileUtil.openStagedWriter(employeeFile, FileUtil.EMPLOYEE_HEADER)) {
+                    for (int row = 0; row < rows; row++) {
+                        employeeOut.write(table.toCSV(row));
+                    }
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Error running payroll: " + e.getMessage());
+            for (String output : outputs) {
+                FileUtil.discardStaged(output);
+            }
+            return false;
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+
+        return FileUtil.commitStaged(outputs, true);
+    }
+
+    /**
+     * Checks if a time card file's lines are already in the order periods are applied in, so
+     * they don't need sorting.
+     *
+     * @param timeCardFile the time card file with a period column
+     * @return true if no line's period is applied before the one of the line above it
+     */
+    static boolean isInPeriodOrder(String timeCardFile) {
+        CsvTokenizer fields = new CsvTokenizer();
+        String previous = null;
+        try (Stream<CharSequence> lines = FileUtil.mapLines(timeCardFile)) {
+            Iterator<CharSequence> it = lines.iterator();
+            while (it.hasNext()) {
+                fields.reset(it.next());
+                if (fields.fieldCount() <= PERIOD_FIELD) {
+                    return false; // invalid, and reported when the cards are read
+                }
+                String period = fields.text(PERIOD_FIELD);
+                if (previous != null && PERIOD_ORDER.compare(previous, period) > 0) {
+                    return false;
+                }
+                previous = period;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks time card lines and wraps them as records keyed by {@link #periodKey}, numbered
+     * in file order.
+     *
+     * @param lines the time card lines
+     * @return the records, keeping the order of the lines
+     * @throws IllegalArgumentException from next() if a line is not a valid period time card
+     */
+    private static Iterator<ExternalSorter.Record> byPeriod(Iterator<CharSequence> lines) {
+        CsvTokenizer fields = new CsvTokenizer();
+        return new Iterator<>() {
+            /** line number of the next line. */
+            private long seq;
+
+            @Override
+            public boolean hasNext() {
+                return lines.hasNext();
+            }
+
+            @Override
+            public ExternalSorter.Record next() {
+                String line = lines.next().toString();
+                Builder.checkPeriodTimeCard(fields.reset(line));
+                return new ExternalSorter.Record(periodKey(fields.text(PERIOD_FIELD)), seq++,
+                        line);
+            }
+        };
+    }
+
+    /**
+     * Sorts time card records by period through an external sorter, reading them all before
+     * returning.
+     *
+     * @param records the records to sort
+     * @param sorter an empty sorter
+     * @return the records in period order, each period's in file order
+     * @throws IOException if the sorter can't spill or read its runs
+     */
+    private static Iterator<ExternalSorter.Record> sort(Iterator<ExternalSorter.Record> records,
+            ExternalSorter sorter) throws IOException {
+        while (records.hasNext()) {
+            ExternalSorter.Record record = records.next();
+            sorter.add(record.key, record.seq, record.payload);
+        }
+        return sorter.sorted();
+    }
+
+    /**
+     * Gets the file a period's own pay stubs are written to: the payroll file's name with the
+     * period added, in periodDir. pay_stubs.csv for period 3 is pay_stubs_3.csv. Any character
+     * of the period other than an ASCII letter, digit, '.', '_' or '-' is written as '%' and the
+     * hex of its UTF-8 bytes, like a URL, so no two periods share a file: 2024/06 is 2024%2F06
+     * and 2024:06 is 2024%3A06.
+     *
+     * @param periodDir the directory of period files
+     * @param payrollFile the combined pay stub file
+     * @param period the period
+     * @return the period's pay stub file
+     */
+    static String periodFile(String periodDir, String payrollFile, String period) {
+        String name = Path.of(payrollFile).getFileName().toString();
+        int dot = name.indexOf('.');
+        String base = dot < 0 ? name : name.substring(0, dot);
+        String extension = dot < 0 ? "" : name.substring(dot);
+        StringBuilder label = new StringBuilder(period.length());
+        for (byte b : period.getBytes(StandardCharsets.UTF_8)) {
+            if ((b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z') || (b >= '0' && b <= '9')
+                    || b == '.' || b == '_' || b == '-') {
+                label.append((char) b);
+            } else {
+                label.append('%').append(String.format("%02X", b & 0xFF));
+            }
+        }
+        return Path.of(periodDir, base + "_" + label + extension).toString();
+    }
+
+    /**
+     * Gets the key a period is sorted by, text whose natural order is the order periods are
+     * applied in: whole numbers by value and before anything else, and the rest as text. A
+     * whole number's key is its digit count, padded to a fixed width, then its digits, so the
+     * text order of the keys is the numeric order; equal numbers such as 2 and 002 are then
+     * ordered by the period as written.
+     *
+     * @param period the period
+     * @return the sort key, different for every period
+     */
+    static String periodKey(String period) {
+        if (!isWholeNumber(period)) {
+            return "1" + period;
+        }
+        String digits = stripLeadingZeros(period);
+        return "0" + String.format("%010d", digits.length()) + digits + "\0" + period;
+    }
+
+    /**
+     * Checks if a period is made only of digits.
+     *
+     * @param period the period
+     * @return true if it is a whole number
+     */
+    private static boolean isWholeNumber(String period) {
+        if (period.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < period.length(); i++) {
+            if (period.charAt(i) < '0' || period.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes leading zeros from a whole number, keeping at least one digit.
+     *
+     * @param digits the number
+     * @return the number without leading zeros
+     */
+    private static String stripLeadingZeros(String digits) {
+        int start = 0;
+        while (start < digits.length() - 1 && digits.charAt(start) == '0') {
+            start++;
+        }
+        return digits.substring(start);
+    }
+}
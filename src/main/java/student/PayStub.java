@@ -11,17 +11,17 @@ public class PayStub implements IPayStub {
     /** The name of the employee. */
     private final String name;
 
-    /** The net pay for the employee. */
-    private final double netPay;
+    /** The net pay for the employee, in cents. */
+    private final long netPay;
 
-    /** The taxes paid by the employee. */
-    private final double taxesPaid;
+    /** The taxes paid by the employee, in cents. */
+    private final long taxesPaid;
 
-    /** The year-to-date earnings of the employee. */
-    private final double ytdEarnings;
+    /** The year-to-date earnings of the employee, in cents. */
+    private final long ytdEarnings;
 
-    /** The year-to-date taxes paid by the employee. */
-    private final double ytdTaxesPaid;
+    /** The year-to-date taxes paid by the employee, in cents. */
+    private final long ytdTaxesPaid;
 
     /**
      * Constructs a PayStub with the given details.
@@ -33,6 +33,20 @@ public class PayStub implements IPayStub {
      * @param ytdTaxesPaid The year-to-date taxes paid
      */
     public PayStub(String name, double netPay, double taxesPaid, double ytdEarnings, double ytdTaxesPaid) {
+        this(name, Money.toCents(netPay), Money.toCents(taxesPaid), Money.toCents(ytdEarnings),
+                Money.toCents(ytdTaxesPaid));
+    }
+
+    /**
+     * Constructs a PayStub from amounts already in cents.
+     *
+     * @param name The name of the employee
+     * @param netPay The net pay for the pay period, in cents
+     * @param taxesPaid The taxes paid for the pay period, in cents
+     * @param ytdEarnings The year-to-date earnings, in cents
+     * @param ytdTaxesPaid The year-to-date taxes paid, in cents
+     */
+    private PayStub(String name, long netPay, long taxesPaid, long ytdEarnings, long ytdTaxesPaid) {
         this.name = name;
         this.netPay = netPay;
         this.taxesPaid = taxesPaid;
@@ -40,6 +54,21 @@ public class PayStub implements IPayStub {
         this.ytdTaxesPaid = ytdTaxesPaid;
     }
 
+    /**
+     * Creates a PayStub from amounts in cents.
+     *
+     * @param name The name of the employee
+     * @param netPay The net pay for the pay period, in cents
+     * @param taxesPaid The taxes paid for the pay period, in cents
+     * @param ytdEarnings The year-to-date earnings, in cents
+     * @param ytdTaxesPaid The year-to-date taxes paid, in cents
+     * @return the pay stub
+     */
+    public static PayStub ofCents(String name, long netPay, long taxesPaid, long ytdEarnings,
+            long ytdTaxesPaid) {
+        return new PayStub(name, netPay, taxesPaid, ytdEarnings, ytdTaxesPaid);
+    }
+
     /**
      * Returns the net pay for the pay period.
      *
@@ -47,7 +76,7 @@ public class PayStub implements IPayStub {
      */
     @Override
     public double getPay() {
-        return this.netPay;
+        return Money.toDouble(this.netPay);
     }
 
     /**
@@ -56,7 +85,7 @@ public class PayStub implements IPayStub {
      * @return The taxes paid
      */
     public double getTaxesPaid() {
-        return this.taxesPaid;
+        return Money.toDouble(this.taxesPaid);
     }
 
     /**
@@ -67,12 +96,11 @@ public class PayStub implements IPayStub {
      */
     @Override
     public String toCSV() {
-        return String.format("%s,%s,%s,%s,%s",
-                name,
-                formatDecimal(netPay),
-                formatDecimal(taxesPaid),
-                formatDecimal(ytdEarnings),
-                formatDecimal(ytdTaxesPaid));
+        StringBuilder csv = CsvTokenizer.appendField(new StringBuilder(64), name).append(',');
+        appendDecimal(csv, netPay).append(',');
+        appendDecimal(csv, taxesPaid).append(',');
+        appendDecimal(csv, ytdEarnings).append(',');
+        return appendDecimal(csv, ytdTaxesPaid).toString();
     }
 
     /**
@@ -80,14 +108,16 @@ public class PayStub implements IPayStub {
      * If the value is an integer, it keeps one decimal place.
      * Otherwise, it keeps two decimal places.
      *
-     * @param value The value to format
-     * @return The formatted decimal as a string
+     * @param csv The builder to append the formatted value to
+     * @param cents The value to format, in cents
+     * @return the builder
      */
-    private String formatDecimal(double value) {
+    private static StringBuilder appendDecimal(StringBuilder csv, long cents) {
+        double value = Money.toDouble(cents);
         if (value * 10 == Math.floor(value * 10)) {
-            return String.format("%.1f", value);
+            return Money.appendTenths(csv, cents);
         } else {
-            return String.format("%.2f", value);
+            return Money.appendCents(csv, cents);
         }
     }
 }
@@ -0,0 +1,272 @@
+package student;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A block of consecutive employee lines to be paid together.
+ *
+ * Each row is parsed, paid and formatted independently of the others, and the results are
+ * stored by row index, so the rows can be computed in any order (or in parallel on a
+ * ForkJoinPool, splitting the range in halves) and still be written out in input order.
+ */
+final class PayrollBatch extends RecursiveAction {
+    /** rows at or below this count are computed directly instead of being split further. */
+    private static final int SPLIT_THRESHOLD = 256;
+
+    /** serial version, as RecursiveAction is Serializable. */
+    private static final long serialVersionUID = 1L;
+
+    /** the shared batch state; tasks are never serialized, so it isn't either. */
+    private final transient Rows rows;
+
+    /** first row (inclusive) this task computes. */
+    private final int from;
+
+    /** last row (exclusive) this task computes. */
+    private final int to;
+
+    /**
+     * Creates a task computing rows [from, to) of the batch.
+     *
+     * @param rows the batch state
+     * @param from first row, inclusive
+     * @param to last row, exclusive
+     */
+    private PayrollBatch(Rows rows, int from, int to) {
+        this.rows = rows;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Creates a task computing every row of the batch.
+     *
+     * @param rows the batch state
+     * @return the root task
+     */
+    static PayrollBatch of(Rows rows) {
+        return new PayrollBatch(rows, 0, rows.size);
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= SPLIT_THRESHOLD) {
+            for (int i = from; i < to; i++) {
+                rows.computeRow(i);
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        invokeAll(new PayrollBatch(rows, from, mid), new PayrollBatch(rows, mid, to));
+    }
+
+    /**
+     * The inputs and results of a batch. The arrays are reused from one batch to the next.
+     */
+    static final class Rows {
+        /** employee lines read from the file. */
+        final CharSequence[] lines;
+
+        /** the updated employee line for each row. */
+        final String[] employeeCSV;
+
+        /** the pay stub line for each row, or null if the employee was skipped. */
+        final String[] payStubCSV;
+
+        /** the reason the employee was skipped for each row, or null. */
+        final String[] notices;
+
+        /** the reason each row was rejected in a lenient batch, or null. */
+        final String[] rejects;
+
+        /** the employee {@link #parseRow} built for each row, until {@link #payRow} pays it. */
+        private final IEmployee[] employees;
+
+        /** line number of the first row in the employee file, counting the header as 1. */
+        long firstLine = 2;
+
+        /** hours for each employee ID. */
+        private final TimeCardIndex timeCards;
+
+        /** where the parse, pay and format time of each row is added. */
+        private final PayrollMetrics metrics;
+
+        /** whether invalid rows are rejected rather than thrown. */
+        private final boolean lenient;
+
+        /** number of rows currently filled. */
+        int size;
+
+        /**
+         * Creates an empty batch.
+         *
+         * @param capacity the maximum number of rows
+         * @param timeCards hours for each employee ID, only read
+         */
+        Rows(int capacity, TimeCardIndex timeCards) {
+            this(capacity, timeCards, PayrollMetrics.DISABLED);
+        }
+
+        /**
+         * Creates an empty batch that times its rows.
+         *
+         * @param capacity the maximum number of rows
+         * @param timeCards hours for each employee ID, only read
+         * @param metrics where the time of each row is added
+         */
+        Rows(int capacity, TimeCardIndex timeCards, PayrollMetrics metrics) {
+            this(capacity, timeCards, metrics, false);
+        }
+
+        /**
+         * Creates an empty batch that times its rows, and may reject invalid rows. A rejected
+         * row gets a reason in {@link #rejects}, no pay stub, and its line kept unchanged as its
+         * updated employee line, so nothing is lost from the employee file.
+         *
+         * @param capacity the maximum number of rows
+         * @param timeCards hours for each employee ID, only read
+         * @param metrics where the time of each row is added
+         * @param lenient if true, invalid rows are rejected; if false, they throw
+         */
+        Rows(int capacity, TimeCardIndex timeCards, PayrollMetrics metrics, boolean lenient) {
+            this.lines = new CharSequence[capacity];
+            this.employeeCSV = new String[capacity];
+            this.payStubCSV = new String[capacity];
+            this.notices = new String[capacity];
+            this.rejects = new String[capacity];
+            this.employees = new IEmployee[capacity];
+            this.timeCards = timeCards;
+            this.metrics = metrics;
+            this.lenient = lenient;
+        }
+
+        /**
+         * Checks if there is no room for another row.
+         *
+         * @return true if the batch is full
+         */
+        boolean isFull() {
+            return size == lines.length;
+        }
+
+        /**
+         * Parses, pays and formats a single row.
+         *
+         * @param i the row index
+         */
+        void computeRow(int i) {
+            if (metrics.isEnabled()) {
+                computeRowTimed(i);
+                return;
+            }
+            IEmployee employee = parse(i);
+            if (employee != null) {
+                pay(i, employee);
+            }
+        }
+
+        /**
+         * Builds the employee of a single row, the first half of {@link #computeRow}, for
+         * when parsing and paying run on different threads. {@link #payRow} finishes the row.
+         *
+         * @param i the row index
+         */
+        void parseRow(int i) {
+            employees[i] = parse(i);
+        }
+
+        /**
+         * Pays and formats a row built by {@link #parseRow}.
+         *
+         * @param i the row index
+         */
+        void payRow(int i) {
+            IEmployee employee = employees[i];
+            employees[i] = null;
+            if (employee != null) {
+                pay(i, employee);
+            }
+        }
+
+        /**
+         * Same as {@link #computeRow}, adding the time of each step to the metrics.
+         *
+         * @param i the row index
+         */
+        private void computeRowTimed(int i) {
+            long start = metrics.start();
+            IEmployee employee = parse(i);
+            long paid = metrics.start();
+            metrics.end(PayrollMetrics.Phase.PARSE, start);
+            if (employee == null) {
+                return;
+            }
+
+            IPayStub payStub = compute(i, employee);
+            long formatted = metrics.start();
+            metrics.end(PayrollMetrics.Phase.PAY, paid);
+            format(i, employee, payStub);
+            metrics.end(PayrollMetrics.Phase.FORMAT, formatted);
+        }
+
+        /**
+         * Pays an employee and formats the results of their row.
+         *
+         * @param i the row index
+         * @param employee the employee built from the row
+         */
+        private void pay(int i, IEmployee employee) {
+            format(i, employee, compute(i, employee));
+        }
+
+        /**
+         * Pays an employee with the hours on their time card, or stores the reason they are
+         * skipped.
+         *
+         * @param i the row index
+         * @param employee the employee built from the row
+         * @return the pay stub, or null if the employee was skipped
+         */
+        private IPayStub compute(int i, IEmployee employee) {
+            double hoursWorked = timeCards.hours(employee.getID());
+            notices[i] = StreamingPayroll.skipReason(employee, hoursWorked);
+            return notices[i] == null ? employee.runPayroll(hoursWorked) : null;
+        }
+
+        /**
+         * Formats the results of a row paid by {@link #compute}.
+         *
+         * @param i the row index
+         * @param employee the employee, with their updated YTD values
+         * @param payStub the pay stub, or null if the employee was skipped
+         */
+        private void format(int i, IEmployee employee, IPayStub payStub) {
+            payStubCSV[i] = payStub == null ? null : payStub.toCSV();
+            employeeCSV[i] = employee.toCSV();
+        }
+
+        /**
+         * Builds the employee of a row. In a lenient batch, an invalid row is rejected instead:
+         * its reason is stored and its line passed through, and null is returned.
+         *
+         * @param i the row index
+         * @return the employee, or null if the row was rejected
+         */
+        private IEmployee parse(int i) {
+            if (!lenient) {
+                return Builder.buildEmployeeFromCSV(lines[i]);
+            }
+            CsvTokenizer fields = Builder.tokenize(lines[i]);
+            int result = Builder.validateEmployee(fields);
+            if (result != Builder.VALID) {
+                rejects[i] = Builder.describe(result, fields);
+                notices[i] = null;
+                payStubCSV[i] = null;
+                employeeCSV[i] = lines[i].toString();
+                return null;
+            }
+            rejects[i] = null;
+            return Builder.buildEmployee(fields);
+        }
+    }
+}
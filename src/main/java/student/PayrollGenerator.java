@@ -1,9 +1,9 @@
 package student;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.LinkedList;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Main driver for the PayrollGenerator program.
@@ -47,76 +47,144 @@ public final class PayrollGenerator {
     public static void main(String[] args) {
         Arguments arguments = Arguments.process(args); // leave this, and make sure you use it on
                                                        // reading/writing files!
+        if (arguments.getRulesFile() != null) {
+            // brackets are compiled once, then shared by every thread for the whole run
+            try {
+                TaxTable.setActive(TaxTable.read(arguments.getRulesFile()));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Error reading tax rules: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+        // a run that crashed part way through its commit is finished before anything is read
+        FileUtil.recoverStaged(arguments.getEmployeeFile());
+
+        if (arguments.getPort() >= 0) {
+            // the roster stays loaded, and payroll is run for each batch of cards posted
+            try {
+                PayrollServer.start(arguments.getEmployeeFile(), arguments.getPayrollFile(),
+                    arguments.getPort());
+            } catch (IOException e) {
+                System.err.println("Error starting payroll server: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        if (arguments.getBatchFile() != null) {
+            // every company in the batch manifest is run in this one JVM
+            int failed = BatchPayroll.run(arguments.getBatchFile(),
+                    arguments.getWorkers(Runtime.getRuntime().availableProcessors()));
+            if (failed > 0) {
+                System.exit(1);
+            }
+            return;
+        }
+        if (arguments.getShards() > 0) {
+            // each shard of the roster is its own process, merged back in roster order
+            if (!runShards(arguments)) {
+                System.exit(1);
+            }
+            return;
+        }
+        if (arguments.getManifestFile() != null) {
+            // only the time cards not listed in the manifest are applied
+            if (!IncrementalPayroll.run(arguments.getEmployeeFile(), arguments.getTimeCards(),
+                    arguments.getPayrollFile(), arguments.getManifestFile())) {
+                System.exit(1);
+            }
+            return;
+        }
+        if (arguments.getMemoryBudget() > 0) {
+            // time cards are joined to employees by sorting both on disk, not in a hash table
+            if (!SortMergePayroll.run(arguments.getEmployeeFile(), arguments.getTimeCards(),
+                    arguments.getPayrollFile(), arguments.getMemoryBudget())) {
+                System.exit(1);
+            }
+            return;
+        }
+        if (arguments.getPeriodCardFile() != null) {
+            // the roster is loaded once and every period in the file is applied in order
+            if (!MultiPeriodPayroll.run(arguments.getEmployeeFile(),
+                    arguments.getPeriodCardFile(), arguments.getPayrollFile(),
+                    arguments.getPeriodDir(), arguments.getWorkers())) {
+                System.exit(1);
+            }
+            return;
+        }
+        if (arguments.getSnapshotFile() != null) {
+            // the roster is loaded from (and saved to) a binary snapshot, skipping CSV parsing
+            if (!TablePayroll.run(arguments.getEmployeeFile(), arguments.getTimeCards(),
+                    arguments.getPayrollFile(), arguments.getSnapshotFile(),
+                    arguments.getWorkers())) {
+                System.exit(1);
+            }
+            return;
+        }
+        if (arguments.getBufferChunks() > 0) {
+            // reading, parsing, paying and writing run at once, as stages with bounded buffers
+            if (!PipelinedPayroll.run(arguments.getEmployeeFile(), arguments.getTimeCards(),
+                    arguments.getPayrollFile(), arguments.getWorkers(), arguments.getWorkers(),
+                    arguments.getBufferChunks())) {
+                System.exit(1);
+            }
+            return;
+        }
+        // records flow one line at a time from the readers, through payroll, to the writers,
+        // so memory use doesn't grow with the size of the roster
+        ForkJoinPool pool =
+                arguments.getWorkers() > 1 ? new ForkJoinPool(arguments.getWorkers()) : null;
+        PayrollMetrics metrics = PayrollMetrics.start(arguments.getStatsFile());
+        boolean written;
+        try {
+            written = StreamingPayroll.run(arguments.getEmployeeFile(), arguments.getTimeCards(),
+                    arguments.getPayrollFile(), pool, metrics, arguments.getRejectsFile());
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+        metrics.finish();
+        if (arguments.getStatsFile() != null) {
+            metrics.appendTo(arguments.getStatsFile(), arguments.getEmployeeFile());
+        }
+        if (!written) {
+            System.exit(1); // so a batch or shard driver sees the failure
+        }
+    }
 
-        // you are free to modify this code, or use it as a basis for your code
-        // depends on how you want to implement the program
-
-        List<String> employeeLines = FileUtil.readFileToList(arguments.getEmployeeFile());
-        List<String> timeCards = FileUtil.readFileToList(arguments.getTimeCards());
-
-        List<IEmployee> employees = employeeLines.stream().map(Builder::buildEmployeeFromCSV)
-                .collect(Collectors.toList());
-
-        List<ITimeCard> timeCardList = timeCards.stream().map(Builder::buildTimeCardFromCSV)
-                .collect(Collectors.toList());
-
-        List<IPayStub> payStubs = new LinkedList<>();
-
-
-        // now we suggest looping through the timeCardList and for each timecard, find
-        // the matching employee and generate a new paystub object. Then add that paystub
-        // to the payStubs list. - remember, you can use the employee ID to match the employee
-        // to the time card. Also remember if the value is negative, you just skip that payStub
-        // as it is invalid, but if is 0, you still generate a paystub, but the amount is 0.
-
-        //YOUR CODE HERE
-        // 创建时间卡的映射，方便快速查找员工的工时
-        Map<String, Double> timeCardMap = timeCardList.stream()
-                .collect(Collectors.toMap(
-                        ITimeCard::getEmployeeID,
-                        ITimeCard::getHoursWorked
-                ));
-
-        // 遍历员工列表，生成工资单
-        for (IEmployee employee : employees) {
-            String employeeID = employee.getID();
-            Double hoursWorked = timeCardMap.get(employeeID);
-
-            if (hoursWorked != null) {
-                // 如果工时小于 0，跳过该员工
-                if (hoursWorked < 0) {
-                    System.out.println("Skipping negative worked hours: " + employee.getName());
-                    continue;
+    /**
+     * Runs the shard phase that was asked for: split the inputs, merge the shards' results, or
+     * both with a process for each shard in between. Tax rules, workers and the stats file are
+     * passed on to every shard, which appends its own line of stats.
+     *
+     * @param arguments the arguments
+     * @return true if the phase succeeded
+     */
+    private static boolean runShards(Arguments arguments) {
+        String shardDir = ShardedPayroll.shardDir(arguments.getEmployeeFile());
+        switch (arguments.getShardPhase()) {
+            case "split":
+                return ShardedPayroll.split(arguments.getEmployeeFile(), arguments.getTimeCards(),
+                    arguments.getPayrollFile(), shardDir, arguments.getShards());
+            case "merge":
+                return ShardedPayroll.merge(arguments.getEmployeeFile(), arguments.getTimeCards(),
+                    arguments.getPayrollFile(), shardDir, arguments.getShards());
+            default:
+                List<String> options = new ArrayList<>();
+                if (arguments.getRulesFile() != null) {
+                    options.addAll(List.of("-r", arguments.getRulesFile()));
                 }
-
-                // 生成工资单
-                IPayStub payStub = employee.runPayroll(hoursWorked);
-
-                // 如果生成的工资单不为空，添加到 payStubs 列表
-                if (payStub != null) {
-                    payStubs.add(payStub);
+                if (arguments.getWorkers(0) > 0) {
+                    options.addAll(List.of("-j", String.valueOf(arguments.getWorkers())));
                 }
-            } else {
-                System.out.println("No time card found for employee: " + employee.getName());
-                continue;
-            }
+                if (arguments.getStatsFile() != null) {
+                    options.addAll(List.of("-s", arguments.getStatsFile()));
+                }
+                return ShardedPayroll.run(arguments.getEmployeeFile(), arguments.getTimeCards(),
+                    arguments.getPayrollFile(), shardDir, arguments.getShards(), options);
         }
-
-         // now save out employees to a new file
-
-         employeeLines = employees.stream().map(IEmployee::toCSV).collect(Collectors.toList());
-         employeeLines.add(0, FileUtil.EMPLOYEE_HEADER);
-         FileUtil.writeFile(arguments.getEmployeeFile(), employeeLines);
- 
-         // now save out the pay stubs
-         List<String> payStubLines = payStubs.stream().filter(x -> x != null).map(IPayStub::toCSV)
-                 .collect(Collectors.toList());
-         payStubLines.add(0, FileUtil.PAY_STUB_HEADER);
-         FileUtil.writeFile(arguments.getPayrollFile(), payStubLines);
-
     }
 
-
     /**
      * This is an internal class. Please leave it as is/do not modify! This design is common for
      * processing arguments if you want to make sure it is unique to the driver.
@@ -131,6 +199,47 @@ public final class PayrollGenerator {
         /** sets the timeCards argument. */
         private String timeCards = DEFAULT_TIME_CARD_FILE;
 
+        /** sets the workers argument, 0 if it wasn't given. */
+        private int workers;
+
+        /** sets the snapshotFile argument, null to not use a snapshot. */
+        private String snapshotFile;
+
+        /** sets the manifestFile argument, null to run payroll for every time card. */
+        private String manifestFile;
+
+        /** sets the memoryBudget argument in bytes, 0 to join time cards in memory. */
+        private long memoryBudget;
+
+        /** sets the batchFile argument, null to run a single company. */
+        private String batchFile;
+
+        /** sets the port argument, -1 to run once instead of serving. */
+        private int port = -1;
+
+        /** sets the statsFile argument, null to not write run metrics. */
+        private String statsFile;
+
+        /** sets the rulesFile argument, null for the flat tax rate. */
+        private String rulesFile;
+
+        /** sets the rejectsFile argument, null to stop at the first invalid record. */
+        private String rejectsFile;
+
+        /** sets the periodCardFile argument, null to run a single period. */
+        private String periodCardFile;
+
+        /** sets the periodDir argument, null to not write a pay stub file per period. */
+        private String periodDir;
+
+        /** sets the bufferChunks argument, 0 to not run payroll as a pipeline. */
+        private int bufferChunks;
+
+        /** sets the shards argument, 0 to not shard the roster. */
+        private int shards;
+
+        /** sets the shardPhase argument: split, merge, or all of a sharded run. */
+        private String shardPhase = "all";
 
         /**
          * Constructor for Arguments. Setup as private, so builder has to be used.
@@ -168,12 +277,175 @@ public final class PayrollGenerator {
             return timeCards;
         }
 
+        /**
+         * Gets the number of worker threads payroll is computed on.
+         * 
+         * @return the number of workers
+         */
+        public int getWorkers() {
+            return getWorkers(1);
+        }
+
+        /**
+         * Gets the number of worker threads payroll is computed on.
+         * 
+         * @param defaultWorkers the number to use if none was given
+         * @return the number of workers
+         */
+        public int getWorkers(int defaultWorkers) {
+            return workers > 0 ? workers : defaultWorkers;
+        }
+
+        /**
+         * Gets the roster snapshot file.
+         * 
+         * @return the name of the snapshot file, or null if none was given
+         */
+        public String getSnapshotFile() {
+            return snapshotFile;
+        }
+
+        /**
+         * Gets the manifest of applied time cards.
+         * 
+         * @return the name of the manifest file, or null if none was given
+         */
+        public String getManifestFile() {
+            return manifestFile;
+        }
+
+        /**
+         * Gets the memory budget for sorting the inputs on disk.
+         * 
+         * @return the budget in bytes, or 0 if the inputs are joined in memory
+         */
+        public long getMemoryBudget() {
+            return memoryBudget;
+        }
+
+        /**
+         * Gets the batch manifest of companies to run.
+         * 
+         * @return the name of the batch manifest, or null to run a single company
+         */
+        public String getBatchFile() {
+            return batchFile;
+        }
+
+        /**
+         * Gets the port to serve payroll on.
+         * 
+         * @return the port, 0 for any free port, or -1 to run once instead of serving
+         */
+        public int getPort() {
+            return port;
+        }
+
+        /**
+         * Gets the file the metrics of the run are appended to.
+         * 
+         * @return the name of the stats file, or null to not write metrics
+         */
+        public String getStatsFile() {
+            return statsFile;
+        }
+
+        /**
+         * Gets the tax rules to run payroll with.
+         * 
+         * @return the name of the tax rules file, or null for the flat tax rate
+         */
+        public String getRulesFile() {
+            return rulesFile;
+        }
+
+        /**
+         * Gets the file records that can't be parsed are written to.
+         * 
+         * @return the name of the rejects file, or null to stop at the first invalid record
+         */
+        public String getRejectsFile() {
+            return rejectsFile;
+        }
+
+        /**
+         * Gets the time card file with a period column, for running many periods at once.
+         * 
+         * @return the name of the period time card file, or null to run a single period
+         */
+        public String getPeriodCardFile() {
+            return periodCardFile;
+        }
+
+        /**
+         * Gets the directory each period's pay stubs are also written to.
+         * 
+         * @return the name of the directory, or null to only write the combined pay stub file
+         */
+        public String getPeriodDir() {
+            return periodDir;
+        }
+
+        /**
+         * Gets the number of chunks buffered between the stages of a pipelined run.
+         * 
+         * @return the number of chunks, or 0 to not run payroll as a pipeline
+         */
+        public int getBufferChunks() {
+            return bufferChunks;
+        }
+
+        /**
+         * Gets the number of shards the roster is split into.
+         * 
+         * @return the number of shards, or 0 to not shard the roster
+         */
+        public int getShards() {
+            return shards;
+        }
+
+        /**
+         * Gets the phase of a sharded run to do.
+         * 
+         * @return split, merge, or all
+         */
+        public String getShardPhase() {
+            return shardPhase;
+        }
+
+        /**
+         * Gets the option that picked the way payroll is run, checked in the same order as
+         * {@link PayrollGenerator#main(String[])} checks them.
+         * 
+         * @return the option, such as -q, or null for a streaming run
+         */
+        public String getMode() {
+            if (port >= 0) {
+                return "-p";
+            } else if (batchFile != null) {
+                return "-f";
+            } else if (shards > 0) {
+                return "-k";
+            } else if (manifestFile != null) {
+                return "-i";
+            } else if (memoryBudget > 0) {
+                return "-x";
+            } else if (periodCardFile != null) {
+                return "-m";
+            } else if (snapshotFile != null) {
+                return "-b";
+            } else if (bufferChunks > 0) {
+                return "-q";
+            }
+            return null;
+        }
+
         /**
          * Prints the help message.
          */
         public void printHelp() {
             System.out.println(
-                    "Usage: java student.PayrollGenerator [-e employee_file] [-t time_cards_file] [-o payroll_file]");
+                    "Usage: java student.PayrollGenerator [-e employee_file] [-t time_cards_file] [-o payroll_file] [-j workers] [-b snapshot_file] [-i manifest_file] [-x memory_mb] [-f batch_file] [-p port] [-s stats_file] [-r tax_rules_file] [-l rejects_file] [-m period_cards_file] [-d period_dir] [-q buffer_chunks] [-k shards] [-g split|merge|all]");
             System.out.println("Options:");
             System.out.println(
                     "  -e employee_file  Input file containing employee information. Default is employees.csv");
@@ -181,6 +453,34 @@ public final class PayrollGenerator {
                     "  -t time_cards_file  Input file containing time card information. Default is time_cards.csv");
             System.out.println(
                     "  -o payroll_file   Output file containing payroll information. Default is pay_stubs.csv");
+            System.out.println(
+                    "  -j workers        Number of threads to compute payroll on. Default is 1 (one per CPU with -f)");
+            System.out.println(
+                    "  -b snapshot_file  Binary roster snapshot, loaded if current and saved after the run");
+            System.out.println(
+                    "  -i manifest_file  Only apply time cards not yet in the manifest, appending new pay stubs");
+            System.out.println(
+                    "  -x memory_mb      Sort the inputs on disk within this many MB instead of joining in memory");
+            System.out.println(
+                    "  -f batch_file     Run every employee_file,time_cards_file,payroll_file line of the file");
+            System.out.println(
+                    "  -p port           Serve POST /payroll on localhost, keeping the roster loaded");
+            System.out.println(
+                    "  -s stats_file     Append the time of each phase of the run to this file as a JSON line (alone or with -k)");
+            System.out.println(
+                    "  -r tax_rules_file Tax brackets as component,from,rate,up_to lines. Default is a flat 22.65%");
+            System.out.println(
+                    "  -l rejects_file   Write invalid records here with their line and reason, and pay the rest (not with -p -f -k -i -x -m -b -q)");
+            System.out.println(
+                    "  -m period_cards_file  Time cards with a period column; every period is paid in order");
+            System.out.println(
+                    "  -d period_dir     With -m, also write each period's pay stubs to a file in this directory");
+            System.out.println(
+                    "  -q buffer_chunks  Read, parse, pay and write at once, buffering this many chunks between stages");
+            System.out.println(
+                    "  -k shards         Split the roster by employee ID and run each shard as its own process, one per CPU at a time");
+            System.out.println(
+                    "  -g phase          With -k, only split or merge the shards in employee_file.shards. Default is all");
             System.out.println("  -h                Print this help message");
         }
 
@@ -217,6 +517,119 @@ public final class PayrollGenerator {
                         arguments.printHelp();
                         System.exit(1);
                     }
+                } else if (args[i].equals("-j")) {
+                    if (i + 1 < args.length && args[i + 1].matches("[1-9][0-9]*")) {
+                        arguments.workers = Integer.parseInt(args[i + 1]);
+                    } else {
+                        System.out.println("Missing or invalid argument for -j option");
+                        arguments.printHelp();
+                        System.exit(1);
+                    }
+                } else if (args[i].equals("-b")) {
+                    if (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+                        arguments.snapshotFile = args[i + 1];
+                    } else {
+                        System.out.println("Missing argument for -b option");
+                        arguments.printHelp();
+                        System.exit(1);
+                    }
+                } else if (args[i].equals("-i")) {
+                    if (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+                        arguments.manifestFile = args[i + 1];
+                    } else {
+                        System.out.println("Missing argument for -i option");
+                        arguments.printHelp();
+                        System.exit(1);
+                    }
+                } else if (args[i].equals("-x")) {
+                    if (i + 1 < args.length && args[i + 1].matches("[1-9][0-9]*")) {
+                        arguments.memoryBudget = Long.parseLong(args[i + 1]) << 20;
+                    } else {
+                        System.out.println("Missing or invalid argument for -x option");
+                        arguments.printHelp();
+                        System.exit(1);
+                    }
+                } else if (args[i].equals("-f")) {
+                    if (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+                        arguments.batchFile = args[i + 1];
+                    } else {
+                        System.out.println("Missing argument for -f option");
+                        arguments.printHelp();
+                        System.exit(1);
+                    }
+                } else if (args[i].equals("-p")) {
+                    if (i + 1 < args.length && args[i + 1].matches("[0-9]{1,5}")
+                            && Integer.parseInt(args[i + 1]) <= 65535) {
+                        arguments.port = Integer.parseInt(args[i + 1]);
+                    } else {
+                        System.out.println("Missing or invalid argument for -p option");
+                        arguments.printHelp();
+                        System.exit(1);
+                    }
+                } else if (args[i].equals("-s")) {
+                    if (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+                        arguments.statsFile = args[i + 1];
+                    } else {
+                        System.out.println("Missing argument for -s option");
+                        arguments.printHelp();
+                        System.exit(1);
+                    }
+                } else if (args[i].equals("-r")) {
+                    if (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+                        arguments.rulesFile = args[i + 1];
+                    } else {
+                        System.out.println("Missing argument for -r option");
+                        arguments.printHelp();
+                        System.exit(1);
+                    }
+                } else if (args[i].equals("-l")) {
+                    if (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+                        arguments.rejectsFile = args[i + 1];
+                    } else {
+                        System.out.println("Missing argument for -l option");
+                        arguments.printHelp();
+                        System.exit(1);
+                    }
+                } else if (args[i].equals("-m")) {
+                    if (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+                        arguments.periodCardFile = args[i + 1];
+                    } else {
+                        System.out.println("Missing argument for -m option");
+                        arguments.printHelp();
+                        System.exit(1);
+                    }
+                } else if (args[i].equals("-d")) {
+                    if (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+                        arguments.periodDir = args[i + 1];
+                    } else {
+                        System.out.println("Missing argument for -d option");
+                        arguments.printHelp();
+                        System.exit(1);
+                    }
+                } else if (args[i].equals("-q")) {
+                    if (i + 1 < args.length && args[i + 1].matches("[1-9][0-9]{0,5}")) {
+                        arguments.bufferChunks = Integer.parseInt(args[i + 1]);
+                    } else {
+                        System.out.println("Missing or invalid argument for -q option");
+                        arguments.printHelp();
+                        System.exit(1);
+                    }
+                } else if (args[i].equals("-k")) {
+                    if (i + 1 < args.length && args[i + 1].matches("[1-9][0-9]{0,3}")) {
+                        arguments.shards = Integer.parseInt(args[i + 1]);
+                    } else {
+                        System.out.println("Missing or invalid argument for -k option");
+                        arguments.printHelp();
+                        System.exit(1);
+                    }
+                } else if (args[i].equals("-g")) {
+                    if (i + 1 < args.length && args[i + 1].matches("split|merge|all")) {
+                        arguments.shardPhase = args[i + 1];
+                    } else {
+                        System.out.println("Missing or invalid argument for -g option");
+                        arguments.printHelp();
+                        System.exit(1);
+                    }
                 } else if (args[i].equals("-h")) {
                     arguments.printHelp();
                     System.exit(0);
@@ -226,6 +639,20 @@ public final class PayrollGenerator {
                     System.exit(1);
                 }
             }
+            if (arguments.rejectsFile != null && arguments.getMode() != null) {
+                // only a streaming run pays the rest of the roster around an invalid record
+                System.out.println("Rejects (-l) can't be used with " + arguments.getMode());
+                arguments.printHelp();
+                System.exit(1);
+            }
+            if (arguments.statsFile != null && arguments.getMode() != null
+                    && !("-k".equals(arguments.getMode()) && "all".equals(arguments.shardPhase))) {
+                // only a streaming run is timed, and every shard of a sharded run is one
+                System.out.println("Stats (-s) can't be used with " + arguments.getMode()
+                        + ("-k".equals(arguments.getMode()) ? " -g " + arguments.shardPhase : ""));
+                arguments.printHelp();
+                System.exit(1);
+            }
             return arguments;
         }
     }
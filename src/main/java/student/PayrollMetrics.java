@@ -0,0 +1,448 @@
+package student;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Collects where a payroll run spends its time.
+ *
+ * Each {@link Phase} adds up the nanoseconds spent in it. Phases that run per row (parse, pay,
+ * format) may run on several worker threads at once, so with more than one worker their totals
+ * are thread time rather than wall time. Along with the phases, a run counts records, pay stubs,
+ * bytes read and written, the bytes allocated by every thread (through
+ * com.sun.management.ThreadMXBean, where the JVM supports it), and the hits and misses of the
+ * {@link SalaryPayCache}.
+ *
+ * When the run finishes, the summary can be appended to a stats file as one JSON line, and is
+ * committed as JFR events (student.PayrollRun and one student.PayrollPhase per phase) for any
+ * recording that has them enabled, e.g. {@code -XX:StartFlightRecording}.
+ *
+ * Metrics that are not enabled cost a field read per call.
+ */
+public final class PayrollMetrics {
+    /** metrics that collect nothing. */
+    static final PayrollMetrics DISABLED = new PayrollMetrics(false);
+
+    /** the parts of a payroll run that are timed. */
+    public enum Phase {
+        /** reading the time card file into the index. */
+        TIME_CARDS,
+        /** reading employee lines from the file. */
+        READ,
+        /** building employees from their lines. */
+        PARSE,
+        /** running payroll for each employee. */
+        PAY,
+        /** formatting pay stubs and employees as CSV. */
+        FORMAT,
+        /** writing the records to the staged output files. */
+        WRITE,
+        /** backing up the old files and moving the new ones into place. */
+        COMMIT
+    }
+
+    /** getTotalThreadAllocatedBytes of com.sun.management.ThreadMXBean, or null before Java 21. */
+    private static final Method TOTAL_ALLOCATED = totalAllocatedMethod();
+
+    /** whether anything is collected. */
+    private final boolean enabled;
+
+    /** nanoseconds spent in each phase. */
+    private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+
+    /** employee records processed. */
+    private final LongAdder records = new LongAdder();
+
+    /** pay stubs written. */
+    private final LongAdder payStubs = new LongAdder();
+
+    /** bytes of input read. */
+    private final LongAdder bytesRead = new LongAdder();
+
+    /** bytes of output written. */
+    private final LongAdder bytesWritten = new LongAdder();
+
+    /** System.nanoTime at the start of the run. */
+    private long startNanos;
+
+    /** wall time of the run, set when it finishes. */
+    private long wallNanos;
+
+    /** bytes allocated by all threads at the start of the run, or -1 if unsupported. */
+    private long startAllocated = -1;
+
+    /** bytes allocated during the run, or -1 if unsupported. */
+    private long allocated = -1;
+
+    /** salary pay cache hits at the start of the run, then during it once finished. */
+    private long salaryCacheHits;
+
+    /** salary pay cache misses at the start of the run, then during it once finished. */
+    private long salaryCacheMisses;
+
+    /** the JFR event for the whole run. */
+    private PayrollRunEvent runEvent;
+
+    /**
+     * Creates metrics.
+     *
+     * @param enabled whether anything is collected
+     */
+    PayrollMetrics(boolean enabled) {
+        this.enabled = enabled;
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Creates and starts metrics for a run. They are enabled if a stats file is given or a JFR
+     * recording wants payroll events.
+     *
+     * @param statsFile the file the summary will be appended to, or null
+     * @return the started metrics
+     */
+    public static PayrollMetrics start(String statsFile) {
+        PayrollMetrics metrics = new PayrollMetrics(statsFile != null
+                || new PayrollRunEvent().isEnabled() || new PayrollPhaseEvent().isEnabled());
+        metrics.begin();
+        return metrics;
+    }
+
+    /**
+     * Checks if anything is collected.
+     *
+     * @return true if enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Marks the start of the run.
+     */
+    void begin() {
+        if (!enabled) {
+            return;
+        }
+        runEvent = new PayrollRunEvent();
+        runEvent.begin();
+        startNanos = System.nanoTime();
+        startAllocated = allocatedBytes();
+        salaryCacheHits = SalaryPayCache.SHARED.hits();
+        salaryCacheMisses = SalaryPayCache.SHARED.misses();
+    }
+
+    /**
+     * Gets a timestamp to pass to {@link #end}.
+     *
+     * @return the current System.nanoTime, or 0 if not enabled
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Adds the time since start to a phase.
+     *
+     * @param phase the phase
+     * @param start the value returned by {@link #start()}
+     */
+    public void end(Phase phase, long start) {
+        if (enabled) {
+            phaseNanos[phase.ordinal()].add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Counts employee records processed.
+     *
+     * @param count the number of records
+     */
+    public void addRecords(long count) {
+        if (enabled) {
+            records.add(count);
+        }
+    }
+
+    /**
+     * Counts pay stubs written.
+     *
+     * @param count the number of pay stubs
+     */
+    public void addPayStubs(long count) {
+        if (enabled) {
+            payStubs.add(count);
+        }
+    }
+
+    /**
+     * Counts bytes of input read.
+     *
+     * @param bytes the number of bytes
+     */
+    public void addBytesRead(long bytes) {
+        if (enabled) {
+            bytesRead.add(bytes);
+        }
+    }
+
+    /**
+     * Counts bytes of output written.
+     *
+     * @param bytes the number of bytes
+     */
+    public void addBytesWritten(long bytes) {
+        if (enabled) {
+            bytesWritten.add(bytes);
+        }
+    }
+
+    /**
+     * Gets the nanoseconds spent in a phase so far.
+     *
+     * @param phase the phase
+     * @return the total nanoseconds
+     */
+    public long nanos(Phase phase) {
+        return phaseNanos[phase.ordinal()].sum();
+    }
+
+    /**
+     * Gets the employee records processed so far.
+     *
+     * @return the number of records
+     */
+    public long records() {
+        return records.sum();
+    }
+
+    /**
+     * Marks the end of the run and commits the JFR events.
+     */
+    public void finish() {
+        if (!enabled) {
+            return;
+        }
+        wallNanos = System.nanoTime() - startNanos;
+        long endAllocated = allocatedBytes();
+        allocated = startAllocated < 0 || endAllocated < 0 ? -1 : endAllocated - startAllocated;
+        salaryCacheHits = SalaryPayCache.SHARED.hits() - salaryCacheHits;
+        salaryCacheMisses = SalaryPayCache.SHARED.misses() - salaryCacheMisses;
+
+        for (Phase phase : Phase.values()) {
+            PayrollPhaseEvent event = new PayrollPhaseEvent();
+            if (event.isEnabled()) {
+                event.phase = phase.name().toLowerCase(Locale.ROOT);
+                event.time = nanos(phase);
+                event.commit();
+            }
+        }
+        if (runEvent.isEnabled()) {
+            runEvent.records = records();
+            runEvent.payStubs = payStubs.sum();
+            runEvent.bytesRead = bytesRead.sum();
+            runEvent.bytesWritten = bytesWritten.sum();
+            runEvent.allocated = allocated;
+            runEvent.salaryCacheHits = salaryCacheHits;
+            runEvent.salaryCacheMisses = salaryCacheMisses;
+            runEvent.commit();
+        }
+    }
+
+    /**
+     * Formats the summary of a finished run as a single line of JSON.
+     *
+     * @param label names the run, such as the employee file
+     * @return the JSON object, without a line break
+     */
+    public String toJson(String label) {
+        long recordCount = records();
+        StringBuilder json = new StringBuilder(512).append("{\"run\":");
+        appendString(json, label);
+        json.append(",\"records\":").append(recordCount);
+        json.append(",\"pay_stubs\":").append(payStubs.sum());
+        json.append(",\"wall_ms\":").append(millis(wallNanos));
+        json.append(",\"records_per_sec\":").append(wallNanos == 0 ? 0
+                : Math.round(recordCount * 1e9 / wallNanos));
+        json.append(",\"bytes_read\":").append(bytesRead.sum());
+        json.append(",\"bytes_written\":").append(bytesWritten.sum());
+        json.append(",\"allocated_bytes\":").append(allocated);
+        json.append(",\"allocated_bytes_per_record\":").append(allocated < 0 || recordCount == 0
+                ? -1 : allocated / recordCount);
+        json.append(",\"salary_cache_hits\":").append(salaryCacheHits);
+        json.append(",\"salary_cache_misses\":").append(salaryCacheMisses);
+        json.append(",\"phases_ms\":{");
+        for (Phase phase : Phase.values()) {
+            if (phase.ordinal() > 0) {
+                json.append(',');
+            }
+            appendString(json, phase.name().toLowerCase(Locale.ROOT));
+            json.append(':').append(millis(nanos(phase)));
+        }
+        return json.append("}}").toString();
+    }
+
+    /**
+     * Appends the summary of a finished run to a stats file, one JSON line per run.
+     *
+     * @param statsFile the stats file, created if it doesn't exist
+     * @param label names the run, such as the employee file
+     */
+    public void appendTo(String statsFile, String label) {
+        try {
+            Files.write(Path.of(statsFile),
+                    (toJson(label) + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Error writing stats: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the bytes allocated so far by every thread. From Java 21 the JVM keeps a total that
+     * includes threads that have exited, so pool workers that end before the run finishes are
+     * still counted. Before that only live threads can be asked.
+     *
+     * @return the total, or -1 if the JVM can't measure it
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+        if (!sunThreads.isThreadAllocatedMemorySupported()
+                || !sunThreads.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        if (TOTAL_ALLOCATED != null) {
+            try {
+                return (Long) TOTAL_ALLOCATED.invoke(sunThreads);
+            } catch (ReflectiveOperationException e) {
+                // not supported by this JVM after all, so fall back to the live threads
+            }
+        }
+        long total = 0;
+        for (long bytes : sunThreads.getThreadAllocatedBytes(sunThreads.getAllThreadIds())) {
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Looks up com.sun.management.ThreadMXBean.getTotalThreadAllocatedBytes, which Java 21 added.
+     *
+     * @return the method, or null on an older JVM
+     */
+    private static Method totalAllocatedMethod() {
+        try {
+            return com.sun.management.ThreadMXBean.class.getMethod("getTotalThreadAllocatedBytes");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Converts nanoseconds to milliseconds with three decimal places.
+     *
+     * @param nanos the nanoseconds
+     * @return the milliseconds as text
+     */
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    /**
+     * Appends a JSON string literal.
+     *
+     * @param json the builder to append to
+     * @param value the string
+     */
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < ' ') {
+                json.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * JFR event covering a whole payroll run.
+     */
+    @Name("student.PayrollRun")
+    @Label("Payroll Run")
+    @Category("Payroll")
+    static final class PayrollRunEvent extends Event {
+        /** employee records processed. */
+        @Label("Records")
+        long records;
+
+        /** pay stubs written. */
+        @Label("Pay Stubs")
+        long payStubs;
+
+        /** bytes of input read. */
+        @Label("Bytes Read")
+        @DataAmount
+        long bytesRead;
+
+        /** bytes of output written. */
+        @Label("Bytes Written")
+        @DataAmount
+        long bytesWritten;
+
+        /** bytes allocated by all threads, or -1 if unknown. */
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+
+        /** salary pay cache hits. */
+        @Label("Salary Cache Hits")
+        long salaryCacheHits;
+
+        /** salary pay cache misses. */
+        @Label("Salary Cache Misses")
+        long salaryCacheMisses;
+    }
+
+    /**
+     * JFR event with the total time of one phase of a payroll run.
+     */
+    @Name("student.PayrollPhase")
+    @Label("Payroll Phase")
+    @Category("Payroll")
+    static final class PayrollPhaseEvent extends Event {
+        /** the phase name. */
+        @Label("Phase")
+        String phase;
+
+        /** total time spent in the phase, summed over threads. */
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+    }
+}
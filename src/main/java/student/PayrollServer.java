@@ -0,0 +1,318 @@
+package student;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves payroll over HTTP on localhost, keeping the roster loaded between requests.
+ *
+ * The roster is read into an {@link EmployeeTable} once at startup, so each request only pays
+ * for the employees it names, in a JVM that is already warm. Endpoints:
+ *
+ * <ul>
+ * <li>POST /payroll with a time_cards.csv body (header line included) pays every employee with
+ * a card in it and answers with the pay stub CSV, in roster order. The updated employees are
+ * written back to the employee file in the usual format, and the stubs are added to the pay
+ * stub file. Cards that match no employee are counted in the X-Unmatched-Cards header, and
+ * employees skipped for negative hours in X-Skipped. If the files can't be saved the answer is
+ * 500 and the loaded roster is left as it was, so the same cards can be posted again.</li>
+ * <li>GET /employees answers with the current roster as employees.csv.</li>
+ * </ul>
+ *
+ * Requests are handled one at a time, so every request sees the YTD totals of the last.
+ *
+ * Both files are staged and committed together, the same way a streaming run commits them, so
+ * a crash never leaves stubs without the YTD totals they add up to. This rewrites the whole
+ * employee file and copies the pay stub file on every request, which costs time in proportion
+ * to the files rather than to the cards posted; post cards in batches, not one at a time.
+ */
+public final class PayrollServer {
+    /** content type of every response. */
+    private static final String CSV = "text/csv; charset=utf-8";
+
+    /** the roster. */
+    private final EmployeeTable table;
+
+    /** the rows of each employee ID. */
+    private final Map<String, int[]> rowsByID = new HashMap<>();
+
+    /** the employee file the roster is saved to. */
+    private final String employeeFile;
+
+    /** the pay stub file stubs are added to. */
+    private final String payrollFile;
+
+    /** the HTTP server. */
+    private final HttpServer server;
+
+    /**
+     * Loads the roster and binds the server, without starting it.
+     *
+     * @param employeeFile the employee file, read now and rewritten after every payroll request
+     * @param payrollFile the pay stub file stubs are added to
+     * @param port the port to listen on, 0 for any free port
+     * @throws IOException if the server can't be bound
+     */
+    PayrollServer(String employeeFile, String payrollFile, int port) throws IOException {
+        this.employeeFile = employeeFile;
+        this.payrollFile = payrollFile;
+        FileUtil.recoverStaged(employeeFile);
+        this.table = EmployeeTable.read(employeeFile);
+        for (int row = 0; row < table.size(); row++) {
+            rowsByID.merge(table.getID(row), new int[] {row}, (rows, more) -> {
+                int[] merged = Arrays.copyOf(rows, rows.length + 1);
+                merged[rows.length] = more[0];
+                return merged;
+            });
+        }
+        this.server = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/payroll", this::handlePayroll);
+        server.createContext("/employees", this::handleEmployees);
+    }
+
+    /**
+     * Loads the roster and starts serving.
+     *
+     * @param employeeFile the employee file, read now and rewritten after every payroll request
+     * @param payrollFile the pay stub file stubs are added to
+     * @param port the port to listen on, 0 for any free port
+     * @return the running server
+     * @throws IOException if the server can't be bound
+     */
+    public static PayrollServer start(String employeeFile, String payrollFile, int port)
+            throws IOException {
+        PayrollServer payrollServer = new PayrollServer(employeeFile, payrollFile, port);
+        payrollServer.server.start();
+        System.out.println("Payroll server for " + payrollServer.table.size()
+                + " employees listening on http://localhost:" + payrollServer.getPort());
+        return payrollServer;
+    }
+
+    /**
+     * Gets the port the server is listening on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server, waiting for the current request to finish.
+     */
+    public void stop() {
+        server.stop(1);
+    }
+
+    /**
+     * Pays the employees in a batch of time cards.
+     *
+     * @param timeCards the time cards, header line first
+     * @param counts receives the number of cards that match no employee at [0], and the
+     *        number of employees skipped for negative hours at [1]
+     * @return the pay stub CSV, header line first
+     * @throws IllegalArgumentException if a line is not a valid time card record
+     * @throws IOException if the files can't be saved, in which case the roster is unchanged
+     */
+    synchronized String runPayroll(String timeCards, int[] counts) throws IOException {
+        // read every card before paying anyone, so a bad batch changes nothing
+        TimeCardIndex hours = new TimeCardIndex(16);
+        List<String> ids = new ArrayList<>();
+        CsvTokenizer fields = new CsvTokenizer();
+        String[] lines = timeCards.split("\r?\n");
+        for (int i = 1; i < lines.length; i++) { // skip the header line
+            if (lines[i].isBlank()) {
+                continue;
+            }
+            Builder.checkTimeCard(fields.reset(lines[i]));
+            String id = fields.text(0);
+            if (!hours.contains(id)) {
+                ids.add(id);
+            }
+            hours.add(id, fields.parseDouble(1));
+        }
+
+        int[] paidRows = new int[ids.size()];
+        int paid = 0;
+        for (String id : ids) {
+            int[] rows = rowsByID.get(id);
+            if (rows == null) {
+                counts[0]++;
+                continue;
+            }
+            if (paid + rows.length > paidRows.length) {
+                paidRows = Arrays.copyOf(paidRows, paid + rows.length);
+            }
+            System.arraycopy(rows, 0, paidRows, paid, rows.length);
+            paid += rows.length;
+        }
+        Arrays.sort(paidRows, 0, paid);
+
+        // the YTD totals before this batch, put back if it can't be saved
+        long[] ytdEarnings = table.ytdEarnings();
+        long[] ytdTaxesPaid = table.ytdTaxesPaid();
+        long[] oldEarnings = new long[paid];
+        long[] oldTaxesPaid = new long[paid];
+        for (int i = 0; i < paid; i++) {
+            oldEarnings[i] = ytdEarnings[paidRows[i]];
+            oldTaxesPaid[i] = ytdTaxesPaid[paidRows[i]];
+        }
+
+        StringBuilder out = new StringBuilder(FileUtil.PAY_STUB_HEADER).append('\n');
+        try {
+            try (RecordWriter payStubOut =
+                    FileUtil.openStagedAppender(payrollFile, FileUtil.PAY_STUB_HEADER)) {
+                for (int i = 0; i < paid; i++) {
+                    IEmployee employee = table.view(paidRows[i]);
+                    IPayStub payStub = employee.runPayroll(hours.hours(employee.getID()));
+                    if (payStub == null) {
+                        counts[1]++; // negative hours
+                        continue;
+                    }
+                    String csv = payStub.toCSV();
+                    payStubOut.write(csv);
+                    out.append(csv).append('\n');
+                }
+            }
+            try (RecordWriter employeeOut =
+                    FileUtil.openStagedWriter(employeeFile, FileUtil.EMPLOYEE_HEADER)) {
+                for (String line : rosterCSV()) {
+                    employeeOut.write(line);
+                }
+            }
+        } catch (IOException e) {
+            FileUtil.discardStaged(employeeFile);
+            FileUtil.discardStaged(payrollFile);
+            restore(paidRows, oldEarnings, oldTaxesPaid, paid);
+            throw e;
+        }
+        if (!FileUtil.commitStaged(List.of(employeeFile, payrollFile), true)) {
+            restore(paidRows, oldEarnings, oldTaxesPaid, paid);
+            throw new IOException("The employee and pay stub files were not replaced");
+        }
+        return out.toString();
+    }
+
+    /**
+     * Puts back the YTD totals of rows whose pay couldn't be saved.
+     *
+     * @param rows the rows
+     * @param ytdEarnings the YTD earnings of each row before it was paid, in cents
+     * @param ytdTaxesPaid the YTD taxes of each row before it was paid, in cents
+     * @param count the number of rows
+     */
+    private void restore(int[] rows, long[] ytdEarnings, long[] ytdTaxesPaid, int count) {
+        long[] earnings = table.ytdEarnings();
+        long[] taxesPaid = table.ytdTaxesPaid();
+        for (int i = 0; i < count; i++) {
+            earnings[rows[i]] = ytdEarnings[i];
+            taxesPaid[rows[i]] = ytdTaxesPaid[i];
+        }
+    }
+
+    /**
+     * Gets the roster as employees.csv lines, formatted as each row is read.
+     *
+     * @return the lines, without the header
+     */
+    private AbstractList<String> rosterCSV() {
+        return new AbstractList<>() {
+            @Override
+            public String get(int row) {
+                return table.view(row).toCSV();
+            }
+
+            @Override
+            public int size() {
+                return table.size();
+            }
+        };
+    }
+
+    /**
+     * Handles POST /payroll.
+     *
+     * @param exchange the request
+     * @throws IOException if the response can't be sent
+     */
+    private void handlePayroll(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, "Use POST with a time_cards.csv body\n");
+            return;
+        }
+        String body;
+        try (InputStream in = exchange.getRequestBody()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            in.transferTo(bytes);
+            body = bytes.toString(StandardCharsets.UTF_8);
+        }
+        int[] counts = new int[2];
+        String payStubs;
+        try {
+            payStubs = runPayroll(body, counts);
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, e.getMessage() + "\n");
+            return;
+        } catch (IOException e) {
+            System.err.println("Error saving payroll: " + e.getMessage());
+            respond(exchange, 500, "Payroll not saved, nothing was changed: " + e.getMessage()
+                    + "\n");
+            return;
+        }
+        exchange.getResponseHeaders().set("X-Unmatched-Cards", Integer.toString(counts[0]));
+        exchange.getResponseHeaders().set("X-Skipped", Integer.toString(counts[1]));
+        respond(exchange, 200, payStubs);
+    }
+
+    /**
+     * Handles GET /employees.
+     *
+     * @param exchange the request
+     * @throws IOException if the response can't be sent
+     */
+    private void handleEmployees(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, "Use GET\n");
+            return;
+        }
+        StringBuilder out = new StringBuilder(FileUtil.EMPLOYEE_HEADER).append('\n');
+        synchronized (this) {
+            for (String line : rosterCSV()) {
+                out.append(line).append('\n');
+            }
+        }
+        respond(exchange, 200, out.toString());
+    }
+
+    /**
+     * Sends a response and closes the exchange.
+     *
+     * @param exchange the request
+     * @param status the HTTP status
+     * @param body the response body
+     * @throws IOException if the response can't be sent
+     */
+    private static void respond(HttpExchange exchange, int status, String body)
+            throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CSV);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package student;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * One stage of a {@link Flow} pipeline: each item from upstream is handed to one of a fixed
+ * number of worker threads, and its result is published downstream.
+ *
+ * A stage never holds more items than its parallelism. It requests that many to begin with,
+ * and one more each time a result has been accepted downstream. Publishing blocks while the
+ * downstream buffer is full, so a slow consumer stalls the workers, they stop requesting, and
+ * the publisher upstream of them stalls in turn. No queue in the pipeline grows without bound.
+ *
+ * With more than one worker, results are published in the order they finish rather than the
+ * order their items arrived in. If the work throws, upstream is cancelled and downstream gets
+ * the error.
+ *
+ * @param <T> the type of item taken from upstream
+ * @param <R> the type of result published downstream
+ */
+final class PipelineStage<T, R> implements Flow.Processor<T, R> {
+    /** turns an item into its result. */
+    private final Function<? super T, ? extends R> work;
+
+    /** the most items being worked on at once. */
+    private final int parallelism;
+
+    /** the worker threads. */
+    private final ExecutorService workers;
+
+    /** publishes results downstream. */
+    private final SubmissionPublisher<R> out;
+
+    /** items taken from upstream that haven't been published yet. */
+    private final AtomicInteger active = new AtomicInteger();
+
+    /** set once the stage has closed its output, normally or with an error. */
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    /** the subscription to upstream. */
+    private volatile Flow.Subscription upstream;
+
+    /** set once upstream has no more items. */
+    private volatile boolean upstreamDone;
+
+    /**
+     * Creates a stage.
+     *
+     * @param name the name of the worker threads
+     * @param work turns an item into its result
+     * @param parallelism the number of worker threads
+     * @param delivery the threads results are delivered to downstream on
+     * @param bufferCapacity the results buffered for downstream before publishing blocks
+     */
+    PipelineStage(String name, Function<? super T, ? extends R> work, int parallelism,
+            Executor delivery, int bufferCapacity) {
+        this.work = work;
+        this.parallelism = parallelism;
+        this.workers = Executors.newFixedThreadPool(parallelism, task -> {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.out = new SubmissionPublisher<>(delivery, bufferCapacity);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super R> subscriber) {
+        out.subscribe(subscriber);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        upstream = subscription;
+        subscription.request(parallelism);
+    }
+
+    @Override
+    public void onNext(T item) {
+        if (finished.get()) {
+            return;
+        }
+        active.incrementAndGet();
+        workers.execute(() -> process(item));
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        fail(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        if (active.get() == 0) {
+            finish();
+        }
+    }
+
+    /**
+     * Works on an item and publishes its result, then asks upstream for the next one.
+     *
+     * @param item the item
+     */
+    private void process(T item) {
+        R result;
+        try {
+            result = work.apply(item);
+        } catch (RuntimeException | Error e) {
+            fail(e);
+            return;
+        }
+        try {
+            out.submit(result); // blocks while downstream is a full buffer behind
+        } catch (IllegalStateException e) {
+            return; // the output was closed because another worker failed
+        }
+        if (!upstreamDone) {
+            upstream.request(1);
+        }
+        if (active.decrementAndGet() == 0 && upstreamDone) {
+            finish();
+        }
+    }
+
+    /**
+     * Closes the output once every item has been published.
+     */
+    private void finish() {
+        if (finished.compareAndSet(false, true)) {
+            out.close();
+            workers.shutdown();
+        }
+    }
+
+    /**
+     * Stops the stage, passing the error downstream.
+     *
+     * @param throwable the error
+     */
+    private void fail(Throwable throwable) {
+        if (finished.compareAndSet(false, true)) {
+            if (upstream != null) {
+                upstream.cancel();
+            }
+            out.closeExceptionally(throwable);
+            workers.shutdown();
+        }
+    }
+}
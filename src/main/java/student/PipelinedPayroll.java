@@ -0,0 +1,266 @@
+package student;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.stream.Stream;
+
+/**
+ * Runs payroll as a pipeline of stages joined by {@link Flow} publishers: a reader cuts the
+ * employee file into chunks of lines, a parse stage builds the employees, a pay stage pays
+ * them and formats the results, and a writer writes them out. The parse and pay stages each
+ * have their own worker threads, so reading, computing and writing all overlap.
+ *
+ * Every buffer between stages is bounded. When the disk is slower than the stages before it,
+ * the buffers fill and each stage in turn stops requesting, until the reader blocks; memory
+ * use stays the same however large the roster is.
+ *
+ * Chunks can finish out of order, so each carries its sequence number and the writer holds
+ * back any that arrive early. The output is in input order, the same as
+ * {@link StreamingPayroll}, and it is staged and committed the same way.
+ */
+public final class PipelinedPayroll {
+    /** number of employee lines in a chunk. */
+    private static final int CHUNK_SIZE = 1024;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private PipelinedPayroll() {
+
+    }
+
+    /**
+     * Runs payroll for every employee in employeeFile using the hours in timeCardFile. The
+     * employee file is rewritten with the updated YTD values, and the pay stubs are written to
+     * payrollFile.
+     *
+     * @param employeeFile the employee file, read and then replaced
+     * @param timeCardFile the time card file
+     * @param payrollFile the pay stub output file
+     * @param parseWorkers the number of threads employees are built on
+     * @param payWorkers the number of threads employees are paid on
+     * @param bufferChunks the chunks buffered between two stages before the first one blocks
+     * @return true if the payroll was written, false if it failed (the error is printed)
+     */
+    public static boolean run(String employeeFile, String timeCardFile, String payrollFile,
+            int parseWorkers, int payWorkers, int bufferChunks) {
+        ExecutorService delivery = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "payroll-pipeline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (Stream<CharSequence> lines = FileUtil.mapLines(employeeFile);
+                RecordWriter employeeOut =
+                        FileUtil.openStagedWriter(employeeFile, FileUtil.EMPLOYEE_HEADER);
+                RecordWriter payStubOut =
+                        FileUtil.openStagedWriter(payrollFile, FileUtil.PAY_STUB_HEADER)) {
+            TimeCardIndex timeCards = TimeCardIndex.read(timeCardFile);
+
+            // every chunk a stage can hold, so the writer's early chunks are bounded too
+            int inFlight = 3 * bufferChunks + parseWorkers + payWorkers;
+            OrderedWriter writer =
+                    new OrderedWriter(employeeFile, employeeOut, payStubOut, inFlight);
+            SubmissionPublisher<Chunk> reader = new SubmissionPublisher<>(delivery, bufferChunks);
+            PipelineStage<Chunk, Chunk> parse = new PipelineStage<>("payroll-parse",
+                    Chunk::parse, parseWorkers, delivery, bufferChunks);
+            PipelineStage<Chunk, Chunk> pay = new PipelineStage<>("payroll-pay",
+                    Chunk::pay, payWorkers, delivery, bufferChunks);
+            reader.subscribe(parse);
+            parse.subscribe(pay);
+            pay.subscribe(writer);
+
+            read(lines.iterator(), timeCards, reader, writer);
+            writer.done.join();
+        } catch (IOException | UncheckedIOException | IllegalArgumentException
+                | CompletionException e) {
+            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            FileUtil.discardStaged(employeeFile);
+            FileUtil.discardStaged(payrollFile);
+            if (cause instanceof IllegalArgumentException) {
+                throw (IllegalArgumentException) cause; // an invalid line, as in a streaming run
+            }
+            System.err.println("Error running payroll: " + cause.getMessage());
+            return false;
+        } finally {
+            delivery.shutdown();
+        }
+        return FileUtil.commitStaged(List.of(employeeFile, payrollFile), true);
+    }
+
+    /**
+     * Cuts the employee lines into chunks and publishes them, blocking whenever the pipeline
+     * is full. Stops early if the writer has failed.
+     *
+     * @param lines the employee lines
+     * @param timeCards hours for each employee ID, for the chunks to pay with
+     * @param reader publishes the chunks to the parse stage
+     * @param writer the end of the pipeline
+     */
+    private static void read(Iterator<CharSequence> lines, TimeCardIndex timeCards,
+            SubmissionPublisher<Chunk> reader, OrderedWriter writer) {
+        long sequence = 0;
+        while (lines.hasNext()) {
+            Chunk chunk = new Chunk(sequence++, timeCards);
+            while (!chunk.rows.isFull() && lines.hasNext()) {
+                chunk.rows.lines[chunk.rows.size++] = lines.next();
+            }
+            writer.permits.acquireUninterruptibly();
+            if (writer.done.isDone()) {
+                break;
+            }
+            reader.submit(chunk);
+        }
+        reader.close();
+    }
+
+    /**
+     * A numbered batch of employee lines, whose rows the stages parse and then pay.
+     */
+    private static final class Chunk {
+        /** position of the chunk in the employee file, from 0. */
+        final long sequence;
+
+        /** the lines and, as the stages fill them in, their results. */
+        final PayrollBatch.Rows rows;
+
+        /**
+         * Creates an empty chunk.
+         *
+         * @param sequence the position of the chunk in the employee file
+         * @param timeCards hours for each employee ID, only read
+         */
+        Chunk(long sequence, TimeCardIndex timeCards) {
+            this.sequence = sequence;
+            this.rows = new PayrollBatch.Rows(CHUNK_SIZE, timeCards);
+            rows.firstLine = 2 + sequence * CHUNK_SIZE;
+        }
+
+        /**
+         * Builds the employee of every row.
+         *
+         * @return this chunk
+         * @throws IllegalArgumentException if a line is not a valid employee
+         */
+        Chunk parse() {
+            for (int i = 0; i < rows.size; i++) {
+                rows.parseRow(i);
+            }
+            return this;
+        }
+
+        /**
+         * Pays every row and formats the results.
+         *
+         * @return this chunk
+         */
+        Chunk pay() {
+            for (int i = 0; i < rows.size; i++) {
+                rows.payRow(i);
+            }
+            return this;
+        }
+    }
+
+    /**
+     * The last stage: writes chunks in sequence order, holding back any that arrive early.
+     * Each chunk written frees a permit for the reader to publish another.
+     */
+    private static final class OrderedWriter implements Flow.Subscriber<Chunk> {
+        /** the employee file the chunks were read from. */
+        private final String employeeFile;
+
+        /** the updated employee output. */
+        private final RecordWriter employeeOut;
+
+        /** the pay stub output. */
+        private final RecordWriter payStubOut;
+
+        /** chunks that arrived before the one to write next, by sequence. */
+        private final Map<Long, Chunk> early = new HashMap<>();
+
+        /** one permit for each chunk the pipeline may still take. */
+        final Semaphore permits;
+
+        /** completes once every chunk is written, or exceptionally if the pipeline failed. */
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        /** the most chunks the pipeline holds, freed all at once if it fails. */
+        private final int inFlight;
+
+        /** the subscription to the pay stage. */
+        private Flow.Subscription subscription;
+
+        /** sequence of the chunk to write next. */
+        private long next;
+
+        /**
+         * Creates a writer.
+         *
+         * @param employeeFile the employee file the chunks were read from
+         * @param employeeOut the updated employee output
+         * @param payStubOut the pay stub output
+         * @param inFlight the most chunks the pipeline holds at once
+         */
+        OrderedWriter(String employeeFile, RecordWriter employeeOut, RecordWriter payStubOut,
+                int inFlight) {
+            this.employeeFile = employeeFile;
+            this.employeeOut = employeeOut;
+            this.payStubOut = payStubOut;
+            this.permits = new Semaphore(inFlight);
+            this.inFlight = inFlight;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(Chunk chunk) {
+            early.put(chunk.sequence, chunk);
+            try {
+                for (Chunk ready = early.remove(next); ready != null;
+                        ready = early.remove(next)) {
+                    StreamingPayroll.write(ready.rows, employeeFile, employeeOut, payStubOut,
+                            null);
+                    next++;
+                    permits.release();
+                }
+            } catch (IOException e) {
+                subscription.cancel();
+                onError(new UncheckedIOException(e));
+                return;
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (done.completeExceptionally(throwable)) {
+                early.clear();
+                permits.release(inFlight); // so the reader sees the failure and stops
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            if (early.isEmpty()) {
+                done.complete(null);
+            } else {
+                onError(new IllegalStateException("Pipeline ended before chunk " + next));
+            }
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package student;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Writes CSV records to a file one at a time.
+ *
+ * Records are encoded as UTF-8 straight into a direct ByteBuffer, which is written to the file
+ * channel in one large write whenever it fills up. Memory use is the one buffer, no matter how
+ * many records are written, and the buffers are pooled so a new writer doesn't allocate one.
+ * The pool keeps a few buffers per CPU; a buffer released to a full pool is left for the
+ * garbage collector, so a burst of open writers doesn't pin its memory for good.
+ * Files named .gz are compressed on the way out, and the byte counts are of the text before
+ * compression.
+ *
+ * A write-behind writer hands each full buffer to a background thread and keeps encoding into a
+ * second one, so the caller only waits on the disk if it gets a whole buffer ahead.
+ */
+public final class RecordWriter implements Closeable {
+    /** size of each write buffer. */
+    static final int BUFFER_SIZE = 1 << 20;
+
+    /** most buffers kept for reuse, enough for a writer and its spare on every CPU. */
+    static final int MAX_POOLED = 2 * Runtime.getRuntime().availableProcessors();
+
+    /** buffers released by closed writers, ready for reuse. */
+    private static final ArrayBlockingQueue<ByteBuffer> POOL =
+            new ArrayBlockingQueue<>(MAX_POOLED);
+
+    /** the destination. */
+    private final WritableByteChannel channel;
+
+    /** records are encoded into this until it is full. */
+    private ByteBuffer buffer;
+
+    /** encoder for records that aren't plain ASCII. */
+    private CharsetEncoder encoder;
+
+    /** total bytes written so far, including what is still buffered. */
+    private long bytesWritten;
+
+    /** total records written so far, not counting the header. */
+    private long recordsWritten;
+
+    /** writes full buffers to the channel, or null to write on the caller's thread. */
+    private final ExecutorService background;
+
+    /** the buffer being written in the background, or null. */
+    private Future<?> pending;
+
+    /**
+     * Creates a writer on an open channel.
+     *
+     * @param channel the destination
+     */
+    RecordWriter(WritableByteChannel channel) {
+        this(channel, null);
+    }
+
+    /**
+     * Creates a writer on an open channel.
+     *
+     * @param channel the destination
+     * @param background writes full buffers to the channel, or null to write on the caller's
+     *        thread
+     */
+    RecordWriter(WritableByteChannel channel, ExecutorService background) {
+        this.channel = channel;
+        this.background = background;
+        this.buffer = takeBuffer();
+    }
+
+    /**
+     * Creates (or truncates) a file and writes its header line.
+     *
+     * @param file the file to write
+     * @param header the header line
+     * @return the writer
+     * @throws IOException if the file can't be created
+     */
+    public static RecordWriter open(Path file, String header) throws IOException {
+        RecordWriter writer = new RecordWriter(FileUtil.openOutput(file,
+                FileUtil.isGzip(file.toString()), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+        writer.writeLine(header);
+        return writer;
+    }
+
+    /**
+     * Creates (or truncates) a file and writes its header line, writing (and compressing) full
+     * buffers on a background thread.
+     *
+     * @param file the file to write
+     * @param gzip if true, the file is written gzip compressed
+     * @param header the header line
+     * @param background the threads buffers are written on
+     * @return the writer
+     * @throws IOException if the file can't be created
+     */
+    static RecordWriter openWriteBehind(Path file, boolean gzip, String header,
+            ExecutorService background) throws IOException {
+        RecordWriter writer = new RecordWriter(FileUtil.openOutput(file, gzip,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE), background);
+        writer.writeLine(header);
+        return writer;
+    }
+
+    /**
+     * Opens a file to add records to the end of it. The header line is written first if the
+     * file is new or empty. A .gz file gets a new gzip member, which readers see as a
+     * continuation of the same text.
+     *
+     * @param file the file to append to
+     * @param header the header line
+     * @return the writer
+     * @throws IOException if the file can't be opened
+     */
+    public static RecordWriter append(Path file, String header) throws IOException {
+        return append(file, FileUtil.isGzip(file.toString()), header);
+    }
+
+    /**
+     * Opens a file to add records to the end of it, compressed or not whatever its name.
+     *
+     * @param file the file to append to
+     * @param gzip if true, the records are added as a new gzip member
+     * @param header the header line, written first if the file is new or empty
+     * @return the writer
+     * @throws IOException if the file can't be opened
+     */
+    static RecordWriter append(Path file, boolean gzip, String header) throws IOException {
+        boolean empty = !Files.exists(file) || Files.size(file) == 0;
+        RecordWriter writer = new RecordWriter(FileUtil.openOutput(file, gzip,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+        if (empty) {
+            writer.writeLine(header);
+        }
+        return writer;
+    }
+
+    /**
+     * Writes a single record followed by a line break.
+     *
+     * @param record the CSV record, without a line break
+     * @throws IOException if the file can't be written
+     */
+    public void write(CharSequence record) throws IOException {
+        writeLine(record);
+        recordsWritten++;
+    }
+
+    /**
+     * Writes an employee record.
+     *
+     * @param employee the employee
+     * @throws IOException if the file can't be written
+     */
+    public void write(IEmployee employee) throws IOException {
+        write(employee.toCSV());
+    }
+
+    /**
+     * Writes a pay stub record.
+     *
+     * @param payStub the pay stub
+     * @throws IOException if the file can't be written
+     */
+    public void write(IPayStub payStub) throws IOException {
+        write(payStub.toCSV());
+    }
+
+    /**
+     * Gets the number of bytes written so far.
+     *
+     * @return the number of bytes, including the header
+     */
+    public long bytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Gets the number of records written so far.
+     *
+     * @return the number of records, not counting the header
+     */
+    public long recordsWritten() {
+        return recordsWritten;
+    }
+
+    /**
+     * Writes out anything still buffered.
+     *
+     * @throws IOException if the file can't be written
+     */
+    public void flush() throws IOException {
+        spill();
+        awaitPending();
+    }
+
+    /**
+     * Flushes the buffer and closes the file. The buffer goes back to the pool, unless the
+     * pool is full.
+     *
+     * @throws IOException if the file can't be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            buffer.clear();
+            POOL.offer(buffer); // dropped if the pool is full
+            buffer = null;
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes out the buffer, on the background thread if there is one, and starts a new one.
+     *
+     * @throws IOException if the file can't be written
+     */
+    private void spill() throws IOException {
+        if (background == null) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+            return;
+        }
+        awaitPending(); // at most one buffer in flight
+        ByteBuffer full = buffer.flip();
+        buffer = takeBuffer();
+        pending = background.submit(() -> {
+            while (full.hasRemaining()) {
+                channel.write(full);
+            }
+            full.clear();
+            POOL.offer(full);
+            return null;
+        });
+    }
+
+    /**
+     * Waits for the buffer being written in the background, if any.
+     *
+     * @throws IOException if it couldn't be written
+     */
+    private void awaitPending() throws IOException {
+        if (pending != null) {
+            Future<?> written = pending;
+            pending = null;
+            DurableCommit.await(written);
+        }
+    }
+
+    /**
+     * Takes a buffer from the pool, or allocates one if the pool is empty.
+     *
+     * @return an empty buffer
+     */
+    private static ByteBuffer takeBuffer() {
+        ByteBuffer pooled = POOL.poll();
+        return pooled != null ? pooled : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    /**
+     * Gets the number of buffers in the pool.
+     *
+     * @return the number of pooled buffers
+     */
+    static int pooledBuffers() {
+        return POOL.size();
+    }
+
+    /**
+     * Encodes a line and a line break into the buffer, flushing whenever it fills.
+     *
+     * @param line the text to write
+     * @throws IOException if the file can't be written
+     */
+    private void writeLine(CharSequence line) throws IOException {
+        int length = line.length();
+        int start = buffer.position();
+        if (buffer.remaining() < length + 1) {
+            spill();
+            start = 0;
+        }
+        if (buffer.remaining() > length) {
+            int i = 0;
+            while (i < length) {
+                char c = line.charAt(i);
+                if (c >= 0x80) {
+                    break;
+                }
+                buffer.put((byte) c);
+                i++;
+            }
+            if (i == length) {
+                buffer.put((byte) '\n');
+                bytesWritten += buffer.position() - start;
+                return;
+            }
+            buffer.position(start); // not ASCII, start again with the encoder
+        }
+        writeEncoded(line);
+        writeEncoded("\n");
+    }
+
+    /**
+     * Encodes text with the UTF-8 encoder, flushing as often as needed.
+     *
+     * @param text the text to write
+     * @throws IOException if the file can't be written
+     */
+    private void writeEncoded(CharSequence text) throws IOException {
+        if (encoder == null) {
+            encoder = StandardCharsets.UTF_8.newEncoder();
+        }
+        encoder.reset();
+        CharBuffer chars = CharBuffer.wrap(text);
+        while (true) {
+            int before = buffer.position();
+            CoderResult result = encoder.encode(chars, buffer, true);
+            bytesWritten += buffer.position() - before;
+            if (result.isOverflow()) {
+                spill();
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                result.throwException();
+            }
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            spill();
+        }
+    }
+}
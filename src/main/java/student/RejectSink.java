@@ -0,0 +1,79 @@
+package student;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Where lenient runs send the records they can't parse, instead of stopping at the first one.
+ *
+ * Each reject is one CSV line giving the file and line number it came from, the reason it was
+ * rejected, and the record itself, so it can be fixed and run again. Rejects are written in the
+ * order they are found, by the thread that reads or writes the batch, so a sink is not thread
+ * safe.
+ */
+final class RejectSink implements Closeable {
+    /** the header line of a rejects file. */
+    static final String HEADER = "file,line,reason,record";
+
+    /** where the rejects are written. */
+    private final RecordWriter out;
+
+    /** the reject being formatted, reused from one to the next. */
+    private final StringBuilder csv = new StringBuilder(256);
+
+    /** number of records rejected. */
+    private long count;
+
+    /**
+     * Creates a sink writing to a record writer, which should already have the header.
+     *
+     * @param out where the rejects are written
+     */
+    RejectSink(RecordWriter out) {
+        this.out = out;
+    }
+
+    /**
+     * Opens a sink on the staging file for rejectsFile, to be committed along with the other
+     * outputs of the run.
+     *
+     * @param rejectsFile the file name the rejects will eventually be committed to
+     * @return the sink
+     * @throws IOException if the staging file can't be created
+     */
+    static RejectSink openStaged(String rejectsFile) throws IOException {
+        return new RejectSink(FileUtil.openStagedWriter(rejectsFile, HEADER));
+    }
+
+    /**
+     * Writes a rejected record.
+     *
+     * @param file the file the record came from
+     * @param line the line number of the record, counting the header as line 1
+     * @param reason why the record was rejected
+     * @param record the record as it was read
+     * @throws IOException if the reject can't be written
+     */
+    void reject(String file, long line, String reason, CharSequence record) throws IOException {
+        csv.setLength(0);
+        CsvTokenizer.appendField(csv, file).append(',').append(line).append(',');
+        CsvTokenizer.appendField(csv, reason).append(',');
+        CsvTokenizer.appendField(csv, record.toString());
+        out.write(csv);
+        count++;
+    }
+
+    /**
+     * Gets the number of records rejected so far.
+     *
+     * @return the number of rejects
+     */
+    long count() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
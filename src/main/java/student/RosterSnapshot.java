@@ -0,0 +1,187 @@
+package student;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Saves an {@link EmployeeTable} as a binary snapshot, so the next run can load the roster
+ * without parsing employees.csv.
+ *
+ * The file is a fixed header followed by the table's columns, all little endian:
+ *
+ * <pre>
+ * int    magic "PRST"
+ * int    format version
+ * int    rows
+ * int    characters in the names column
+ * int    characters in the IDs column
+ * long   size of the employees.csv the snapshot matches
+ * long   last modified time of that employees.csv, in milliseconds
+ * double pay rate               [rows]
+ * double pretax deductions      [rows]
+ * long   YTD earnings, cents    [rows]
+ * long   YTD taxes paid, cents  [rows]
+ * int    end of each name       [rows]
+ * int    end of each ID         [rows]
+ * char   names, end to end
+ * char   IDs, end to end
+ * byte   employee type          [rows]
+ * </pre>
+ *
+ * Loading maps the file and bulk copies each column straight into the table's arrays. The
+ * snapshot records the size and modification time of the employees.csv it was taken from, and
+ * is ignored if that file has changed since, so it can never be used in place of newer data.
+ */
+public final class RosterSnapshot {
+    /** marks a snapshot file, "PRST". */
+    static final int MAGIC = 0x50525354;
+
+    /** the current format version, bumped whenever the layout changes. */
+    static final int VERSION = 1;
+
+    /** size of the header in bytes. */
+    static final int HEADER_SIZE = 5 * Integer.BYTES + 2 * Long.BYTES;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private RosterSnapshot() {
+
+    }
+
+    /**
+     * Writes a snapshot of a table. The file is written beside the destination and then moved
+     * into place, so a reader never sees a half written snapshot.
+     *
+     * @param table the table to save
+     * @param file the snapshot file
+     * @param source the employees.csv file the table now matches
+     * @throws IOException if the snapshot can't be written
+     */
+    public static void write(EmployeeTable table, Path file, Path source) throws IOException {
+        BasicFileAttributes sourceAttributes =
+                Files.readAttributes(source, BasicFileAttributes.class);
+        int rows = table.size();
+        StringPool names = table.names();
+        StringPool ids = table.ids();
+        long size = HEADER_SIZE + (long) rows * (4 * Long.BYTES + 2 * Integer.BYTES + 1)
+                + 2L * (names.length() + ids.length());
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Roster is too large for a snapshot: " + rows + " rows");
+        }
+
+        Path staged = Path.of(file + FileUtil.STAGED_SUFFIX);
+        try (FileChannel channel = FileChannel.open(staged, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            out.order(ByteOrder.LITTLE_ENDIAN);
+            out.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(names.length())
+                    .putInt(ids.length());
+            out.putLong(sourceAttributes.size())
+                    .putLong(sourceAttributes.lastModifiedTime().toMillis());
+            out.asDoubleBuffer().put(table.payRates(), 0, rows);
+            out.position(out.position() + rows * Double.BYTES);
+            out.asDoubleBuffer().put(table.pretaxDeductions(), 0, rows);
+            out.position(out.position() + rows * Double.BYTES);
+            out.asLongBuffer().put(table.ytdEarnings(), 0, rows);
+            out.position(out.position() + rows * Long.BYTES);
+            out.asLongBuffer().put(table.ytdTaxesPaid(), 0, rows);
+            out.position(out.position() + rows * Long.BYTES);
+            out.asIntBuffer().put(names.ends(), 0, rows);
+            out.position(out.position() + rows * Integer.BYTES);
+            out.asIntBuffer().put(ids.ends(), 0, rows);
+            out.position(out.position() + rows * Integer.BYTES);
+            out.asCharBuffer().put(names.chars(), 0, names.length());
+            out.position(out.position() + names.length() * Character.BYTES);
+            out.asCharBuffer().put(ids.chars(), 0, ids.length());
+            out.position(out.position() + ids.length() * Character.BYTES);
+            out.put(table.types(), 0, rows);
+            out.force();
+        }
+        Files.move(staged, file, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads a snapshot, if there is a usable one.
+     *
+     * @param file the snapshot file
+     * @param source the employees.csv file the snapshot must match
+     * @return the table, or null if there is no snapshot, it is from another format version, or
+     *         source has changed since it was taken
+     */
+    public static EmployeeTable load(Path file, Path source) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE || fileSize > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            in.order(ByteOrder.LITTLE_ENDIAN);
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                return null;
+            }
+            int rows = in.getInt();
+            int namesLength = in.getInt();
+            int idsLength = in.getInt();
+            long sourceSize = in.getLong();
+            long sourceModified = in.getLong();
+            BasicFileAttributes sourceAttributes =
+                    Files.readAttributes(source, BasicFileAttributes.class);
+            if (sourceAttributes.size() != sourceSize
+                    || sourceAttributes.lastModifiedTime().toMillis() != sourceModified) {
+                return null; // employees.csv has changed, so the snapshot is stale
+            }
+            long expected = HEADER_SIZE + (long) rows * (4 * Long.BYTES + 2 * Integer.BYTES + 1)
+                    + 2L * (namesLength + idsLength);
+            if (rows < 0 || namesLength < 0 || idsLength < 0 || expected != fileSize) {
+                System.err.println("Ignoring damaged roster snapshot: " + file);
+                return null;
+            }
+
+            double[] payRates = new double[rows];
+            double[] pretaxDeductions = new double[rows];
+            long[] ytdEarnings = new long[rows];
+            long[] ytdTaxesPaid = new long[rows];
+            int[] nameEnds = new int[rows];
+            int[] idEnds = new int[rows];
+            char[] nameChars = new char[namesLength];
+            char[] idChars = new char[idsLength];
+            byte[] types = new byte[rows];
+            in.asDoubleBuffer().get(payRates);
+            in.position(in.position() + rows * Double.BYTES);
+            in.asDoubleBuffer().get(pretaxDeductions);
+            in.position(in.position() + rows * Double.BYTES);
+            in.asLongBuffer().get(ytdEarnings);
+            in.position(in.position() + rows * Long.BYTES);
+            in.asLongBuffer().get(ytdTaxesPaid);
+            in.position(in.position() + rows * Long.BYTES);
+            in.asIntBuffer().get(nameEnds);
+            in.position(in.position() + rows * Integer.BYTES);
+            in.asIntBuffer().get(idEnds);
+            in.position(in.position() + rows * Integer.BYTES);
+            in.asCharBuffer().get(nameChars);
+            in.position(in.position() + namesLength * Character.BYTES);
+            in.asCharBuffer().get(idChars);
+            in.position(in.position() + idsLength * Character.BYTES);
+            in.get(types);
+            return new EmployeeTable(types, payRates, pretaxDeductions, ytdEarnings,
+                    ytdTaxesPaid, new StringPool(nameChars, nameEnds, rows),
+                    new StringPool(idChars, idEnds, rows));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.err.println("Error reading roster snapshot: " + e.getMessage());
+            return null;
+        }
+    }
+}
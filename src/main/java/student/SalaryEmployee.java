@@ -1,7 +1,5 @@
 package student;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 
 /**
  * SalaryEmployee class represents an employee who is paid a fixed salary.
@@ -12,7 +10,12 @@ import java.math.RoundingMode;
  *  - Update year-to-date earnings and taxes paid.
  *  - Generate a PayStub for each payroll cycle.
  *
- * Taxes are calculated at a total rate of 22.65% on the net pay (after pretax deductions).
+ * Taxes are calculated on the net pay (after pretax deductions) with the active TaxTable,
+ * a total rate of 22.65% unless tax rules are given.
+ *
+ * As with {@link HourlyEmployee}, the YTD totals are kept in exact cents and added to together
+ * under the employee's lock, so payroll can be run for the same employee from several threads
+ * at once and every pay stub shows a YTD pair that really occurred.
  */
 public class SalaryEmployee implements IEmployee {
     /** Employee's name. */
@@ -24,11 +27,11 @@ public class SalaryEmployee implements IEmployee {
     /** Annual salary pay rate. */
     private final double payRate;
 
-    /** Year-to-date earnings. */
-    private double ytdEarnings;
+    /** Year-to-date earnings, in cents, changed only while holding this employee's lock. */
+    private volatile long ytdEarnings;
 
-    /** Year-to-date taxes paid. */
-    private double ytdTaxesPaid;
+    /** Year-to-date taxes paid, in cents, changed only while holding this employee's lock. */
+    private volatile long ytdTaxesPaid;
 
     /** Pretax deductions for the employee. */
     private final double pretaxDeductions;
@@ -52,8 +55,8 @@ public class SalaryEmployee implements IEmployee {
         this.name = name;
         this.id = id;
         this.payRate = payRate;
-        this.ytdEarnings = BigDecimal.valueOf(ytdEarnings).setScale(2, RoundingMode.HALF_UP).doubleValue();
-        this.ytdTaxesPaid = BigDecimal.valueOf(ytdTaxesPaid).setScale(2, RoundingMode.HALF_UP).doubleValue();
+        this.ytdEarnings = Money.toCents(ytdEarnings);
+        this.ytdTaxesPaid = Money.toCents(ytdTaxesPaid);
         this.pretaxDeductions = pretaxDeductions;
     }
 
@@ -84,13 +87,13 @@ public class SalaryEmployee implements IEmployee {
     /** {@inheritDoc} */
     @Override
     public double getYTDEarnings() {
-        return ytdEarnings;
+        return Money.toDouble(ytdEarnings);
     }
 
     /** {@inheritDoc} */
     @Override
     public double getYTDTaxesPaid() {
-        return ytdTaxesPaid;
+        return Money.toDouble(ytdTaxesPaid);
     }
 
     /** {@inheritDoc} */
@@ -113,21 +116,19 @@ public class SalaryEmployee implements IEmployee {
             return null;
         }
 
-        BigDecimal payRateBD = BigDecimal.valueOf(payRate);
-        BigDecimal pretaxDeductionsBD = BigDecimal.valueOf(pretaxDeductions);
-
-        BigDecimal grossPay = payRateBD.divide(BigDecimal.valueOf(24), 10, RoundingMode.HALF_UP);
-        BigDecimal netPayBeforeTax = grossPay.subtract(pretaxDeductionsBD);
-        BigDecimal taxes = netPayBeforeTax.multiply(BigDecimal.valueOf(0.2265));
-        BigDecimal finalNetPay = netPayBeforeTax.subtract(taxes);
-
-        finalNetPay = finalNetPay.setScale(2, RoundingMode.HALF_UP);
-        taxes = taxes.setScale(2, RoundingMode.HALF_UP);
+        // the same for every employee in the salary band, so it comes from the shared cache
+        SalaryPayCache.Entry pay = SalaryPayCache.SHARED.pay(payRate, pretaxDeductions);
 
-        ytdEarnings = BigDecimal.valueOf(ytdEarnings).add(finalNetPay).setScale(2, RoundingMode.HALF_UP).doubleValue();
-        ytdTaxesPaid = BigDecimal.valueOf(ytdTaxesPaid).add(taxes).setScale(2, RoundingMode.HALF_UP).doubleValue();
+        long earnings;
+        long taxesPaid;
+        synchronized (this) { // both totals move together, so a stub never sees half a payment
+            earnings = ytdEarnings + pay.netPay;
+            taxesPaid = ytdTaxesPaid + pay.taxes;
+            ytdEarnings = earnings;
+            ytdTaxesPaid = taxesPaid;
+        }
 
-        return new PayStub(name, finalNetPay.doubleValue(), taxes.doubleValue(), ytdEarnings, ytdTaxesPaid);
+        return PayStub.ofCents(name, pay.netPay, pay.taxes, earnings, taxesPaid);
     }
 
     /**
@@ -138,9 +139,18 @@ public class SalaryEmployee implements IEmployee {
      */
     @Override
     public String toCSV() {
-        return String.format(
-                "SALARY,%s,%s,%.2f,%.2f,%.2f,%.2f",
-                name, id, payRate, pretaxDeductions, ytdEarnings, ytdTaxesPaid
-        );
+        StringBuilder csv = new StringBuilder(64).append("SALARY,");
+        CsvTokenizer.appendField(csv, name).append(',');
+        CsvTokenizer.appendField(csv, id).append(',');
+        Money.appendCents(csv, Money.toCents(payRate)).append(',');
+        Money.appendCents(csv, Money.toCents(pretaxDeductions)).append(',');
+        long earnings;
+        long taxesPaid;
+        synchronized (this) {
+            earnings = ytdEarnings;
+            taxesPaid = ytdTaxesPaid;
+        }
+        Money.appendCents(csv, earnings).append(',');
+        return Money.appendCents(csv, taxesPaid).toString();
     }
 }
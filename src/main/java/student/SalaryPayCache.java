@@ -0,0 +1,159 @@
+package student;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers the per-period pay of salary employees, since many share a salary band and
+ * deduction amount and ignore the hours worked.
+ *
+ * Entries are keyed on the pay rate, the pretax deductions and the {@link TaxTable#version} they
+ * were taxed with, so a new table never sees pay taxed by an old one. The cache is direct
+ * mapped: each key has one slot, and a miss replaces whatever is there, so its size is fixed.
+ * Entries are immutable and slots are replaced whole, so any number of threads can share it
+ * without locks; two threads missing on the same key just compute the same entry twice.
+ *
+ * Only the per-period amounts are cached. Each employee still adds them to their own YTD totals.
+ */
+final class SalaryPayCache {
+    /** the cache shared by every salary employee. */
+    static final SalaryPayCache SHARED = new SalaryPayCache(4096);
+
+    /** the slots, a power of two of them. */
+    private final AtomicReferenceArray<Entry> slots;
+
+    /** lookups that found their entry. */
+    private final LongAdder hits = new LongAdder();
+
+    /** lookups that had to compute their entry. */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param capacity the number of slots, rounded up to a power of two
+     */
+    SalaryPayCache(int capacity) {
+        this.slots = new AtomicReferenceArray<>(
+                Integer.highestOneBit(Math.max(1, capacity - 1)) << 1);
+    }
+
+    /**
+     * Gets the pay for one period of a salary, with the active tax table.
+     *
+     * @param payRate the annual pay rate
+     * @param pretaxDeductions the pretax deductions
+     * @return the final net pay and taxes
+     */
+    Entry pay(double payRate, double pretaxDeductions) {
+        TaxTable table = TaxTable.active();
+        long rateBits = Double.doubleToLongBits(payRate);
+        long deductionBits = Double.doubleToLongBits(pretaxDeductions);
+        int slot = slot(rateBits, deductionBits, table.version());
+        Entry entry = slots.get(slot);
+        if (entry != null && entry.rateBits == rateBits && entry.deductionBits == deductionBits
+                && entry.version == table.version()) {
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        entry = compute(payRate, pretaxDeductions, table);
+        slots.lazySet(slot, entry);
+        return entry;
+    }
+
+    /**
+     * Gets the number of lookups that found their entry.
+     *
+     * @return the hits so far
+     */
+    long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of lookups that had to compute their entry.
+     *
+     * @return the misses so far
+     */
+    long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Calculates the pay for one period of a salary.
+     *
+     * @param payRate the annual pay rate
+     * @param pretaxDeductions the pretax deductions
+     * @param table the tax table
+     * @return the entry for the pay
+     */
+    private static Entry compute(double payRate, double pretaxDeductions, TaxTable table) {
+        long netBeforeTax = Money.salaryNetBeforeTax(payRate, pretaxDeductions);
+        long taxes;
+        long finalNetPay;
+        if (netBeforeTax != Money.INEXACT) {
+            taxes = table.taxCents(netBeforeTax, Money.SALARY_SCALE);
+            finalNetPay = table.netCents(netBeforeTax, Money.SALARY_SCALE);
+        } else {
+            BigDecimal exact = Money.salaryNetBeforeTaxExact(payRate, pretaxDeductions);
+            BigDecimal exactTaxes = table.tax(exact);
+            taxes = Money.cents(exactTaxes);
+            finalNetPay = Money.cents(exact.subtract(exactTaxes));
+        }
+        return new Entry(Double.doubleToLongBits(payRate),
+                Double.doubleToLongBits(pretaxDeductions), table.version(), finalNetPay, taxes);
+    }
+
+    /**
+     * Picks the slot of a key.
+     *
+     * @param rateBits the bits of the pay rate
+     * @param deductionBits the bits of the pretax deductions
+     * @param version the tax table version
+     * @return the slot index
+     */
+    private int slot(long rateBits, long deductionBits, long version) {
+        long h = rateBits * 0x9E3779B97F4A7C15L + deductionBits;
+        h = (h ^ (h >>> 29)) * 0xBF58476D1CE4E5B9L + version;
+        return (int) (h ^ (h >>> 32)) & (slots.length() - 1);
+    }
+
+    /**
+     * The pay for one period of a salary band.
+     */
+    static final class Entry {
+        /** bits of the pay rate. */
+        private final long rateBits;
+
+        /** bits of the pretax deductions. */
+        private final long deductionBits;
+
+        /** version of the tax table used. */
+        private final long version;
+
+        /** final net pay in cents. */
+        final long netPay;
+
+        /** taxes in cents. */
+        final long taxes;
+
+        /**
+         * Creates an entry.
+         *
+         * @param rateBits bits of the pay rate
+         * @param deductionBits bits of the pretax deductions
+         * @param version version of the tax table used
+         * @param netPay final net pay in cents
+         * @param taxes taxes in cents
+         */
+        Entry(long rateBits, long deductionBits, long version, long netPay, long taxes) {
+            this.rateBits = rateBits;
+            this.deductionBits = deductionBits;
+            this.version = version;
+            this.netPay = netPay;
+            this.taxes = taxes;
+        }
+    }
+}
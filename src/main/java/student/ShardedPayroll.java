@@ -0,0 +1,513 @@
+package student;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Runs payroll for one roster as several independent PayrollGenerator processes.
+ *
+ * The employee and time card files are split into shards by the hash of the employee ID, so
+ * every time card lands in the same shard as its employee. Each shard is an ordinary
+ * employee, time card and pay stub file triple in the shard directory, named for its role and
+ * shard (employees_3.csv, time_cards_3.csv and pay_stubs_3.csv). It can be run by a child
+ * process of this one, or by hand on any machine that shares the filesystem. At most one child
+ * per CPU runs at a time, however many shards there are.
+ *
+ * A merge then walks the original roster, taking each employee's updated line and pay stub
+ * from its shard, so both outputs come back in roster order. Along the way it checks that:
+ * <ul>
+ * <li>every shard row is the employee the roster expects there</li>
+ * <li>every pay stub names its employee</li>
+ * <li>no shard has rows left over</li>
+ * <li>the net pay and taxes of the stubs add up to the growth of the YTD totals</li>
+ * </ul>
+ * If any check fails, the originals are left as they were.
+ *
+ * The shard of an ID is its {@link String#hashCode}, which Java specifies exactly, so every
+ * JVM and machine agrees on it.
+ */
+public final class ShardedPayroll {
+    /** header line of a shard's time card file. */
+    static final String TIME_CARD_HEADER = "employee_id,hours_worked";
+
+    /** field of the employee ID in an employee line. */
+    private static final int EMPLOYEE_ID_FIELD = 2;
+
+    /** field of the YTD earnings in an employee line. */
+    private static final int YTD_EARNINGS_FIELD = 5;
+
+    /** field of the YTD taxes paid in an employee line. */
+    private static final int YTD_TAXES_FIELD = 6;
+
+    /** field of the employee ID in a time card line. */
+    private static final int TIME_CARD_ID_FIELD = 0;
+
+    /**
+     * The files of a shard, each named after its role rather than the file it was split from,
+     * so inputs that share a file name still get shard files of their own.
+     */
+    enum Role {
+        /** the shard's employee file. */
+        EMPLOYEES("employees"),
+        /** the shard's time card file. */
+        TIME_CARDS("time_cards"),
+        /** the shard's pay stub file. */
+        PAY_STUBS("pay_stubs");
+
+        /** the start of the shard file's name. */
+        private final String prefix;
+
+        /**
+         * Creates a role.
+         *
+         * @param prefix the start of the shard file's name
+         */
+        Role(String prefix) {
+            this.prefix = prefix;
+        }
+    }
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private ShardedPayroll() {
+
+    }
+
+    /**
+     * Splits the inputs into shards, runs each shard as its own process, and merges the
+     * results back into employeeFile and payrollFile.
+     *
+     * @param employeeFile the employee file, read and then replaced
+     * @param timeCardFile the time card file
+     * @param payrollFile the pay stub output file
+     * @param shardDir the directory the shard files are written to
+     * @param shards the number of shards
+     * @param options more PayrollGenerator options for every shard, such as -r or -j
+     * @return true if every shard ran and the merge reconciled
+     */
+    public static boolean run(String employeeFile, String timeCardFile, String payrollFile,
+            String shardDir, int shards, List<String> options) {
+        return split(employeeFile, timeCardFile, payrollFile, shardDir, shards)
+                && runShards(employeeFile, timeCardFile, payrollFile, shardDir, shards, options,
+                        Runtime.getRuntime().availableProcessors())
+                && merge(employeeFile, timeCardFile, payrollFile, shardDir, shards);
+    }
+
+    /**
+     * Gets the default shard directory of an employee file, next to it.
+     *
+     * @param employeeFile the employee file
+     * @return the shard directory
+     */
+    public static String shardDir(String employeeFile) {
+        Path file = Path.of(employeeFile);
+        return file.resolveSibling(file.getFileName() + ".shards").toString();
+    }
+
+    /**
+     * Gets the name of a shard's copy of a file: its role and shard number, with the file's
+     * extension so a compressed file stays compressed. employees.csv.gz in shard 3 is
+     * employees_3.csv.gz.
+     *
+     * @param shardDir the shard directory
+     * @param role which of the shard's files it is
+     * @param file the employee, time card or payroll file
+     * @param shard the shard, from 0
+     * @return the shard file
+     */
+    static String shardFile(String shardDir, Role role, String file, int shard) {
+        String name = Path.of(file).getFileName().toString();
+        int dot = name.indexOf('.');
+        String extension = dot < 0 ? "" : name.substring(dot);
+        return Path.of(shardDir, role.prefix + "_" + shard + extension).toString();
+    }
+
+    /**
+     * Gets the shard an employee ID belongs to.
+     *
+     * @param id the employee ID
+     * @param shards the number of shards
+     * @return the shard, from 0
+     */
+    static int shardOf(String id, int shards) {
+        return Math.floorMod(id.hashCode(), shards);
+    }
+
+    /**
+     * Splits the employee and time card files into shards. Any pay stubs left in the shard
+     * directory by an earlier run are deleted, so they can't be merged by mistake.
+     *
+     * @param employeeFile the employee file
+     * @param timeCardFile the time card file
+     * @param payrollFile the pay stub output file, which names the shard pay stub files
+     * @param shardDir the directory the shard files are written to
+     * @param shards the number of shards
+     * @return true if the inputs were split
+     */
+    public static boolean split(String employeeFile, String timeCardFile, String payrollFile,
+            String shardDir, int shards) {
+        try {
+            Files.createDirectories(Path.of(shardDir));
+            for (int shard = 0; shard < shards; shard++) {
+                Files.deleteIfExists(
+                        Path.of(shardFile(shardDir, Role.PAY_STUBS, payrollFile, shard)));
+            }
+            splitFile(employeeFile, Role.EMPLOYEES, FileUtil.EMPLOYEE_HEADER, EMPLOYEE_ID_FIELD,
+                    shardDir, shards);
+            splitFile(timeCardFile, Role.TIME_CARDS, TIME_CARD_HEADER, TIME_CARD_ID_FIELD,
+                    shardDir, shards);
+        } catch (IOException | UncheckedIOException | IllegalArgumentException e) {
+            System.err.println("Error splitting payroll: " + e.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Splits one file into shards by the employee ID of each line. Lines are copied as they
+     * are.
+     *
+     * @param file the file to split
+     * @param role which of the shards' files it is split into
+     * @param header the header of each shard file
+     * @param idField the field of the employee ID
+     * @param shardDir the directory the shard files are written to
+     * @param shards the number of shards
+     * @throws IOException if a shard file can't be written
+     * @throws IllegalArgumentException if a line has no employee ID
+     */
+    private static void splitFile(String file, Role role, String header, int idField,
+            String shardDir, int shards) throws IOException {
+        RecordWriter[] outs = new RecordWriter[shards];
+        try (Stream<CharSequence> lines = FileUtil.mapLines(file)) {
+            for (int shard = 0; shard < shards; shard++) {
+                outs[shard] =
+                        RecordWriter.open(Path.of(shardFile(shardDir, role, file, shard)), header);
+            }
+            CsvTokenizer fields = new CsvTokenizer();
+            Iterator<CharSequence> it = lines.iterator();
+            while (it.hasNext()) {
+                CharSequence line = it.next();
+                outs[shardOf(id(fields.reset(line), idField), shards)].write(line);
+            }
+        } finally {
+            closeAll(outs);
+        }
+    }
+
+    /**
+     * Runs every shard as a PayrollGenerator child process and waits for them. At most
+     * maxRunning run at once; each shard after those starts when the one maxRunning before it
+     * exits. Once a shard fails, no more are started. The children share this process's
+     * console.
+     *
+     * @param employeeFile the employee file
+     * @param timeCardFile the time card file
+     * @param payrollFile the pay stub output file
+     * @param shardDir the directory of the shard files
+     * @param shards the number of shards
+     * @param options more PayrollGenerator options for every shard
+     * @param maxRunning the most child processes running at once
+     * @return true if every shard exited normally
+     */
+    static boolean runShards(String employeeFile, String timeCardFile, String payrollFile,
+            String shardDir, int shards, List<String> options, int maxRunning) {
+        Process[] processes = new Process[shards];
+        boolean ok = true;
+        for (int shard = 0; shard < shards + maxRunning; shard++) {
+            int oldest = shard - maxRunning;
+            if (oldest >= 0 && processes[oldest] != null && !await(processes, oldest)) {
+                ok = false;
+            }
+            if (shard >= shards || !ok) {
+                continue;
+            }
+            List<String> command = new ArrayList<>(javaCommand());
+            command.addAll(List.of(PayrollGenerator.class.getName(),
+                    "-e", shardFile(shardDir, Role.EMPLOYEES, employeeFile, shard),
+                    "-t", shardFile(shardDir, Role.TIME_CARDS, timeCardFile, shard),
+                    "-o", shardFile(shardDir, Role.PAY_STUBS, payrollFile, shard)));
+            command.addAll(options);
+            try {
+                processes[shard] = new ProcessBuilder(command).inheritIO().start();
+            } catch (IOException e) {
+                System.err.println("Error starting shard " + shard + ": " + e.getMessage());
+                ok = false;
+            }
+        }
+        return ok;
+    }
+
+    /**
+     * Waits for a shard's process to exit. If the wait is interrupted, every shard's process
+     * is stopped.
+     *
+     * @param processes the process of each shard started so far
+     * @param shard the shard to wait for
+     * @return true if it exited normally
+     */
+    private static boolean await(Process[] processes, int shard) {
+        try {
+            int exitCode = processes[shard].waitFor();
+            if (exitCode != 0) {
+                System.err.println("Shard " + shard + " failed with exit code " + exitCode);
+                return false;
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Process process : processes) {
+                if (process != null) {
+                    process.destroy();
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Gets the command that starts a JVM like this one: the same java, class path, and
+     * incubator modules.
+     *
+     * @return the command, up to the main class
+     */
+    private static List<String> javaCommand() {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            command.addAll(List.of("--add-modules", "jdk.incubator.vector"));
+        }
+        command.addAll(List.of("-cp", System.getProperty("java.class.path")));
+        return command;
+    }
+
+    /**
+     * Merges the shards back into employeeFile and payrollFile in roster order. Both are
+     * replaced only if every check passes; otherwise the reason is printed and they are left
+     * as they were.
+     *
+     * @param employeeFile the employee file the shards were split from, then replaced
+     * @param timeCardFile the time card file the shards were split from
+     * @param payrollFile the pay stub output file
+     * @param shardDir the directory of the shard files
+     * @param shards the number of shards
+     * @return true if the shards reconciled and the outputs were written
+     */
+    public static boolean merge(String employeeFile, String timeCardFile, String payrollFile,
+            String shardDir, int shards) {
+        List<Stream<CharSequence>> opened = new ArrayList<>();
+        Totals totals = new Totals();
+        try (Stream<CharSequence> roster = FileUtil.mapLines(employeeFile);
+                RecordWriter employeeOut =
+                        FileUtil.openStagedWriter(employeeFile, FileUtil.EMPLOYEE_HEADER);
+                RecordWriter payStubOut =
+                        FileUtil.openStagedWriter(payrollFile, FileUtil.PAY_STUB_HEADER)) {
+            List<Iterator<CharSequence>> employees = new ArrayList<>();
+            List<Iterator<CharSequence>> payStubs = new ArrayList<>();
+            List<TimeCardIndex> timeCards = new ArrayList<>();
+            for (int shard = 0; shard < shards; shard++) {
+                employees.add(open(shardFile(shardDir, Role.EMPLOYEES, employeeFile, shard),
+                        opened));
+                payStubs.add(open(shardFile(shardDir, Role.PAY_STUBS, payrollFile, shard),
+                        opened));
+                timeCards.add(TimeCardIndex.read(
+                        shardFile(shardDir, Role.TIME_CARDS, timeCardFile, shard)));
+            }
+
+            CsvTokenizer original = new CsvTokenizer();
+            CsvTokenizer updated = new CsvTokenizer();
+            CsvTokenizer payStub = new CsvTokenizer();
+            long line = 1;
+            Iterator<CharSequence> it = roster.iterator();
+            while (it.hasNext()) {
+                line++;
+                IEmployee employee = Builder.buildEmployeeFromCSV(it.next());
+                int shard = shardOf(employee.getID(), shards);
+                CharSequence next = next(employees.get(shard), shard, "employee", line);
+                if (!id(updated.reset(next), EMPLOYEE_ID_FIELD).equals(employee.getID())) {
+                    throw new IllegalStateException("Shard " + shard + " has "
+                            + updated.text(EMPLOYEE_ID_FIELD)
+                            + " where line " + line + " has " + employee.getID());
+                }
+                employeeOut.write(next);
+                original.reset(employee.toCSV());
+                totals.employees++;
+                totals.ytdEarnings = totals.ytdEarnings.add(growth(original, updated,
+                        YTD_EARNINGS_FIELD));
+                totals.ytdTaxes = totals.ytdTaxes.add(growth(original, updated,
+                        YTD_TAXES_FIELD));
+
+                double hoursWorked = timeCards.get(shard).hours(employee.getID());
+                if (StreamingPayroll.skipReason(employee, hoursWorked) != null) {
+                    continue;
+                }
+                next = next(payStubs.get(shard), shard, "pay stub", line);
+                if (!payStub.reset(next).text(0).equals(employee.getName())) {
+                    throw new IllegalStateException("Shard " + shard + " has a pay stub for "
+                            + payStub.text(0) + " where line " + line + " has "
+                            + employee.getName());
+                }
+                payStubOut.write(next);
+                totals.payStubs++;
+                totals.netPay = totals.netPay.add(new BigDecimal(payStub.text(1)));
+                totals.taxes = totals.taxes.add(new BigDecimal(payStub.text(2)));
+            }
+            for (int shard = 0; shard < shards; shard++) {
+                if (employees.get(shard).hasNext() || payStubs.get(shard).hasNext()) {
+                    throw new IllegalStateException("Shard " + shard + " has more records than"
+                            + " the roster gives it");
+                }
+            }
+            totals.reconcile();
+        } catch (IOException | UncheckedIOException | IllegalArgumentException
+                | IllegalStateException e) {
+            System.err.println("Error merging shards: " + e.getMessage());
+            FileUtil.discardStaged(employeeFile);
+            FileUtil.discardStaged(payrollFile);
+            return false;
+        } finally {
+            opened.forEach(Stream::close);
+        }
+        if (!FileUtil.commitStaged(List.of(employeeFile, payrollFile), true)) {
+            return false;
+        }
+        System.out.println("Merged " + shards + " shards: " + totals);
+        return true;
+    }
+
+    /**
+     * Opens a shard file's lines.
+     *
+     * @param file the shard file
+     * @param opened the streams to close after the merge, which this one is added to
+     * @return the lines after the header
+     */
+    private static Iterator<CharSequence> open(String file, List<Stream<CharSequence>> opened) {
+        Stream<CharSequence> lines = FileUtil.mapLines(file);
+        opened.add(lines);
+        return lines.iterator();
+    }
+
+    /**
+     * Takes the next line of a shard file.
+     *
+     * @param lines the shard file's lines
+     * @param shard the shard
+     * @param record what the file holds, for the error message
+     * @param line the roster line that needs it
+     * @return the next line
+     * @throws IllegalStateException if the shard file has no more lines
+     */
+    private static CharSequence next(Iterator<CharSequence> lines, int shard, String record,
+            long line) {
+        if (!lines.hasNext()) {
+            throw new IllegalStateException("Shard " + shard + " ran out of " + record
+                    + " records at line " + line);
+        }
+        return lines.next();
+    }
+
+    /**
+     * Gets the employee ID of a tokenized line.
+     *
+     * @param fields the tokenized line
+     * @param idField the field of the ID
+     * @return the ID
+     * @throws IllegalArgumentException if the line has no such field
+     */
+    private static String id(CsvTokenizer fields, int idField) {
+        if (fields.fieldCount() <= idField) {
+            throw new IllegalArgumentException("Missing employee ID: " + fields.line());
+        }
+        return fields.text(idField);
+    }
+
+    /**
+     * Gets how much an amount of an employee grew in a payroll run.
+     *
+     * @param original the tokenized employee line before the run
+     * @param updated the tokenized employee line after the run
+     * @param field the field of the amount
+     * @return the amount after, less the amount before
+     */
+    private static BigDecimal growth(CsvTokenizer original, CsvTokenizer updated, int field) {
+        return new BigDecimal(updated.text(field)).subtract(new BigDecimal(original.text(field)));
+    }
+
+    /**
+     * Closes every writer that was opened, even if closing one fails.
+     *
+     * @param writers the writers, null where none was opened
+     * @throws IOException the first error closing a writer
+     */
+    private static void closeAll(RecordWriter[] writers) throws IOException {
+        IOException error = null;
+        for (RecordWriter writer : writers) {
+            try {
+                if (writer != null) {
+                    writer.close();
+                }
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Counts and sums of a merge, checked against each other once it is done.
+     */
+    private static final class Totals {
+        /** employees merged. */
+        long employees;
+
+        /** pay stubs merged. */
+        long payStubs;
+
+        /** net pay of the merged pay stubs. */
+        BigDecimal netPay = BigDecimal.ZERO;
+
+        /** taxes of the merged pay stubs. */
+        BigDecimal taxes = BigDecimal.ZERO;
+
+        /** growth of YTD earnings across every employee. */
+        BigDecimal ytdEarnings = BigDecimal.ZERO;
+
+        /** growth of YTD taxes paid across every employee. */
+        BigDecimal ytdTaxes = BigDecimal.ZERO;
+
+        /**
+         * Checks the pay stubs account for all the growth of the YTD totals.
+         *
+         * @throws IllegalStateException if they don't
+         */
+        void reconcile() {
+            if (netPay.compareTo(ytdEarnings) != 0) {
+                throw new IllegalStateException("Net pay " + netPay.toPlainString()
+                        + " doesn't match the YTD earnings added, " + ytdEarnings.toPlainString());
+            }
+            if (taxes.compareTo(ytdTaxes) != 0) {
+                throw new IllegalStateException("Taxes " + taxes.toPlainString()
+                        + " don't match the YTD taxes added, " + ytdTaxes.toPlainString());
+            }
+        }
+
+        @Override
+        public String toString() {
+            return employees + " employees, " + payStubs + " pay stubs, net pay "
+                    + netPay.toPlainString() + ", taxes " + taxes.toPlainString();
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package student;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+/**
+ * Runs payroll by joining time cards to employees with a sort-merge join instead of a hash
+ * table, so neither input has to fit in memory.
+ *
+ * Each input that is not already in employee ID order is sorted by ID with an
+ * {@link ExternalSorter}, spilling runs to disk beside the pay stub file. The two ID ordered
+ * streams are then merged, paying each employee as their card (if any) comes up. Employee lines
+ * are tagged with their line number, and when the roster itself had to be sorted the results go
+ * through one more external sort on that number, so the output is in roster order exactly as
+ * with {@link StreamingPayroll}.
+ *
+ * The memory budget is split between the sorters that can be alive at the same time.
+ */
+public final class SortMergePayroll {
+    /** the ID field of an employee line. */
+    private static final int EMPLOYEE_ID_FIELD = 2;
+
+    /** the ID field of a time card line. */
+    private static final int TIME_CARD_ID_FIELD = 0;
+
+    /** separates the parts of a result while it is sorted back into roster order. */
+    private static final char RESULT_SEPARATOR = '\n';
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private SortMergePayroll() {
+
+    }
+
+    /**
+     * Runs payroll for every employee in employeeFile using the hours in timeCardFile.
+     *
+     * @param employeeFile the employee file, read and then replaced
+     * @param timeCardFile the time card file
+     * @param payrollFile the pay stub output file
+     * @param memoryBudget estimated bytes of records to hold in memory while sorting
+     * @return true if the payroll was written, false if it failed (the error is printed)
+     */
+    public static boolean run(String employeeFile, String timeCardFile, String payrollFile,
+            long memoryBudget) {
+        Path spillDir = Path.of(payrollFile).toAbsolutePath().getParent();
+        long budget = memoryBudget / 3;
+        try (ExternalSorter cardSorter = new ExternalSorter(spillDir, budget);
+                ExternalSorter employeeSorter = new ExternalSorter(spillDir, budget);
+                ExternalSorter resultSorter = new ExternalSorter(spillDir, budget);
+                Stream<CharSequence> cardLines = FileUtil.mapLines(timeCardFile);
+                Stream<CharSequence> employeeLines = FileUtil.mapLines(employeeFile);
+                RecordWriter employeeOut =
+                        FileUtil.openStagedWriter(employeeFile, FileUtil.EMPLOYEE_HEADER);
+                RecordWriter payStubOut =
+                        FileUtil.openStagedWriter(payrollFile, FileUtil.PAY_STUB_HEADER)) {
+            Iterator<ExternalSorter.Record> cards = isSorted(timeCardFile, TIME_CARD_ID_FIELD)
+                    ? byID(cardLines.iterator(), TIME_CARD_ID_FIELD)
+                    : sort(byID(cardLines.iterator(), TIME_CARD_ID_FIELD), cardSorter);
+            boolean rosterSorted = isSorted(employeeFile, EMPLOYEE_ID_FIELD);
+            Iterator<ExternalSorter.Record> employees = rosterSorted
+                    ? byID(employeeLines.iterator(), EMPLOYEE_ID_FIELD)
+                    : sort(byID(employeeLines.iterator(), EMPLOYEE_ID_FIELD), employeeSorter);
+
+            CardTotals card = new CardTotals(cards);
+            card.next();
+            StringBuilder result = new StringBuilder();
+            while (employees.hasNext()) {
+                ExternalSorter.Record row = employees.next();
+                while (card.id != null && card.id.compareTo(row.key) < 0) {
+                    card.next();
+                }
+                double hoursWorked = row.key.equals(card.id) ? card.hours : TimeCardIndex.NO_CARD;
+
+                IEmployee employee = Builder.buildEmployeeFromCSV(row.payload);
+                String notice = StreamingPayroll.skipReason(employee, hoursWorked);
+                IPayStub payStub = notice == null ? employee.runPayroll(hoursWorked) : null;
+                if (rosterSorted) {
+                    write(notice, payStub == null ? null : payStub.toCSV(), employee.toCSV(),
+                            employeeOut, payStubOut);
+                } else {
+                    result.setLength(0);
+                    result.append(employee.toCSV()).append(RESULT_SEPARATOR);
+                    result.append(payStub == null ? "" : payStub.toCSV())
+                            .append(RESULT_SEPARATOR);
+                    result.append(notice == null ? "" : notice);
+                    resultSorter.add("", row.seq, result.toString());
+                }
+            }
+            if (!rosterSorted) {
+                Iterator<ExternalSorter.Record> results = resultSorter.sorted();
+                while (results.hasNext()) {
+                    String[] parts = results.next().payload.split(
+                            String.valueOf(RESULT_SEPARATOR), -1);
+                    write(parts[2].isEmpty() ? null : parts[2],
+                            parts[1].isEmpty() ? null : parts[1], parts[0], employeeOut,
+                            payStubOut);
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Error running payroll: " + e.getMessage());
+            FileUtil.discardStaged(employeeFile);
+            FileUtil.discardStaged(payrollFile);
+            return false;
+        }
+
+        return FileUtil.commitStaged(List.of(employeeFile, payrollFile), true);
+    }
+
+    /**
+     * Checks if a file's lines are already in order of one of their fields.
+     *
+     * @param file the file
+     * @param idField the field the lines should be ordered by
+     * @return true if no line's field is less than the one before it
+     */
+    static boolean isSorted(String file, int idField) {
+        CsvTokenizer fields = new CsvTokenizer();
+        String previous = null;
+        try (Stream<CharSequence> lines = FileUtil.mapLines(file)) {
+            Iterator<CharSequence> it = lines.iterator();
+            while (it.hasNext()) {
+                fields.reset(it.next());
+                if (fields.fieldCount() <= idField) {
+                    return false;
+                }
+                String id = fields.text(idField);
+                if (previous != null && previous.compareTo(id) > 0) {
+                    return false;
+                }
+                previous = id;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Wraps lines as records keyed by one of their fields, numbered in file order.
+     *
+     * @param lines the lines
+     * @param idField the field to key the records by
+     * @return the records, keeping the order of the lines
+     */
+    private static Iterator<ExternalSorter.Record> byID(Iterator<CharSequence> lines,
+            int idField) {
+        CsvTokenizer fields = new CsvTokenizer();
+        return new Iterator<>() {
+            /** line number of the next line. */
+            private long seq;
+
+            @Override
+            public boolean hasNext() {
+                return lines.hasNext();
+            }
+
+            @Override
+            public ExternalSorter.Record next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String line = lines.next().toString();
+                fields.reset(line);
+                String key = fields.fieldCount() > idField ? fields.text(idField) : "";
+                return new ExternalSorter.Record(key, seq++, line);
+            }
+        };
+    }
+
+    /**
+     * Sorts records through an external sorter.
+     *
+     * @param records the records to sort
+     * @param sorter an empty sorter
+     * @return the records in key order
+     * @throws IOException if the sorter can't spill or read its runs
+     */
+    private static Iterator<ExternalSorter.Record> sort(Iterator<ExternalSorter.Record> records,
+            ExternalSorter sorter) throws IOException {
+        while (records.hasNext()) {
+            ExternalSorter.Record record = records.next();
+            sorter.add(record.key, record.seq, record.payload);
+        }
+        return sorter.sorted();
+    }
+
+    /**
+     * Writes the results for one employee.
+     *
+     * @param notice the reason the employee was skipped, or null
+     * @param payStubCSV the pay stub line, or null if the employee was skipped
+     * @param employeeCSV the updated employee line
+     * @param employeeOut the updated employee output
+     * @param payStubOut the pay stub output
+     * @throws IOException if the output can't be written
+     */
+    private static void write(String notice, String payStubCSV, String employeeCSV,
+            RecordWriter employeeOut, RecordWriter payStubOut) throws IOException {
+        if (notice != null) {
+            System.out.println(notice);
+        }
+        if (payStubCSV != null) {
+            payStubOut.write(payStubCSV);
+        }
+        employeeOut.write(employeeCSV);
+    }
+
+    /**
+     * Walks time cards in ID order one employee at a time, adding up the hours of employees
+     * with more than one card, the same as {@link TimeCardIndex}.
+     */
+    private static final class CardTotals {
+        /** the remaining cards in ID order. */
+        private final Iterator<ExternalSorter.Record> cards;
+
+        /** the first card of the next employee, or null. */
+        private ExternalSorter.Record pending;
+
+        /** the current employee ID, or null after the last card. */
+        private String id;
+
+        /** the total hours of the current employee. */
+        private double hours;
+
+        /** tokenizer for the card lines. */
+        private final CsvTokenizer fields = new CsvTokenizer();
+
+        /**
+         * Creates a walker, positioned before the first employee.
+         *
+         * @param cards the cards in ID order
+         */
+        CardTotals(Iterator<ExternalSorter.Record> cards) {
+            this.cards = cards;
+            this.pending = cards.hasNext() ? cards.next() : null;
+        }
+
+        /**
+         * Moves to the next employee's cards.
+         */
+        void next() {
+            if (pending == null) {
+                id = null;
+                return;
+            }
+            id = pending.key;
+            boolean first = true;
+            while (pending != null && pending.key.equals(id)) {
+                Builder.checkTimeCard(fields.reset(pending.payload));
+                hours = first ? fields.parseDouble(1)
+                        : TimeCardIndex.addShift(hours, fields.parseDouble(1));
+                first = false;
+                pending = cards.hasNext() ? cards.next() : null;
+            }
+        }
+    }
+}
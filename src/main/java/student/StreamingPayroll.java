@@ -0,0 +1,245 @@
+package student;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+/**
+ * Runs payroll as a stream: employee lines are read in fixed size batches, and each batch is
+ * built, paid and written out before the next one is read, so only one batch (plus the time card
+ * lookup) is in memory at a time.
+ *
+ * With more than one worker, each batch is computed on a ForkJoinPool. Results are kept by row,
+ * so the output is written in input order no matter how many workers are used.
+ *
+ * Pay stubs and the updated employees are written to staging files, and only replace the
+ * originals once the whole roster has been processed.
+ *
+ * Given a rejects file, a run is lenient: time card and employee lines that can't be parsed are
+ * written to it with their line number and reason, and the rest of the roster is still paid.
+ * Without one, the first invalid line stops the run with an IllegalArgumentException.
+ */
+public final class StreamingPayroll {
+    /** number of employee lines read and computed together. */
+    private static final int BATCH_SIZE = 8192;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private StreamingPayroll() {
+
+    }
+
+    /**
+     * Runs payroll for every employee in employeeFile using the hours in timeCardFile. The
+     * employee file is rewritten with the updated YTD values, and the pay stubs are written to
+     * payrollFile.
+     *
+     * @param employeeFile the employee file, read and then replaced
+     * @param timeCardFile the time card file
+     * @param payrollFile the pay stub output file
+     * @return true if the payroll was written, false if it failed and nothing was changed
+     */
+    public static boolean run(String employeeFile, String timeCardFile, String payrollFile) {
+        return run(employeeFile, timeCardFile, payrollFile, null, PayrollMetrics.DISABLED, null);
+    }
+
+    /**
+     * Runs payroll for every employee in employeeFile using the hours in timeCardFile,
+     * computing each batch of employees on a pool that may be shared with other runs. Reading
+     * and writing stay on the calling thread. The time of each phase is added to metrics, and
+     * any lines that can't be parsed are written to rejectsFile, which is committed along with
+     * the other outputs.
+     *
+     * @param employeeFile the employee file, read and then replaced
+     * @param timeCardFile the time card file
+     * @param payrollFile the pay stub output file
+     * @param pool the pool to compute on, or null to compute on the caller
+     * @param metrics where the phases, records and bytes of the run are added, or
+     *         {@link PayrollMetrics#DISABLED}
+     * @param rejectsFile the rejects output file, or null to stop at the first invalid line
+     * @return true if the payroll was written, false if it failed and nothing was changed
+     * @throws IllegalArgumentException if a line is invalid and there is no rejects file
+     */
+    public static boolean run(String employeeFile, String timeCardFile, String payrollFile,
+            ForkJoinPool pool, PayrollMetrics metrics, String rejectsFile) {
+        if (metrics.isEnabled()) {
+            metrics.addBytesRead(fileSize(timeCardFile) + fileSize(employeeFile));
+        }
+        long rejected;
+        boolean staged = false;
+        try (RejectSink rejects = rejectsFile == null ? null
+                : RejectSink.openStaged(rejectsFile)) {
+            long start = metrics.start();
+            TimeCardIndex timeCards = rejects == null ? TimeCardIndex.read(timeCardFile)
+                    : TimeCardIndex.read(timeCardFile, rejects);
+            metrics.end(PayrollMetrics.Phase.TIME_CARDS, start);
+
+            PayrollBatch.Rows batch =
+                    new PayrollBatch.Rows(BATCH_SIZE, timeCards, metrics, rejects != null);
+            try (Stream<CharSequence> lines = FileUtil.mapLines(employeeFile);
+                    RecordWriter employeeOut =
+                            FileUtil.openStagedWriter(employeeFile, FileUtil.EMPLOYEE_HEADER);
+                    RecordWriter payStubOut =
+                            FileUtil.openStagedWriter(payrollFile, FileUtil.PAY_STUB_HEADER)) {
+                Iterator<CharSequence> employeeLines = lines.iterator();
+                start = metrics.start();
+                while (employeeLines.hasNext()) {
+                    batch.lines[batch.size++] = employeeLines.next();
+                    if (batch.isFull() || !employeeLines.hasNext()) {
+                        metrics.end(PayrollMetrics.Phase.READ, start);
+                        metrics.addRecords(batch.size);
+                        compute(batch, pool);
+                        start = metrics.start();
+                        write(batch, employeeFile, employeeOut, payStubOut, rejects);
+                        metrics.end(PayrollMetrics.Phase.WRITE, start);
+                        start = metrics.start();
+                    }
+                }
+                metrics.addPayStubs(payStubOut.recordsWritten());
+                metrics.addBytesWritten(employeeOut.bytesWritten() + payStubOut.bytesWritten());
+            }
+            rejected = rejects == null ? 0 : rejects.count();
+            staged = true;
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Error running payroll: " + e.getMessage());
+            return false;
+        } finally {
+            // an I/O error, or an invalid line that stops a strict run, leaves nothing behind
+            if (!staged) {
+                FileUtil.discardStaged(employeeFile);
+                FileUtil.discardStaged(payrollFile);
+                if (rejectsFile != null) {
+                    FileUtil.discardStaged(rejectsFile);
+                }
+            }
+        }
+
+        long start = metrics.start();
+        boolean committed = FileUtil.commitStaged(rejectsFile == null
+                ? List.of(employeeFile, payrollFile)
+                : List.of(employeeFile, payrollFile, rejectsFile), true);
+        metrics.end(PayrollMetrics.Phase.COMMIT, start);
+        if (!committed) {
+            return false;
+        }
+        if (rejected > 0) {
+            System.err.println("Rejected " + rejected + " invalid records, see " + rejectsFile);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the size of a file.
+     *
+     * @param file the file
+     * @return its size in bytes, or 0 if it can't be read
+     */
+    private static long fileSize(String file) {
+        try {
+            return Files.size(Path.of(file));
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Computes every row of the batch, on the pool if there is one.
+     *
+     * @param batch the batch to compute
+     * @param pool the pool to compute on, or null to compute on this thread
+     */
+    private static void compute(PayrollBatch.Rows batch, ForkJoinPool pool) {
+        if (pool == null) {
+            for (int i = 0; i < batch.size; i++) {
+                batch.computeRow(i);
+            }
+        } else {
+            pool.invoke(PayrollBatch.of(batch));
+        }
+    }
+
+    /**
+     * Writes the results of a computed batch in row order, then empties the batch.
+     *
+     * @param batch the computed batch
+     * @param employeeFile the employee file the batch was read from
+     * @param employeeOut the updated employee output
+     * @param payStubOut the pay stub output
+     * @param rejects where rejected rows are written, or null if the batch is not lenient
+     * @throws IOException if the output can't be written
+     */
+    static void write(PayrollBatch.Rows batch, String employeeFile,
+            RecordWriter employeeOut, RecordWriter payStubOut, RejectSink rejects)
+            throws IOException {
+        for (int i = 0; i < batch.size; i++) {
+            if (rejects != null && batch.rejects[i] != null) {
+                rejects.reject(employeeFile, batch.firstLine + i, batch.rejects[i],
+                        batch.lines[i]);
+            }
+            if (batch.notices[i] != null) {
+                System.out.println(batch.notices[i]);
+            }
+            if (batch.payStubCSV[i] != null) {
+                payStubOut.write(batch.payStubCSV[i]);
+            }
+            employeeOut.write(batch.employeeCSV[i]);
+        }
+        batch.firstLine += batch.size;
+        batch.size = 0;
+    }
+
+    /**
+     * Runs payroll for a single employee.
+     *
+     * Employees without a time card, or with negative hours, are skipped this period. If the
+     * hours are 0, a pay stub is still generated, but the amount is 0.
+     *
+     * @param employee the employee to pay
+     * @param hoursWorked the hours from the employee's time card, or null if there is none
+     * @return the pay stub, or null if the employee was skipped
+     */
+    static IPayStub pay(IEmployee employee, Double hoursWorked) {
+        return pay(employee, hoursWorked == null ? TimeCardIndex.NO_CARD : hoursWorked);
+    }
+
+    /**
+     * Runs payroll for a single employee.
+     *
+     * @param employee the employee to pay
+     * @param hoursWorked the hours from the employee's time cards, or TimeCardIndex.NO_CARD
+     * @return the pay stub, or null if the employee was skipped
+     * @see #pay(IEmployee, Double)
+     */
+    static IPayStub pay(IEmployee employee, double hoursWorked) {
+        String notice = skipReason(employee, hoursWorked);
+        if (notice != null) {
+            System.out.println(notice);
+            return null;
+        }
+        return employee.runPayroll(hoursWorked);
+    }
+
+    /**
+     * Checks if an employee is skipped this period.
+     *
+     * @param employee the employee to pay
+     * @param hoursWorked the hours from the employee's time cards, or TimeCardIndex.NO_CARD if
+     *        there are none
+     * @return the message explaining why the employee is skipped, or null if they are paid
+     */
+    static String skipReason(IEmployee employee, double hoursWorked) {
+        if (Double.isNaN(hoursWorked)) {
+            return "No time card found for employee: " + employee.getName();
+        }
+        if (hoursWorked < 0) {
+            return "Skipping negative worked hours: " + employee.getName();
+        }
+        return null;
+    }
+}
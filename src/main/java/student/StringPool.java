@@ -0,0 +1,126 @@
+package student;
+
+import java.util.Arrays;
+
+/**
+ * An append-only list of strings stored end to end in one char array.
+ *
+ * Holding a column of names or IDs this way costs two chars per character plus one int per
+ * string, instead of a String object, its array and a reference for each.
+ */
+final class StringPool {
+    /** the characters of every string, end to end. */
+    private char[] chars;
+
+    /** ends[i] is the offset just after string i, so string i starts at ends[i - 1]. */
+    private int[] ends;
+
+    /** number of strings. */
+    private int size;
+
+    /** number of characters used. */
+    private int length;
+
+    /**
+     * Creates an empty pool.
+     *
+     * @param capacity the number of strings to make room for
+     */
+    StringPool(int capacity) {
+        this.chars = new char[Math.max(16, capacity * 8)];
+        this.ends = new int[Math.max(1, capacity)];
+    }
+
+    /**
+     * Creates a pool from its raw contents.
+     *
+     * @param chars the characters of every string, end to end
+     * @param ends the offset just after each string
+     * @param size the number of strings
+     */
+    StringPool(char[] chars, int[] ends, int size) {
+        this.chars = chars;
+        this.ends = ends;
+        this.size = size;
+        this.length = size == 0 ? 0 : ends[size - 1];
+    }
+
+    /**
+     * Adds a string to the end of the pool.
+     *
+     * @param value the string to add
+     * @return the index of the string
+     */
+    int add(String value) {
+        if (size == ends.length) {
+            ends = Arrays.copyOf(ends, Math.max(16, size * 2));
+        }
+        int newLength = length + value.length();
+        if (newLength > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(newLength, chars.length * 2));
+        }
+        value.getChars(0, value.length(), chars, length);
+        length = newLength;
+        ends[size] = length;
+        return size++;
+    }
+
+    /**
+     * Gets a string.
+     *
+     * @param index the index of the string
+     * @return a new String with its characters
+     */
+    String get(int index) {
+        int start = index == 0 ? 0 : ends[index - 1];
+        return new String(chars, start, ends[index] - start);
+    }
+
+    /**
+     * Appends a string to a builder without creating it.
+     *
+     * @param index the index of the string
+     * @param sb the builder to append to
+     * @return the builder
+     */
+    StringBuilder appendTo(int index, StringBuilder sb) {
+        int start = index == 0 ? 0 : ends[index - 1];
+        return sb.append(chars, start, ends[index] - start);
+    }
+
+    /**
+     * Gets the number of strings.
+     *
+     * @return the number of strings
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets the characters of every string, end to end. Only the first {@link #length()} are used.
+     *
+     * @return the backing array
+     */
+    char[] chars() {
+        return chars;
+    }
+
+    /**
+     * Gets the offset just after each string. Only the first {@link #size()} are used.
+     *
+     * @return the backing array
+     */
+    int[] ends() {
+        return ends;
+    }
+
+    /**
+     * Gets the number of characters used.
+     *
+     * @return the total length of every string
+     */
+    int length() {
+        return length;
+    }
+}
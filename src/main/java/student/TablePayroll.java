@@ -0,0 +1,174 @@
+package student;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs payroll over the whole roster held in an {@link EmployeeTable}, loaded from a
+ * {@link RosterSnapshot} when there is a current one and parsed from employees.csv otherwise.
+ *
+ * After the updated files are committed, a new snapshot is written matching the new
+ * employees.csv, so the next run starts from binary columns instead of text. Unlike
+ * {@link StreamingPayroll}, the whole roster is in memory at once, as compact primitive
+ * columns.
+ */
+public final class TablePayroll {
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private TablePayroll() {
+
+    }
+
+    /**
+     * Runs payroll for every employee in employeeFile using the hours in timeCardFile, then
+     * saves a snapshot of the updated roster.
+     *
+     * @param employeeFile the employee file, read (unless the snapshot is current) and replaced
+     * @param timeCardFile the time card file
+     * @param payrollFile the pay stub output file
+     * @param snapshotFile the roster snapshot, loaded if current and always rewritten
+     * @param workers the number of threads to compute pay on, 1 to compute on the caller
+     * @return true if the payroll was written, false if it failed (the error is printed)
+     */
+    public static boolean run(String employeeFile, String timeCardFile, String payrollFile,
+            String snapshotFile, int workers) {
+        EmployeeTable table = RosterSnapshot.load(Path.of(snapshotFile), Path.of(employeeFile));
+        if (table == null) {
+            table = EmployeeTable.read(employeeFile);
+        }
+
+        TimeCardIndex timeCards = TimeCardIndex.read(timeCardFile);
+        int rows = table.size();
+        double[] hours = new double[rows];
+        for (int row = 0; row < rows; row++) {
+            hours[row] = timeCards.hours(table.getID(row));
+        }
+
+        long[] netPay = new long[rows];
+        long[] taxesPaid = new long[rows];
+        ForkJoinPool pool = workers > 1 ? new ForkJoinPool(workers) : null;
+        try {
+            pay(table, hours, netPay, taxesPaid, pool);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+
+        try (RecordWriter employeeOut =
+                FileUtil.openStagedWriter(employeeFile, FileUtil.EMPLOYEE_HEADER);
+                RecordWriter payStubOut =
+                        FileUtil.openStagedWriter(payrollFile, FileUtil.PAY_STUB_HEADER)) {
+            for (int row = 0; row < rows; row++) {
+                if (netPay[row] != EmployeeTable.NO_PAY) {
+                    payStubOut.write(table.payStub(row, netPay[row], taxesPaid[row]).toCSV());
+                } else if (Double.isNaN(hours[row])) {
+                    System.out.println("No time card found for employee: " + table.getName(row));
+                } else {
+                    System.out.println("Skipping negative worked hours: " + table.getName(row));
+                }
+                employeeOut.write(table.toCSV(row));
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Error running payroll: " + e.getMessage());
+            FileUtil.discardStaged(employeeFile);
+            FileUtil.discardStaged(payrollFile);
+            return false;
+        }
+
+        if (!FileUtil.commitStaged(List.of(employeeFile, payrollFile), true)) {
+            return false; // the snapshot would be ahead of the employee file
+        }
+        try {
+            RosterSnapshot.write(table, Path.of(snapshotFile), Path.of(employeeFile));
+        } catch (IOException e) {
+            // the run itself succeeded, the next one just has to parse the CSV again
+            System.err.println("Error writing roster snapshot: " + e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Runs payroll for every row of the table.
+     *
+     * @param table the roster
+     * @param hours the hours worked by each row
+     * @param netPay receives the net pay of each row
+     * @param taxesPaid receives the taxes of each row
+     * @param pool the pool to compute on, or null to compute on the caller
+     * @see EmployeeTable#runPayroll
+     */
+    static void pay(EmployeeTable table, double[] hours, long[] netPay, long[] taxesPaid,
+            ForkJoinPool pool) {
+        if (pool == null) {
+            table.runPayroll(0, table.size(), hours, netPay, taxesPaid);
+        } else {
+            pool.invoke(new RangeTask(table, hours, netPay, taxesPaid, 0, table.size()));
+        }
+    }
+
+    /**
+     * Pays a range of table rows, splitting it in halves across the pool.
+     */
+    private static final class RangeTask extends RecursiveAction {
+        /** rows at or below this count are paid directly instead of being split further. */
+        private static final int SPLIT_THRESHOLD = 4096;
+
+        /** serial version, as RecursiveAction is Serializable. */
+        private static final long serialVersionUID = 1L;
+
+        /** the roster; tasks are never serialized, so it isn't either. */
+        private final transient EmployeeTable table;
+
+        /** the hours worked by each row. */
+        private final double[] hours;
+
+        /** receives the net pay of each row. */
+        private final long[] netPay;
+
+        /** receives the taxes of each row. */
+        private final long[] taxesPaid;
+
+        /** first row, inclusive. */
+        private final int from;
+
+        /** last row, exclusive. */
+        private final int to;
+
+        /**
+         * Creates a task paying rows [from, to).
+         *
+         * @param table the roster
+         * @param hours the hours worked by each row
+         * @param netPay receives the net pay of each row
+         * @param taxesPaid receives the taxes of each row
+         * @param from first row, inclusive
+         * @param to last row, exclusive
+         */
+        RangeTask(EmployeeTable table, double[] hours, long[] netPay, long[] taxesPaid,
+                int from, int to) {
+            this.table = table;
+            this.hours = hours;
+            this.netPay = netPay;
+            this.taxesPaid = taxesPaid;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                table.runPayroll(from, to, hours, netPay, taxesPaid);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeTask(table, hours, netPay, taxesPaid, from, mid),
+                    new RangeTask(table, hours, netPay, taxesPaid, mid, to));
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package student;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * The taxes on a period's net pay before tax, compiled from bracket rules into flat arrays.
+ *
+ * A rules file has the header {@link #RULES_HEADER} and one line per bracket of a tax
+ * component, for example:
+ *
+ * <pre>
+ * component,from,rate,up_to
+ * federal,0,0.10,
+ * federal,500.00,0.15,
+ * state,0,0.05,
+ * social_security,0,0.062,6000.00
+ * </pre>
+ *
+ * A bracket taxes the part of the pay from its from amount up to the next bracket of the same
+ * component, or up to its up_to cap if there is one; an empty or missing up_to is no cap.
+ * Amounts are per pay period, and rates have at most four decimal places. Pay below zero is
+ * taxed at the rate of the lowest bracket, so a negative net pay gets a negative tax, as with
+ * the flat rate. Per-state rates live in each state's rules file.
+ *
+ * Since every component is piecewise linear, so is their sum. Compiling adds the components
+ * together into one list of breakpoints, each with the total rate from there on and an offset
+ * that makes the tax continuous, so taxing a pay is a binary search and a multiply-add on
+ * primitive arrays. A table is immutable and can be shared by any number of threads.
+ *
+ * The table used for a run is set once with {@link #setActive}; until then it is {@link #FLAT},
+ * the original 22.65% on everything.
+ */
+public final class TaxTable {
+    /** header line of a rules file. */
+    public static final String RULES_HEADER = "component,from,rate,up_to";
+
+    /** source of table versions. */
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    /** 1.45% medicare + 6.2% social security + 15% withholding on all pay. */
+    public static final TaxTable FLAT = flat(Money.TAX_RATE);
+
+    /** the table in use. */
+    private static volatile TaxTable active = FLAT;
+
+    /** start of each bracket in cents, ascending; the first is 0. */
+    private final long[] from;
+
+    /** total rate of each bracket, scaled to {@link Money#SCALE} places. */
+    private final long[] rates;
+
+    /** tax at 0 of each bracket's line, in cents scaled to {@link Money#SCALE} places. */
+    private final long[] offsets;
+
+    /** identifies this table among the tables compiled in this JVM. */
+    private final long version;
+
+    /**
+     * Creates a compiled table.
+     *
+     * @param from start of each bracket in cents
+     * @param rates total scaled rate of each bracket
+     * @param offsets scaled tax at 0 of each bracket's line
+     */
+    private TaxTable(long[] from, long[] rates, long[] offsets) {
+        this.from = from;
+        this.rates = rates;
+        this.offsets = offsets;
+        this.version = VERSIONS.incrementAndGet();
+    }
+
+    /**
+     * Creates a table with one rate on all pay.
+     *
+     * @param rate the rate, at most four decimal places
+     * @return the table
+     * @throws IllegalArgumentException if the rate has more places or is not in [0, 1]
+     */
+    public static TaxTable flat(double rate) {
+        return compile(List.of(new Bracket("flat", 0, scaledRate(rate), Long.MAX_VALUE)));
+    }
+
+    /**
+     * Reads and compiles a rules file.
+     *
+     * @param rulesFile the rules file
+     * @return the table
+     * @throws IllegalArgumentException if a line is not a valid bracket, or the file has none
+     */
+    public static TaxTable read(String rulesFile) {
+        List<String[]> lines = new ArrayList<>();
+        CsvTokenizer fields = new CsvTokenizer();
+        try (Stream<CharSequence> rules = FileUtil.mapLines(rulesFile)) {
+            rules.forEach(line -> {
+                fields.reset(line);
+                if (fields.fieldCount() == 1 && fields.text(0).isEmpty()) {
+                    return; // blank line
+                }
+                // an empty up_to is a trailing empty field, which the tokenizer drops
+                if (fields.fieldCount() != 3 && fields.fieldCount() != 4) {
+                    throw new IllegalArgumentException("Invalid tax rule: " + line);
+                }
+                lines.add(new String[] {fields.text(0), fields.text(1), fields.text(2),
+                    fields.fieldCount() == 4 ? fields.text(3) : ""});
+            });
+        }
+        return compile(parse(lines));
+    }
+
+    /**
+     * Gets the table payroll is run with.
+     *
+     * @return the active table
+     */
+    public static TaxTable active() {
+        return active;
+    }
+
+    /**
+     * Sets the table payroll is run with, for every thread.
+     *
+     * @param table the table
+     */
+    public static void setActive(TaxTable table) {
+        active = table;
+    }
+
+    /**
+     * Gets the version of this table, which is different for every table compiled in this JVM.
+     *
+     * @return the version
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Gets the number of brackets after compiling.
+     *
+     * @return the number of brackets
+     */
+    int brackets() {
+        return from.length;
+    }
+
+    /**
+     * Gets the rate of a table that taxes all pay at a single rate, such as {@link #FLAT}.
+     *
+     * @return the rate with {@link Money#SCALE} places, or {@link Money#INEXACT} if the table
+     *         has more than one bracket
+     */
+    long flatRate() {
+        return from.length == 1 && offsets[0] == 0 ? rates[0] : Money.INEXACT;
+    }
+
+    /**
+     * Calculates the taxes on net pay before tax, rounded HALF_UP to cents.
+     *
+     * @param netBeforeTax the net pay before tax, as limited by Money's net pay methods
+     * @param scale the number of decimal places in netBeforeTax
+     * @return the taxes in cents
+     */
+    public long taxCents(long netBeforeTax, int scale) {
+        long tax = taxScaled(netBeforeTax, scale);
+        if (tax == Money.INEXACT) {
+            return Money.cents(tax(BigDecimal.valueOf(netBeforeTax, scale)));
+        }
+        return Money.divideHalfUp(tax, Money.powerOfTen(scale + Money.SCALE - 2));
+    }
+
+    /**
+     * Calculates the final net pay (net pay before tax minus the unrounded taxes), rounded
+     * HALF_UP to cents.
+     *
+     * @param netBeforeTax the net pay before tax, as limited by Money's net pay methods
+     * @param scale the number of decimal places in netBeforeTax
+     * @return the final net pay in cents
+     */
+    public long netCents(long netBeforeTax, int scale) {
+        long tax = taxScaled(netBeforeTax, scale);
+        if (tax == Money.INEXACT) {
+            BigDecimal exact = BigDecimal.valueOf(netBeforeTax, scale);
+            return Money.cents(exact.subtract(tax(exact)));
+        }
+        // netBeforeTax is limited so that it can be scaled up once more
+        long afterTax = netBeforeTax * Money.powerOfTen(Money.SCALE) - tax;
+        return Money.divideHalfUp(afterTax, Money.powerOfTen(scale + Money.SCALE - 2));
+    }
+
+    /**
+     * Calculates the unrounded taxes on net pay before tax.
+     *
+     * @param netBeforeTax the net pay before tax
+     * @return the taxes
+     */
+    public BigDecimal tax(BigDecimal netBeforeTax) {
+        BigDecimal cents = netBeforeTax.movePointRight(2).setScale(0, RoundingMode.FLOOR);
+        int bracket = cents.unscaledValue().bitLength() < Long.SIZE ? bracket(cents.longValue())
+                : cents.signum() < 0 ? 0 : from.length - 1;
+        return netBeforeTax.multiply(BigDecimal.valueOf(rates[bracket], Money.SCALE))
+                .add(BigDecimal.valueOf(offsets[bracket], Money.SCALE + 2));
+    }
+
+    /**
+     * Calculates the taxes on net pay before tax, with scale + {@link Money#SCALE} places.
+     *
+     * @param netBeforeTax the net pay before tax
+     * @param scale the number of decimal places in netBeforeTax
+     * @return the exact taxes, or {@link Money#INEXACT} if they don't fit in a long
+     */
+    private long taxScaled(long netBeforeTax, int scale) {
+        int bracket = bracket(Math.floorDiv(netBeforeTax, Money.powerOfTen(scale - 2)));
+        long offset = offsets[bracket];
+        if (offset == 0) {
+            return netBeforeTax * rates[bracket]; // fits, as netBeforeTax is limited
+        }
+        try {
+            return Math.addExact(netBeforeTax * rates[bracket],
+                    Math.multiplyExact(offset, Money.powerOfTen(scale - 2)));
+        } catch (ArithmeticException e) {
+            return Money.INEXACT;
+        }
+    }
+
+    /**
+     * Finds the bracket that taxes a pay.
+     *
+     * @param cents the pay in whole cents, rounded down
+     * @return the index of the last bracket starting at or below the pay, or 0 for pay below 0
+     */
+    private int bracket(long cents) {
+        int low = 0;
+        int high = from.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (from[mid] <= cents) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Reads the brackets of the rules lines.
+     *
+     * @param lines the component, from, rate and up_to of each line
+     * @return the brackets
+     * @throws IllegalArgumentException if a value is invalid, or there are no lines
+     */
+    private static List<Bracket> parse(List<String[]> lines) {
+        if (lines.isEmpty()) {
+            throw new IllegalArgumentException("No tax rules");
+        }
+        List<Bracket> brackets = new ArrayList<>();
+        for (String[] line : lines) {
+            try {
+                long start = cents(line[1]);
+                long cap = line[3].isBlank() ? Long.MAX_VALUE : cents(line[3]);
+                if (start < 0 || cap <= start) {
+                    throw new IllegalArgumentException("bracket is empty");
+                }
+                brackets.add(new Bracket(line[0], start, scaledRate(Double.parseDouble(line[2])),
+                        cap));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                        "Invalid tax rule: " + String.join(",", line) + " (" + e.getMessage()
+                                + ")");
+            }
+        }
+        // each bracket ends where the next one of its component starts, if that comes first
+        brackets.sort((a, b) -> a.component.equals(b.component)
+                ? Long.compare(a.from, b.from) : a.component.compareTo(b.component));
+        for (int i = 0; i + 1 < brackets.size(); i++) {
+            Bracket bracket = brackets.get(i);
+            Bracket next = brackets.get(i + 1);
+            if (bracket.component.equals(next.component)) {
+                if (next.from == bracket.from) {
+                    throw new IllegalArgumentException("Invalid tax rule: two " + next.component
+                            + " brackets from " + Money.appendCents(new StringBuilder(),
+                                    next.from));
+                }
+                brackets.set(i, new Bracket(bracket.component, bracket.from, bracket.rate,
+                        Math.min(bracket.to, next.from)));
+            }
+        }
+        return brackets;
+    }
+
+    /**
+     * Adds brackets together into a table.
+     *
+     * @param brackets the brackets of every component
+     * @return the table
+     * @throws IllegalArgumentException if the total rate is over 100% anywhere
+     */
+    private static TaxTable compile(List<Bracket> brackets) {
+        TreeSet<Long> points = new TreeSet<>();
+        points.add(0L);
+        for (Bracket bracket : brackets) {
+            points.add(bracket.from);
+            if (bracket.to != Long.MAX_VALUE) {
+                points.add(bracket.to);
+            }
+        }
+        long[] from = new long[points.size()];
+        long[] rates = new long[from.length];
+        long[] offsets = new long[from.length];
+        int i = 0;
+        for (long point : points) {
+            from[i] = point;
+            for (Bracket bracket : brackets) {
+                if (bracket.from <= point && point < bracket.to) {
+                    rates[i] += bracket.rate;
+                }
+            }
+            if (rates[i] > Money.powerOfTen(Money.SCALE)) {
+                throw new IllegalArgumentException("Tax rate over 100% from "
+                        + Money.appendCents(new StringBuilder(), point));
+            }
+            if (i > 0) {
+                // continuous at the breakpoint: offset + point * rate is the same either side
+                offsets[i] = Math.addExact(offsets[i - 1],
+                        Math.multiplyExact(point, rates[i - 1] - rates[i]));
+            }
+            i++;
+        }
+        // merge neighbors with the same rate, which a cap ending at the next start leaves
+        int kept = 0;
+        for (int j = 0; j < from.length; j++) {
+            if (kept > 0 && rates[j] == rates[kept - 1]) {
+                continue;
+            }
+            from[kept] = from[j];
+            rates[kept] = rates[j];
+            offsets[kept] = offsets[j];
+            kept++;
+        }
+        return new TaxTable(Arrays.copyOf(from, kept), Arrays.copyOf(rates, kept),
+                Arrays.copyOf(offsets, kept));
+    }
+
+    /**
+     * Parses an amount in exact cents.
+     *
+     * @param amount the amount, at most two decimal places
+     * @return the cents
+     * @throws IllegalArgumentException if the amount has more places or is too large
+     */
+    private static long cents(String amount) {
+        double value = Double.parseDouble(amount);
+        long scaled = Money.toScaled(value);
+        if (scaled == Money.INEXACT || scaled % 100 != 0) {
+            throw new IllegalArgumentException("not a whole number of cents: " + amount);
+        }
+        return scaled / 100;
+    }
+
+    /**
+     * Scales a rate to {@link Money#SCALE} places.
+     *
+     * @param rate the rate
+     * @return the scaled rate
+     * @throws IllegalArgumentException if the rate has more places or is not in [0, 1]
+     */
+    private static long scaledRate(double rate) {
+        long scaled = Money.toScaled(rate);
+        if (scaled == Money.INEXACT || scaled < 0 || scaled > Money.powerOfTen(Money.SCALE)) {
+            throw new IllegalArgumentException("rate must be 0 to 1 with at most "
+                    + Money.SCALE + " decimal places: " + rate);
+        }
+        return scaled;
+    }
+
+    /**
+     * One bracket of one component, before compiling.
+     */
+    private static final class Bracket {
+        /** the component the bracket belongs to. */
+        private final String component;
+
+        /** start of the bracket in cents. */
+        private final long from;
+
+        /** scaled rate of the bracket. */
+        private final long rate;
+
+        /** end of the bracket in cents, or Long.MAX_VALUE. */
+        private final long to;
+
+        /**
+         * Creates a bracket.
+         *
+         * @param component the component the bracket belongs to
+         * @param from start of the bracket in cents
+         * @param rate scaled rate of the bracket
+         * @param to end of the bracket in cents, or Long.MAX_VALUE
+         */
+        Bracket(String component, long from, long rate, long to) {
+            this.component = component;
+            this.from = from;
+            this.rate = rate;
+            this.to = to;
+        }
+    }
+}
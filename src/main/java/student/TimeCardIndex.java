@@ -0,0 +1,255 @@
+package student;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Hours worked by employee ID, in an open-addressing hash table.
+ *
+ * IDs and hours are kept in two parallel arrays probed linearly, so hours are stored as plain
+ * doubles rather than a boxed Double per entry, and there are no entry objects. An ID that
+ * appears on more than one time card (one row per shift, for example) gets the sum of its
+ * hours. A card with negative hours is invalid, so it is never added to the other shifts; it
+ * only stands as the total, and gets the employee skipped, if there is no valid card.
+ *
+ * When read from a file, the table is sized from the file length up front, so it rarely has to
+ * grow while loading.
+ */
+public final class TimeCardIndex {
+    /** returned for an ID with no time card. */
+    public static final double NO_CARD = Double.NaN;
+
+    /** guess at the bytes in a time card line, used to size the table from the file. */
+    private static final int BYTES_PER_CARD = 12;
+
+    /** the table grows when more than this fraction of slots are used. */
+    private static final double LOAD_FACTOR = 0.5;
+
+    /** the ID in each slot, or null if the slot is empty. */
+    private String[] ids;
+
+    /** the hours in each slot. */
+    private double[] hours;
+
+    /** number of IDs in the table. */
+    private int size;
+
+    /** size at which the table grows. */
+    private int threshold;
+
+    /**
+     * Creates an empty index.
+     *
+     * @param expected the number of IDs expected
+     */
+    public TimeCardIndex(int expected) {
+        allocate(tableSize(expected));
+    }
+
+    /**
+     * Reads a time_cards.csv file into an index.
+     *
+     * @param timeCardFile the time card file
+     * @return the index, empty if the file can't be read
+     * @throws IllegalArgumentException if a line is not a valid time card record
+     */
+    public static TimeCardIndex read(String timeCardFile) {
+        TimeCardIndex index = presized(timeCardFile);
+        CsvTokenizer fields = new CsvTokenizer();
+        try (Stream<CharSequence> lines = FileUtil.mapLines(timeCardFile)) {
+            lines.forEach(line -> {
+                Builder.checkTimeCard(fields.reset(line));
+                index.add(fields.text(0), fields.parseDouble(1));
+            });
+        }
+        return index;
+    }
+
+    /**
+     * Reads a time_cards.csv file into an index, sending any line that isn't a valid time card
+     * record to the rejects instead of throwing.
+     *
+     * @param timeCardFile the time card file
+     * @param rejects where invalid lines are written
+     * @return the index of the valid lines, empty if the file can't be read
+     * @throws IOException if a reject can't be written
+     */
+    static TimeCardIndex read(String timeCardFile, RejectSink rejects) throws IOException {
+        TimeCardIndex index = presized(timeCardFile);
+        CsvTokenizer fields = new CsvTokenizer();
+        try (Stream<CharSequence> lines = FileUtil.mapLines(timeCardFile)) {
+            Iterator<CharSequence> cards = lines.iterator();
+            long lineNumber = 1; // the header
+            while (cards.hasNext()) {
+                CharSequence line = cards.next();
+                lineNumber++;
+                int result = Builder.validateTimeCard(fields.reset(line));
+                if (result != Builder.VALID) {
+                    rejects.reject(timeCardFile, lineNumber, Builder.describe(result, fields),
+                            line);
+                    continue;
+                }
+                index.add(fields.text(0), fields.parseDouble(1));
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Creates an empty index sized for a time card file.
+     *
+     * @param timeCardFile the time card file
+     * @return the empty index
+     */
+    private static TimeCardIndex presized(String timeCardFile) {
+        long length;
+        try {
+            length = Files.size(Path.of(timeCardFile));
+        } catch (IOException e) {
+            length = 0; // reported when the lines are read
+        }
+        return new TimeCardIndex((int) Math.min(Integer.MAX_VALUE / 4, length / BYTES_PER_CARD));
+    }
+
+    /**
+     * Adds hours for an ID, on top of any it already has.
+     *
+     * @param id the employee ID
+     * @param hoursWorked the hours to add
+     */
+    public void add(String id, double hoursWorked) {
+        int mask = ids.length - 1;
+        int slot = hash(id) & mask;
+        while (ids[slot] != null) {
+            if (ids[slot].equals(id)) {
+                hours[slot] = addShift(hours[slot], hoursWorked);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        ids[slot] = id;
+        hours[slot] = hoursWorked;
+        if (++size > threshold) {
+            rehash();
+        }
+    }
+
+    /**
+     * Adds the hours of another card to an employee's total. Negative hours are checked before
+     * merging, the same as for a single card: a negative card is skipped as invalid, and a
+     * negative total (every card so far invalid) is replaced by the first valid card.
+     *
+     * @param total the hours of the cards so far
+     * @param shift the hours of the next card
+     * @return the new total
+     */
+    static double addShift(double total, double shift) {
+        if (shift < 0) {
+            return total;
+        }
+        return total < 0 ? shift : total + shift;
+    }
+
+    /**
+     * Gets the total hours for an ID.
+     *
+     * @param id the employee ID
+     * @return the hours, or {@link #NO_CARD} if the ID has no time card
+     */
+    public double hours(String id) {
+        int mask = ids.length - 1;
+        int slot = hash(id) & mask;
+        String key;
+        while ((key = ids[slot]) != null) {
+            if (key.equals(id)) {
+                return hours[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NO_CARD;
+    }
+
+    /**
+     * Checks if an ID has a time card.
+     *
+     * @param id the employee ID
+     * @return true if it has at least one
+     */
+    public boolean contains(String id) {
+        return !Double.isNaN(hours(id));
+    }
+
+    /**
+     * Gets the number of IDs with a time card.
+     *
+     * @return the number of distinct IDs
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of slots in the table.
+     *
+     * @return the table capacity
+     */
+    int capacity() {
+        return ids.length;
+    }
+
+    /**
+     * Picks a power of two table size that holds the expected IDs under the load factor.
+     *
+     * @param expected the number of IDs expected
+     * @return the number of slots
+     */
+    private static int tableSize(int expected) {
+        long needed = (long) Math.ceil(Math.max(expected, 8) / LOAD_FACTOR);
+        return (int) Math.min(1 << 30, Long.highestOneBit(needed - 1) << 1);
+    }
+
+    /**
+     * Spreads the bits of an ID's hash code, so IDs differing only in high bits don't collide.
+     *
+     * @param id the employee ID
+     * @return the spread hash
+     */
+    private static int hash(String id) {
+        int h = id.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Creates empty arrays with the given number of slots.
+     *
+     * @param slots the number of slots, a power of two
+     */
+    private void allocate(int slots) {
+        ids = new String[slots];
+        hours = new double[slots];
+        threshold = (int) (slots * LOAD_FACTOR);
+    }
+
+    /**
+     * Doubles the number of slots, reinserting every ID.
+     */
+    private void rehash() {
+        String[] oldIds = ids;
+        double[] oldHours = hours;
+        allocate(oldIds.length * 2);
+        int mask = ids.length - 1;
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] != null) {
+                int slot = hash(oldIds[i]) & mask;
+                while (ids[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                ids[slot] = oldIds[i];
+                hours[slot] = oldHours[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package student;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Pays hourly rows of an {@link EmployeeTable} several at a time with the JDK Vector API
+ * (jdk.incubator.vector).
+ *
+ * The math is the same fixed-point math as {@link Money#hourlyNetBeforeTaxScaled} and a flat
+ * {@link TaxTable}, lane by lane: hours are split at 40 and scaled to exact longs, overtime is
+ * paid at 1.5 times the rate, the deductions are taken off, and tax and net pay are rounded
+ * HALF_UP to cents. The divisions by powers of ten are done as a double estimate corrected in
+ * exact long arithmetic, so every result matches the scalar path bit for bit.
+ *
+ * A lane the kernel can't prove it handles exactly is left to the scalar path: salary rows,
+ * hours or amounts that aren't exact at four places, and pay large enough that the scalar path
+ * might need BigDecimal. Those rows get {@link #SCALAR}.
+ *
+ * The module has to be added to the JVM ({@code --add-modules jdk.incubator.vector}), so this
+ * class is only loaded once {@link EmployeeTable} has checked it is there.
+ */
+final class VectorPayKernel {
+    /** marks a row the kernel left for the scalar path. */
+    static final long SCALAR = Long.MIN_VALUE + 1;
+
+    /** the widest long vectors the CPU supports. */
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+    /** double vectors with as many lanes as {@link #LONGS}. */
+    private static final VectorSpecies<Double> DOUBLES =
+            VectorSpecies.of(double.class, LONGS.vectorShape());
+
+    /** 10 to the {@link Money#SCALE}, the factor of a scaled value. */
+    private static final long SCALE_FACTOR = Money.powerOfTen(Money.SCALE);
+
+    /** scales deductions up to {@link Money#HOURLY_SCALE}. */
+    private static final long DEDUCTION_FACTOR =
+            Money.powerOfTen(Money.HOURLY_SCALE - Money.SCALE);
+
+    /** divides tax (at HOURLY_SCALE + SCALE places) down to cents. */
+    private static final long CENTS_DIVISOR =
+            Money.powerOfTen(Money.HOURLY_SCALE + Money.SCALE - 2);
+
+    /** hours at or above this are left to the scalar path, matching Money's exact range. */
+    private static final double MAX_HOURS = 1e7;
+
+    /** largest scaled rate handled, $1,000,000 an hour, so gross pay can't overflow. */
+    private static final long MAX_RATE = 10_000_000_000L;
+
+    /** largest scaled overtime handled, 1,000 hours, so gross pay can't overflow. */
+    private static final long MAX_OVERTIME = 10_000_000L;
+
+    /** largest net pay before tax the scalar path taxes without BigDecimal. */
+    private static final long MAX_NET_BEFORE_TAX = Long.MAX_VALUE / SCALE_FACTOR;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private VectorPayKernel() {
+
+    }
+
+    /**
+     * Pays the hourly rows [from, to) with a flat tax rate. Rows with negative or NaN hours get
+     * {@link EmployeeTable#NO_PAY}; rows the kernel doesn't handle, including any left over
+     * after the last full vector, get {@link #SCALAR}. YTD totals are not touched.
+     *
+     * @param types the type of each row
+     * @param rates the scaled pay rate of each row, or Money.INEXACT
+     * @param deductions the scaled pretax deductions of each row, or Money.INEXACT
+     * @param hours the hours worked by each row
+     * @param from the first row, inclusive
+     * @param to the last row, exclusive
+     * @param taxRate the flat tax rate, with Money.SCALE places, 0 to 100%
+     * @param netPay receives the net pay of each row, in cents
+     * @param taxesPaid receives the taxes of each row, in cents
+     */
+    static void payHourly(byte[] types, long[] rates, long[] deductions, double[] hours,
+            int from, int to, long taxRate, long[] netPay, long[] taxesPaid) {
+        int lanes = LONGS.length();
+        int row = from;
+        for (; row + lanes <= to; row += lanes) {
+            DoubleVector worked = DoubleVector.fromArray(DOUBLES, hours, row);
+            VectorMask<Long> paid = worked.compare(VectorOperators.GE, 0.0).cast(LONGS);
+            VectorMask<Long> handled = paid
+                    .and(worked.compare(VectorOperators.LT, MAX_HOURS).cast(LONGS))
+                    .and(hourly(types, row));
+
+            DoubleVector regularHours = worked.min(Money.OVERTIME_HOURS);
+            DoubleVector overtimeHours = worked.sub(Money.OVERTIME_HOURS).max(0.0);
+            LongVector regular = toScaled(regularHours);
+            LongVector overtime = toScaled(overtimeHours);
+            handled = handled.and(isScaled(regular, regularHours))
+                    .and(isScaled(overtime, overtimeHours))
+                    .and(overtime.compare(VectorOperators.LE, MAX_OVERTIME));
+
+            LongVector rate = LongVector.fromArray(LONGS, rates, row);
+            LongVector deduction = LongVector.fromArray(LONGS, deductions, row);
+            handled = handled.and(rate.compare(VectorOperators.NE, Money.INEXACT))
+                    .and(rate.abs().compare(VectorOperators.LE, MAX_RATE))
+                    .and(deduction.compare(VectorOperators.NE, Money.INEXACT));
+
+            // regular * rate has 8 places and overtime * rate * 1.5 has 9, so work at 9
+            LongVector netBeforeTax = regular.mul(rate).mul(10)
+                    .add(overtime.mul(rate).mul(15))
+                    .sub(deduction.mul(DEDUCTION_FACTOR));
+            handled = handled.and(
+                    netBeforeTax.abs().compare(VectorOperators.LE, MAX_NET_BEFORE_TAX));
+
+            LongVector tax = netBeforeTax.mul(taxRate);
+            LongVector taxes = divideHalfUp(tax, CENTS_DIVISOR);
+            LongVector net = divideHalfUp(netBeforeTax.mul(SCALE_FACTOR).sub(tax), CENTS_DIVISOR);
+
+            VectorMask<Long> skipped = paid.not();
+            net.blend(SCALAR, handled.not()).blend(EmployeeTable.NO_PAY, skipped)
+                    .intoArray(netPay, row);
+            taxes.blend(SCALAR, handled.not()).blend(EmployeeTable.NO_PAY, skipped)
+                    .intoArray(taxesPaid, row);
+        }
+        for (; row < to; row++) {
+            netPay[row] = SCALAR;
+            taxesPaid[row] = SCALAR;
+        }
+    }
+
+    /**
+     * Gets the lanes of a vector of rows that are hourly.
+     *
+     * @param types the type of each row
+     * @param row the first row of the vector
+     * @return the mask of hourly rows
+     */
+    private static VectorMask<Long> hourly(byte[] types, int row) {
+        long bits = 0;
+        for (int lane = 0; lane < LONGS.length(); lane++) {
+            if (types[row + lane] == EmployeeTable.HOURLY) {
+                bits |= 1L << lane;
+            }
+        }
+        return VectorMask.fromLong(LONGS, bits);
+    }
+
+    /**
+     * Scales values to longs with {@link Money#SCALE} places, rounding half up. Where that
+     * differs from {@link Math#round}, the result isn't exact and {@link #isScaled} rejects it.
+     *
+     * @param values the values, not negative
+     * @return the scaled values
+     */
+    private static LongVector toScaled(DoubleVector values) {
+        return (LongVector) values.mul(SCALE_FACTOR).add(0.5)
+                .convert(VectorOperators.D2L, 0);
+    }
+
+    /**
+     * Checks scaled values are exact, the same check as {@link Money#toScaled}.
+     *
+     * @param scaled the scaled values
+     * @param values the values they were scaled from
+     * @return the lanes where scaled / 10^SCALE is exactly the value
+     */
+    private static VectorMask<Long> isScaled(LongVector scaled, DoubleVector values) {
+        DoubleVector back = (DoubleVector) scaled.convert(VectorOperators.L2D, 0);
+        return back.div(SCALE_FACTOR).compare(VectorOperators.EQ, values).cast(LONGS);
+    }
+
+    /**
+     * Divides, rounding the quotient HALF_UP (halves away from zero), the same as
+     * {@link Money#divideHalfUp}. The quotient of the magnitude is estimated in double, which
+     * is off by at most one, and corrected from the exact remainder.
+     *
+     * @param values the dividends, not Long.MIN_VALUE
+     * @param divisor the divisor, positive
+     * @return the rounded quotients
+     */
+    private static LongVector divideHalfUp(LongVector values, long divisor) {
+        LongVector magnitude = values.abs();
+        DoubleVector estimate = (DoubleVector) magnitude.convert(VectorOperators.L2D, 0);
+        LongVector quotient = (LongVector) estimate.div(divisor)
+                .convert(VectorOperators.D2L, 0);
+        LongVector remainder = magnitude.sub(quotient.mul(divisor));
+
+        VectorMask<Long> under = remainder.compare(VectorOperators.LT, 0);
+        quotient = quotient.sub(1, under);
+        remainder = remainder.add(divisor, under);
+        VectorMask<Long> over = remainder.compare(VectorOperators.GE, divisor);
+        quotient = quotient.add(1, over);
+        remainder = remainder.sub(divisor, over);
+
+        quotient = quotient.add(1,
+                remainder.compare(VectorOperators.GE, remainder.neg().add(divisor)));
+        return quotient.blend(quotient.neg(), values.compare(VectorOperators.LT, 0));
+    }
+}
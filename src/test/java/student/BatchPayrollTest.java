@@ -0,0 +1,59 @@
+package student;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchPayrollTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void runsEveryCompanyLikeASingleRun() throws IOException {
+        int companies = 12;
+        List<String> manifest = new ArrayList<>(List.of(BatchPayroll.MANIFEST_HEADER));
+        for (int c = 0; c < companies; c++) {
+            List<String> employees = TestRosters.employees(3000, c);
+            List<String> cards = TestRosters.timeCards(3000, c);
+            Files.write(tempDir.resolve("employees_" + c + ".csv"), employees);
+            Files.write(tempDir.resolve("expected_" + c + ".csv"), employees);
+            Files.write(tempDir.resolve("cards_" + c + ".csv"), cards);
+            manifest.add("employees_" + c + ".csv,cards_" + c + ".csv,stubs_" + c + ".csv");
+        }
+        manifest.add("missing.csv,cards_0.csv,stubs_missing.csv,extra");
+        Path manifestFile = tempDir.resolve("batch.csv");
+        Files.write(manifestFile, manifest.subList(0, manifest.size() - 1));
+
+        assertEquals(0, BatchPayroll.run(manifestFile.toString(), 3));
+
+        for (int c = 0; c < companies; c++) {
+            StreamingPayroll.run(tempDir.resolve("expected_" + c + ".csv").toString(),
+                    tempDir.resolve("cards_" + c + ".csv").toString(),
+                    tempDir.resolve("expected_stubs_" + c + ".csv").toString());
+            assertEquals(Files.readAllLines(tempDir.resolve("expected_" + c + ".csv")),
+                    Files.readAllLines(tempDir.resolve("employees_" + c + ".csv")));
+            assertEquals(Files.readAllLines(tempDir.resolve("expected_stubs_" + c + ".csv")),
+                    Files.readAllLines(tempDir.resolve("stubs_" + c + ".csv")));
+        }
+
+        // a company whose files can't be written counts as failed, and the others still run
+        Files.write(manifestFile, List.of(BatchPayroll.MANIFEST_HEADER,
+                "employees_0.csv,cards_0.csv,missing/stubs_0.csv",
+                "employees_1.csv,cards_1.csv,stubs_1.csv"));
+        List<String> employees0 = Files.readAllLines(tempDir.resolve("employees_0.csv"));
+        List<String> stubs1 = Files.readAllLines(tempDir.resolve("stubs_1.csv"));
+        assertEquals(1, BatchPayroll.run(manifestFile.toString(), 2));
+        assertEquals(employees0, Files.readAllLines(tempDir.resolve("employees_0.csv")));
+        assertNotEquals(stubs1, Files.readAllLines(tempDir.resolve("stubs_1.csv")));
+
+        Files.write(manifestFile, manifest);
+        assertThrows(IllegalArgumentException.class,
+                () -> BatchPayroll.run(manifestFile.toString(), 2));
+    }
+}
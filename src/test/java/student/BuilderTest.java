@@ -30,4 +30,55 @@ class BuilderTest {
         assertEquals("s192", firstTimeCard.getEmployeeID());
         assertEquals(45.0, firstTimeCard.getHoursWorked(), 0.01);
     }
+
+    @Test
+    void testBuildEmployeeWithQuotedName() {
+        IEmployee employee =
+                Builder.buildEmployeeFromCSV("SALARY,\"Yagami, Light\",x101,120000,0,0,0");
+
+        assertEquals("Yagami, Light", employee.getName());
+        assertEquals("SALARY,\"Yagami, Light\",x101,120000.00,0.00,0.00,0.00", employee.toCSV());
+    }
+
+    @Test
+    void testTrailingSeparatorIsIgnored() {
+        IEmployee employee = Builder.buildEmployeeFromCSV("HOURLY,Luffy,s192,30.00,0,20000,4530,");
+        assertEquals("HOURLY,Luffy,s192,30.00,0.00,20000.00,4530.00", employee.toCSV());
+        ITimeCard timeCard = Builder.buildTimeCardFromCSV("s192,45,");
+        assertEquals("s192", timeCard.getEmployeeID());
+        assertEquals(45.0, timeCard.getHoursWorked());
+        assertThrows(IllegalArgumentException.class,
+                () -> Builder.buildTimeCardFromCSV("s192,45,,x"));
+    }
+
+    @Test
+    void testBuildEmployeeInvalidRecord() {
+        assertThrows(IllegalArgumentException.class,
+                () -> Builder.buildEmployeeFromCSV("HOURLY,Luffy,s192"));
+        assertThrows(IllegalArgumentException.class,
+                () -> Builder.buildEmployeeFromCSV("MANAGER,Luffy,s192,30,0,0,0"));
+    }
+
+    @Test
+    void validateEmployeeReportsWithoutThrowing() {
+        CsvTokenizer fields = new CsvTokenizer();
+        assertEquals(Builder.VALID,
+                Builder.validateEmployee(fields.reset("hourly,Luffy,s192,30,0,0,0")));
+        int result = Builder.validateEmployee(fields.reset("HOURLY,Luffy,s192"));
+        assertEquals(Builder.WRONG_FIELD_COUNT, result);
+        assertEquals("Wrong number of fields: 3", Builder.describe(result, fields));
+        result = Builder.validateEmployee(fields.reset("MANAGER,Luffy,s192,30,0,0,0"));
+        assertEquals("Unknown employee type: MANAGER", Builder.describe(result, fields));
+        result = Builder.validateEmployee(fields.reset("SALARY,Nami,s193,lots,0,x,0"));
+        assertEquals(Builder.NOT_A_NUMBER + 3, result);
+        assertEquals("Not a number in field 4: lots", Builder.describe(result, fields));
+    }
+
+    @Test
+    void validateTimeCardReportsWithoutThrowing() {
+        CsvTokenizer fields = new CsvTokenizer();
+        assertEquals(Builder.VALID, Builder.validateTimeCard(fields.reset("s192,45")));
+        assertEquals(Builder.WRONG_FIELD_COUNT, Builder.validateTimeCard(fields.reset("s192")));
+        assertEquals(Builder.NOT_A_NUMBER + 1, Builder.validateTimeCard(fields.reset("s192,?")));
+    }
 }
@@ -0,0 +1,76 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that payroll run for one employee from many threads at once matches a serial run.
+ */
+final class ConcurrentPayroll {
+    /** threads paying the shared employee. */
+    private static final int THREADS = 8;
+
+    /** periods each thread pays. */
+    private static final int PERIODS = 5000;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private ConcurrentPayroll() {
+
+    }
+
+    /**
+     * Pays shared from several threads at once and serial the same number of times on this
+     * thread. No pay may be lost, and every stub's YTD pair must be the pair after some number
+     * of serial periods, with no two stubs at the same number.
+     *
+     * @param shared the employee paid concurrently
+     * @param serial an identical employee, paid one period at a time
+     * @param hoursWorked the hours of every period
+     * @throws Exception if a thread fails
+     */
+    static void assertLosesNoPay(IEmployee shared, IEmployee serial, double hoursWorked)
+            throws Exception {
+        List<String> stubs = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                done.add(pool.submit(() -> {
+                    for (int i = 0; i < PERIODS; i++) {
+                        stubs.add(shared.runPayroll(hoursWorked).toCSV());
+                    }
+                }));
+            }
+            for (Future<?> future : done) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        // every period pays the same, so a stub's CSV names the period its YTD pair ends
+        Map<String, Integer> periodOf = new HashMap<>();
+        for (int period = 1; period <= THREADS * PERIODS; period++) {
+            periodOf.put(serial.runPayroll(hoursWorked).toCSV(), period);
+        }
+        assertEquals(serial.toCSV(), shared.toCSV());
+        assertEquals(THREADS * PERIODS, stubs.size());
+        Set<Integer> seen = new HashSet<>();
+        for (String stub : stubs) {
+            Integer period = periodOf.get(stub);
+            assertNotNull(period, "YTD pair of no serial period: " + stub);
+            assertTrue(seen.add(period), "two stubs end period " + period);
+        }
+    }
+}
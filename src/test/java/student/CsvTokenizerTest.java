@@ -0,0 +1,85 @@
+package student;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvTokenizerTest {
+
+    @Test
+    void splitsAndTrimsFields() {
+        CsvTokenizer fields = new CsvTokenizer().reset(" HOURLY , Luffy ,s192,30.00");
+        assertEquals(4, fields.fieldCount());
+        assertEquals("HOURLY", fields.text(0));
+        assertEquals("Luffy", fields.text(1));
+        assertEquals("s192", fields.text(2));
+        assertEquals(30.0, fields.parseDouble(3));
+    }
+
+    @Test
+    void dropsEmptyTrailingFieldsLikeSplit() {
+        CsvTokenizer fields = new CsvTokenizer();
+        for (String line : List.of("a,b,", "a,b,,,", "a,,b", ",", ",,", "", "a", "a, ", " ,",
+                ",a")) {
+            assertEquals(line.split(",").length, fields.reset(line).fieldCount(),
+                    "line '" + line + "'");
+        }
+        assertEquals(3, fields.reset("a,b,\"\"").fieldCount()); // quoted, so not empty
+    }
+
+    @Test
+    void readsQuotedFields() {
+        CsvTokenizer fields = new CsvTokenizer().reset("\"Yagami, Light\",\"say \"\"hi\"\"\",x");
+        assertEquals(3, fields.fieldCount());
+        assertEquals("Yagami, Light", fields.text(0));
+        assertEquals("say \"hi\"", fields.text(1));
+        assertEquals("x", fields.text(2));
+    }
+
+    @Test
+    void parseDoubleMatchesDoubleParseDouble() {
+        CsvTokenizer tokenizer = new CsvTokenizer();
+        String[] values = {"0", "-0", "12.5", ".5", "5.", "0.05", "4.35", "1e3",
+            "123456789012345678", "0.1", "+7", "00012.3400"};
+        for (String value : values) {
+            assertEquals(Double.parseDouble(value), tokenizer.reset(value).parseDouble(0), value);
+        }
+    }
+
+    @Test
+    void parseDoubleRejectsNonNumbers() {
+        CsvTokenizer tokenizer = new CsvTokenizer();
+        assertThrows(NumberFormatException.class, () -> tokenizer.reset("abc").parseDouble(0));
+        assertThrows(NumberFormatException.class, () -> tokenizer.reset("-.").parseDouble(0));
+        assertThrows(NumberFormatException.class, () -> tokenizer.reset("").parseDouble(0));
+    }
+
+    @Test
+    void fieldEqualsIgnoreCase() {
+        CsvTokenizer fields = new CsvTokenizer().reset("hourly,SALARY");
+        assertTrue(fields.fieldEqualsIgnoreCase(0, "HOURLY"));
+        assertFalse(fields.fieldEqualsIgnoreCase(1, "HOURLY"));
+    }
+
+    @Test
+    void appendFieldQuotesWhenNeeded() {
+        assertEquals("Luffy", CsvTokenizer.appendField(new StringBuilder(), "Luffy").toString());
+        assertEquals("\"Yagami, \"\"L\"\"\"",
+                CsvTokenizer.appendField(new StringBuilder(), "Yagami, \"L\"").toString());
+    }
+
+    @Test
+    void isNumberMatchesParseDouble() {
+        CsvTokenizer tokenizer = new CsvTokenizer();
+        for (String text : List.of("12.5", "-0.25", "+7", "1.5e3", "2E-2", ".5", "5.", "NaN",
+                "-Infinity", "3d", "1e400")) {
+            assertTrue(tokenizer.reset(text).isNumber(0), text);
+            assertDoesNotThrow(() -> tokenizer.reset(text).parseDouble(0));
+        }
+        for (String text : List.of("abc", "-.", "", "1e", "1.2.3", "e5", "NaNa", "12x",
+                "\"1\"\"2\"")) {
+            assertFalse(tokenizer.reset(text).isNumber(0), text);
+            assertThrows(NumberFormatException.class, () -> tokenizer.reset(text).parseDouble(0));
+        }
+    }
+}
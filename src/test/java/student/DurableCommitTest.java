@@ -0,0 +1,82 @@
+package student;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DurableCommitTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void commitReplacesEveryFileAndKeepsBackups() throws IOException {
+        Path employees = tempDir.resolve("employees.csv");
+        Path payStubs = tempDir.resolve("pay_stubs.csv");
+        Files.write(employees, List.of("old roster"));
+        Files.write(Path.of(employees + ".tmp"), List.of("new roster"));
+        Files.write(Path.of(payStubs + ".tmp"), List.of("new stubs"));
+
+        DurableCommit.commit(List.of(employees, payStubs), true);
+
+        assertEquals(List.of("new roster"), Files.readAllLines(employees));
+        assertEquals(List.of("new stubs"), Files.readAllLines(payStubs));
+        assertEquals(List.of("old roster"), Files.readAllLines(Path.of(employees + ".bak")));
+        assertFalse(Files.exists(Path.of(payStubs + ".bak")));
+        try (var files = Files.list(tempDir)) {
+            assertEquals(3, files.count()); // no staged files or marker left behind
+        }
+    }
+
+    @Test
+    void recoverFinishesCommitInterruptedAfterMarker() throws IOException {
+        Path employees = tempDir.resolve("employees.csv");
+        Path payStubs = tempDir.resolve("pay_stubs.csv");
+        Files.write(employees, List.of("new roster")); // installed before the crash
+        Files.write(Path.of(payStubs + ".tmp"), List.of("new stubs"));
+        Files.write(Path.of(employees + DurableCommit.MARKER_SUFFIX), List.of(
+                employees.toAbsolutePath().toString(), payStubs.toAbsolutePath().toString(),
+                "true"));
+
+        assertTrue(DurableCommit.recover(employees));
+
+        assertEquals(List.of("new roster"), Files.readAllLines(employees));
+        assertEquals(List.of("new stubs"), Files.readAllLines(payStubs));
+        assertFalse(Files.exists(Path.of(payStubs + ".tmp")));
+        assertFalse(Files.exists(Path.of(employees + DurableCommit.MARKER_SUFFIX)));
+        assertFalse(DurableCommit.recover(employees));
+    }
+
+    @Test
+    void stagedFilesWithoutMarkerAreNotInstalled() throws IOException {
+        Path employees = tempDir.resolve("employees.csv");
+        Files.write(employees, List.of("old roster"));
+        Files.write(Path.of(employees + ".tmp"), List.of("half written"));
+
+        FileUtil.recoverStaged(employees.toString());
+
+        assertEquals(List.of("old roster"), Files.readAllLines(employees));
+    }
+
+    @Test
+    void failedCommitIsReportedAndChangesNothing() throws IOException {
+        Path employees = tempDir.resolve("employees.csv");
+        Path payStubs = tempDir.resolve("pay_stubs.csv");
+        Files.write(employees, List.of("old roster"));
+        Files.write(Path.of(employees + ".tmp"), List.of("new roster"));
+        // the pay stubs were never staged
+
+        assertFalse(FileUtil.commitStaged(List.of(employees.toString(), payStubs.toString()),
+                true));
+
+        assertEquals(List.of("old roster"), Files.readAllLines(employees));
+        assertFalse(Files.exists(payStubs));
+        assertFalse(Files.exists(Path.of(employees + DurableCommit.MARKER_SUFFIX)));
+        assertTrue(FileUtil.commitStaged(employees.toString(), true));
+        assertEquals(List.of("new roster"), Files.readAllLines(employees));
+    }
+}
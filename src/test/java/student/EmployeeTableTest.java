@@ -0,0 +1,74 @@
+package student;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmployeeTableTest {
+
+    @Test
+    void batchMatchesEmployeeObjects() {
+        Random random = new Random(8008);
+        EmployeeTable table = new EmployeeTable(4);
+        List<IEmployee> employees = new ArrayList<>();
+        int rows = 5000;
+        double[] hours = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            boolean hourly = random.nextBoolean();
+            double rate = hourly ? random.nextInt(10000) / 100.0 : random.nextInt(30000000) / 100.0;
+            double deductions = random.nextInt(100000) / 100.0;
+            String csv = (hourly ? "HOURLY" : "SALARY") + ",\"Name, " + i + "\",x" + i + ","
+                    + rate + "," + deductions + ",1000.5,200.25";
+            employees.add(Builder.buildEmployeeFromCSV(csv));
+            table.addCSV(csv);
+            hours[i] = i % 10 == 0 ? Double.NaN : i % 17 == 0 ? -1 : random.nextInt(800) / 10.0;
+        }
+        assertEquals(rows, table.size());
+
+        long[] netPay = new long[rows];
+        long[] taxes = new long[rows];
+        table.runPayroll(0, rows, hours, netPay, taxes);
+        for (int i = 0; i < rows; i++) {
+            IEmployee employee = employees.get(i);
+            if (Double.isNaN(hours[i]) || hours[i] < 0) {
+                assertEquals(EmployeeTable.NO_PAY, netPay[i]);
+                assertEquals(EmployeeTable.NO_PAY, taxes[i]);
+            } else {
+                IPayStub expected = employee.runPayroll(hours[i]);
+                assertEquals(expected.toCSV(), table.payStub(i, netPay[i], taxes[i]).toCSV());
+            }
+            assertEquals(employee.toCSV(), table.toCSV(i));
+        }
+    }
+
+    @Test
+    void viewReadsAndUpdatesRow() {
+        EmployeeTable table = new EmployeeTable(1);
+        table.add(new HourlyEmployee("Luffy", "s192", 30.00, 20000, 4530, 0));
+        table.addCSV("SALARY,Nami,s193,200000,17017,1000,100");
+        IEmployee nami = table.view(1);
+        assertEquals("Nami", nami.getName());
+        assertEquals("s193", nami.getID());
+        assertEquals("SALARY", nami.getEmployeeType());
+        assertEquals(200000, nami.getPayRate(), 0.001);
+        assertEquals(17017, nami.getPretaxDeductions(), 0.001);
+
+        SalaryEmployee expected = new SalaryEmployee("Nami", "s193", 200000, 1000, 100, 17017);
+        assertEquals(expected.runPayroll(40).toCSV(), nami.runPayroll(40).toCSV());
+        assertEquals(expected.getYTDEarnings(), nami.getYTDEarnings(), 0.001);
+        assertEquals(expected.toCSV(), nami.toCSV());
+        assertNull(nami.runPayroll(-1));
+        assertEquals("HOURLY,Luffy,s192,30.00,0.00,20000.00,4530.00", table.view(0).toCSV());
+    }
+
+    @Test
+    void addCSVRejectsInvalidRecords() {
+        EmployeeTable table = new EmployeeTable(1);
+        assertThrows(IllegalArgumentException.class, () -> table.addCSV("HOURLY,Luffy,s192"));
+        assertThrows(IllegalArgumentException.class,
+                () -> table.addCSV("CONTRACT,Luffy,s192,30,0,0,0"));
+        assertEquals(0, table.size());
+    }
+}
@@ -81,4 +81,19 @@ class HourlyEmployeeTest {
         String expectedCSV = "HOURLY,Luffy,s192,30.00,0.00,20000.00,4530.00";
         assertEquals(expectedCSV, employee.toCSV());
     }
+
+    @Test
+    void smallNegativesFormatAsZero() {
+        HourlyEmployee employee = new HourlyEmployee("Luffy", "s192", -0.001, -0.004, -0.001,
+                -0.0049);
+        assertEquals("HOURLY,Luffy,s192,0.00,0.00,0.00,0.00", employee.toCSV());
+        assertEquals("Luffy,0.0,0.0,0.0,0.0", employee.runPayroll(1).toCSV());
+    }
+
+    @Test
+    void concurrentPayrollLosesNoPay() throws Exception {
+        HourlyEmployee shared = new HourlyEmployee("Luffy", "s192", 30.00, 20000.00, 4530.00, 0);
+        HourlyEmployee serial = new HourlyEmployee("Luffy", "s192", 30.00, 20000.00, 4530.00, 0);
+        ConcurrentPayroll.assertLosesNoPay(shared, serial, 45);
+    }
 }
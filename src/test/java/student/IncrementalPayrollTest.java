@@ -0,0 +1,132 @@
+package student;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalPayrollTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void appliesOnlyNewCards() throws IOException {
+        Path employees = tempDir.resolve("employees.csv");
+        Path payStubs = tempDir.resolve("pay_stubs.csv");
+        Path manifest = tempDir.resolve("manifest.csv");
+        Files.write(employees, List.of(FileUtil.EMPLOYEE_HEADER,
+                "HOURLY,Luffy,s192,30.00,0,20000,4530",
+                "SALARY,Nami,s193,200000,1000,17017,4983"));
+        Path week1 = tempDir.resolve("week1.csv");
+        Files.write(week1, List.of("employee_id,hours_worked", "s192,45"));
+
+        assertTrue(IncrementalPayroll.run(employees.toString(), week1.toString(),
+                payStubs.toString(), manifest.toString()));
+        assertEquals(List.of(FileUtil.PAY_STUB_HEADER, "Luffy,1102.24,322.76,21102.24,4852.76"),
+                Files.readAllLines(payStubs));
+        assertEquals(List.of(FileUtil.EMPLOYEE_HEADER,
+                "HOURLY,Luffy,s192,30.00,0.00,21102.24,4852.76",
+                "SALARY,Nami,s193,200000,1000,17017,4983"), // untouched row copied as is
+                Files.readAllLines(employees));
+        assertEquals(List.of(IncrementalPayroll.MANIFEST_HEADER, "s192,week1"),
+                Files.readAllLines(manifest));
+
+        // a late card for Nami arrives in the same period; Luffy's card is not paid twice
+        Files.write(week1, List.of("employee_id,hours_worked", "s192,45", "s193,40"));
+        assertTrue(IncrementalPayroll.run(employees.toString(), week1.toString(),
+                payStubs.toString(), manifest.toString()));
+        List<String> stubs = Files.readAllLines(payStubs);
+        assertEquals(3, stubs.size());
+        assertTrue(stubs.get(2).startsWith("Nami,"));
+        assertEquals("HOURLY,Luffy,s192,30.00,0.00,21102.24,4852.76",
+                Files.readAllLines(employees).get(1));
+
+        assertTrue(IncrementalPayroll.run(employees.toString(), week1.toString(),
+                payStubs.toString(), manifest.toString()));
+        assertEquals(stubs, Files.readAllLines(payStubs));
+        assertEquals(List.of(IncrementalPayroll.MANIFEST_HEADER, "s192,week1", "s193,week1"),
+                Files.readAllLines(manifest));
+    }
+
+    @Test
+    void failedRunChangesNothing() throws IOException {
+        Path employees = tempDir.resolve("employees.csv");
+        Path payStubs = tempDir.resolve("pay_stubs.csv");
+        Path manifest = tempDir.resolve("missing").resolve("manifest.csv");
+        List<String> roster = List.of(FileUtil.EMPLOYEE_HEADER,
+                "HOURLY,Luffy,s192,30.00,0.00,20000.00,4530.00");
+        List<String> stubs = List.of(FileUtil.PAY_STUB_HEADER, "Luffy,1.00,0.00,1.00,0.00");
+        Files.write(employees, roster);
+        Files.write(payStubs, stubs);
+        Path week1 = tempDir.resolve("week1.csv");
+        Files.write(week1, List.of("employee_id,hours_worked", "s192,45"));
+
+        // the manifest can't be staged, so neither the roster nor the pay stubs change
+        assertFalse(IncrementalPayroll.run(employees.toString(), week1.toString(),
+                payStubs.toString(), manifest.toString()));
+
+        assertEquals(roster, Files.readAllLines(employees));
+        assertEquals(stubs, Files.readAllLines(payStubs));
+        assertFalse(Files.exists(tempDir.resolve("employees.csv.tmp")));
+        assertFalse(Files.exists(tempDir.resolve("pay_stubs.csv.tmp")));
+    }
+
+    @Test
+    void periodIsFileBaseName() {
+        assertEquals("time_cards_2024-06-15",
+                IncrementalPayroll.period("resources/time_cards_2024-06-15.csv"));
+        assertEquals("cards", IncrementalPayroll.period("cards"));
+        assertEquals("time_cards_06", IncrementalPayroll.period("time_cards_06.csv.gz"));
+    }
+
+    @Test
+    void compressedCardsOfAPaidPeriodAreNotPaidAgain() throws IOException {
+        Path employees = tempDir.resolve("employees.csv");
+        Path payStubs = tempDir.resolve("pay_stubs.csv");
+        Path manifest = tempDir.resolve("manifest.csv");
+        Files.write(employees, List.of(FileUtil.EMPLOYEE_HEADER,
+                "HOURLY,Luffy,s192,30.00,0,20000,4530"));
+        Path cards = tempDir.resolve("time_cards_06.csv");
+        Files.write(cards, List.of("employee_id,hours_worked", "s192,45"));
+        assertTrue(IncrementalPayroll.run(employees.toString(), cards.toString(),
+                payStubs.toString(), manifest.toString()));
+        List<String> roster = Files.readAllLines(employees);
+
+        Path compressed = tempDir.resolve("time_cards_06.csv.gz");
+        try (RecordWriter writer = RecordWriter.open(compressed, "employee_id,hours_worked")) {
+            writer.write("s192,45");
+        }
+        assertTrue(IncrementalPayroll.run(employees.toString(), compressed.toString(),
+                payStubs.toString(), manifest.toString()));
+
+        assertEquals(2, Files.readAllLines(payStubs).size());
+        assertEquals(roster, Files.readAllLines(employees));
+    }
+
+    @Test
+    void invalidEmployeeChangesNothing() throws IOException {
+        Path employees = tempDir.resolve("employees.csv");
+        Path payStubs = tempDir.resolve("pay_stubs.csv");
+        Path manifest = tempDir.resolve("manifest.csv");
+        List<String> roster = List.of(FileUtil.EMPLOYEE_HEADER,
+                "HOURLY,Luffy,s192,30.00,0.00,20000.00,4530.00", "HOURLY,Zoro,s100,abc,0,0,0");
+        Files.write(employees, roster);
+        Path week1 = tempDir.resolve("week1.csv");
+        Files.write(week1, List.of("employee_id,hours_worked", "s192,45", "s100,40"));
+
+        assertThrows(IllegalArgumentException.class, () -> IncrementalPayroll.run(
+                employees.toString(), week1.toString(), payStubs.toString(),
+                manifest.toString()));
+
+        assertEquals(roster, Files.readAllLines(employees));
+        assertFalse(Files.exists(payStubs));
+        assertFalse(Files.exists(manifest));
+        assertFalse(Files.exists(tempDir.resolve("employees.csv.tmp")));
+        assertFalse(Files.exists(tempDir.resolve("pay_stubs.csv.tmp")));
+        assertFalse(Files.exists(tempDir.resolve("manifest.csv.tmp")));
+    }
+}
@@ -0,0 +1,97 @@
+package student;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedLineReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static List<String> read(Iterable<CharSequence> lines) {
+        List<String> result = new ArrayList<>();
+        for (CharSequence line : lines) {
+            result.add(line.toString());
+        }
+        return result;
+    }
+
+    @Test
+    void skipsHeaderAndReadsLines() throws IOException {
+        Path file = tempDir.resolve("cards.csv");
+        Files.writeString(file, "employee_id,hours_worked\ns192,45\r\nx101,40\nnaïve,1");
+
+        try (MappedLineReader reader = MappedLineReader.open(file)) {
+            assertEquals(List.of("s192,45", "x101,40", "naïve,1"), read(reader.all()));
+        }
+    }
+
+    @Test
+    void readsAcrossWindows() throws IOException {
+        List<String> lines = new ArrayList<>();
+        StringBuilder text = new StringBuilder("header\n");
+        for (int i = 0; i < 500; i++) {
+            String line = "id" + i + "," + "x".repeat(i % 13);
+            lines.add(line);
+            text.append(line).append('\n');
+        }
+        Path file = tempDir.resolve("lines.csv");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+
+        try (MappedLineReader reader = MappedLineReader.open(file, 32)) {
+            assertEquals(lines, read(reader.all()));
+        }
+    }
+
+    @Test
+    void splitKeepsEveryLineOnce() throws IOException {
+        List<String> lines = new ArrayList<>();
+        StringBuilder text = new StringBuilder("header\n");
+        for (int i = 0; i < 1000; i++) {
+            lines.add("e" + i + "," + i);
+            text.append("e").append(i).append(',').append(i).append('\n');
+        }
+        Path file = tempDir.resolve("split.csv");
+        Files.writeString(file, text);
+
+        try (MappedLineReader reader = MappedLineReader.open(file)) {
+            List<MappedLineReader.Chunk> chunks = reader.split(7);
+            assertEquals(7, chunks.size());
+            List<String> all = new ArrayList<>();
+            for (MappedLineReader.Chunk chunk : chunks) {
+                all.addAll(read(chunk));
+            }
+            assertEquals(lines, all);
+        }
+    }
+
+    @Test
+    void headerOnlyFileHasNoLines() throws IOException {
+        Path file = tempDir.resolve("empty.csv");
+        Files.writeString(file, "employee_id,hours_worked\n");
+
+        try (MappedLineReader reader = MappedLineReader.open(file)) {
+            assertFalse(reader.all().iterator().hasNext());
+            assertEquals(1, reader.split(4).size());
+        }
+    }
+
+    @Test
+    void asciiLineViewsMatchText() throws IOException {
+        Path file = tempDir.resolve("view.csv");
+        Files.writeString(file, "h\nHOURLY,Luffy,s192,30.00,0,20000,4530\n");
+
+        try (MappedLineReader reader = MappedLineReader.open(file)) {
+            CharSequence line = reader.all().iterator().next();
+            assertEquals("Luffy", line.subSequence(7, 12).toString());
+            assertEquals("Luffy", Builder.buildEmployeeFromCSV(line).getName());
+        }
+    }
+}
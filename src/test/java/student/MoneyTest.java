@@ -0,0 +1,86 @@
+package student;
+
+import org.junit.jupiter.api.Test;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    @Test
+    void toCentsMatchesBigDecimal() {
+        Random random = new Random(5004);
+        for (int i = 0; i < 100000; i++) {
+            double value = (random.nextDouble() - 0.5) * 200000;
+            if (i % 2 == 0) {
+                value = Math.round(value * 1000) / 1000.0; // lots of exact half cents
+            }
+            long expected = BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP)
+                    .unscaledValue().longValueExact();
+            assertEquals(expected, Money.toCents(value), "value " + value);
+        }
+    }
+
+    @Test
+    void toCentsRoundsHalfUp() {
+        assertEquals(101, Money.toCents(1.005));
+        assertEquals(-101, Money.toCents(-1.005));
+        assertEquals(100, Money.toCents(1.004999));
+        assertEquals(0, Money.toCents(0));
+    }
+
+    @Test
+    void toScaled() {
+        assertEquals(302500, Money.toScaled(30.25));
+        assertEquals(-5, Money.toScaled(-0.0005));
+        assertEquals(Money.INEXACT, Money.toScaled(0.00001));
+        assertEquals(Money.INEXACT, Money.toScaled(Double.NaN));
+    }
+
+    @Test
+    void divideHalfUp() {
+        assertEquals(3, Money.divideHalfUp(25, 10));
+        assertEquals(2, Money.divideHalfUp(24, 10));
+        assertEquals(-3, Money.divideHalfUp(-25, 10));
+        assertEquals(-2, Money.divideHalfUp(-24, 10));
+    }
+
+    @Test
+    void hourlyPayMatchesBigDecimal() {
+        long netBeforeTax = Money.hourlyNetBeforeTax(30.00, 45, 0);
+        BigDecimal exact = Money.hourlyNetBeforeTaxExact(30.00, 45, 0);
+        assertEquals(Money.taxCents(exact), Money.taxCents(netBeforeTax, Money.HOURLY_SCALE));
+        assertEquals(Money.netCents(exact), Money.netCents(netBeforeTax, Money.HOURLY_SCALE));
+        assertEquals(110224, Money.netCents(netBeforeTax, Money.HOURLY_SCALE));
+    }
+
+    @Test
+    void salaryPayMatchesBigDecimal() {
+        long netBeforeTax = Money.salaryNetBeforeTax(150000, 500);
+        BigDecimal exact = Money.salaryNetBeforeTaxExact(150000, 500);
+        assertEquals(Money.taxCents(exact), Money.taxCents(netBeforeTax, Money.SALARY_SCALE));
+        assertEquals(Money.netCents(exact), Money.netCents(netBeforeTax, Money.SALARY_SCALE));
+        assertEquals(130238, Money.taxCents(netBeforeTax, Money.SALARY_SCALE));
+    }
+
+    @Test
+    void appendCents() {
+        assertEquals("-12.05", Money.appendCents(new StringBuilder(), -1205).toString());
+        assertEquals("0.00", Money.appendCents(new StringBuilder(), 0).toString());
+        assertEquals("1.3", Money.appendTenths(new StringBuilder(), 125).toString());
+    }
+
+    @Test
+    void smallNegativesFormatWithoutSign() {
+        for (double value : new double[] {-0.0, -0.001, -0.004, -0.0049999}) {
+            long cents = Money.toCents(value);
+            assertEquals(0, cents, "value " + value);
+            assertEquals("0.00", Money.appendCents(new StringBuilder(), cents).toString());
+        }
+        assertEquals("-0.01", Money.appendCents(new StringBuilder(),
+                Money.toCents(-0.005)).toString());
+        assertEquals("0.0", Money.appendTenths(new StringBuilder(), -4).toString());
+        assertEquals("-0.1", Money.appendTenths(new StringBuilder(), -5).toString());
+    }
+}
@@ -0,0 +1,109 @@
+package student;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultiPeriodPayrollTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void runMatchesOneRunPerPeriod() throws IOException {
+        List<String> roster = List.of(FileUtil.EMPLOYEE_HEADER,
+                "HOURLY,Luffy,s192,30.00,0,20000,4530",
+                "SALARY,Nami,s193,200000,1000,17017,4983",
+                "HOURLY,Zoro,s194,25.50,50,1000,200");
+        Path multiEmployees = tempDir.resolve("employees.csv");
+        Files.write(multiEmployees, roster);
+        Path cards = tempDir.resolve("cards.csv");
+        Files.write(cards, List.of(MultiPeriodPayroll.TIME_CARD_HEADER,
+                "s192,45,10", "s193,0,2", "s192,20,2", "s192,20,2", "s194,-1,2",
+                "s194,38,1", "s192,41.5,1", "s193,0,1"));
+
+        MultiPeriodPayroll.run(multiEmployees.toString(), cards.toString(),
+                tempDir.resolve("all.csv").toString(), tempDir.resolve("periods").toString(), 2);
+
+        Path serialEmployees = tempDir.resolve("serial.csv");
+        Files.write(serialEmployees, roster);
+        List<String> combined = new ArrayList<>(List.of(MultiPeriodPayroll.PAY_STUB_HEADER));
+        String[][] periods = {{"1", "s194,38", "s192,41.5", "s193,0"},
+            {"2", "s193,0", "s192,40", "s194,-1"}, {"10", "s192,45"}};
+        for (String[] period : periods) {
+            List<String> periodCards = new ArrayList<>(List.of("employee_id,hours_worked"));
+            periodCards.addAll(List.of(period).subList(1, period.length));
+            Path timeCards = tempDir.resolve("time_cards_" + period[0] + ".csv");
+            Files.write(timeCards, periodCards);
+            Path payStubs = tempDir.resolve("pay_stubs_" + period[0] + ".csv");
+            StreamingPayroll.run(serialEmployees.toString(), timeCards.toString(),
+                    payStubs.toString());
+
+            List<String> expected = Files.readAllLines(payStubs);
+            assertEquals(expected,
+                    Files.readAllLines(tempDir.resolve("periods/all_" + period[0] + ".csv")));
+            for (String stub : expected.subList(1, expected.size())) {
+                combined.add(period[0] + "," + stub);
+            }
+        }
+        assertEquals(combined, Files.readAllLines(tempDir.resolve("all.csv")));
+        assertEquals(Files.readAllLines(serialEmployees), Files.readAllLines(multiEmployees));
+    }
+
+    @Test
+    void periodsAreOrderedNumbersFirst() {
+        List<String> periods = new ArrayList<>(List.of("2024-06-15", "10", "2", "002",
+                "2024-06-01", "1"));
+        periods.sort(MultiPeriodPayroll.PERIOD_ORDER);
+        assertEquals(List.of("1", "002", "2", "10", "2024-06-01", "2024-06-15"), periods);
+    }
+
+    @Test
+    void periodFileAddsThePeriodToThePayrollNameWithoutCollisions() {
+        assertEquals(Path.of("out", "pay_stubs_3.csv").toString(),
+                MultiPeriodPayroll.periodFile("out", "resources/pay_stubs.csv", "3"));
+        assertEquals(Path.of("out", "stubs_2024%2F06.csv.gz").toString(),
+                MultiPeriodPayroll.periodFile("out", "stubs.csv.gz", "2024/06"));
+        assertEquals(Path.of("out", "stubs_2024%3A06.csv").toString(),
+                MultiPeriodPayroll.periodFile("out", "stubs.csv", "2024:06"));
+        assertEquals(Path.of("out", "stubs_2024_06.csv").toString(),
+                MultiPeriodPayroll.periodFile("out", "stubs.csv", "2024_06"));
+        assertEquals(Path.of("out", "stubs_2024%2506%C3%A9.csv").toString(),
+                MultiPeriodPayroll.periodFile("out", "stubs.csv", "2024%06\u00e9"));
+    }
+
+    @Test
+    void cardsInPeriodOrderAreNotSorted() throws IOException {
+        Path sorted = tempDir.resolve("sorted.csv");
+        Files.write(sorted, List.of(MultiPeriodPayroll.TIME_CARD_HEADER,
+                "s194,38,1", "s192,41.5,1", "s193,0,002", "s192,20,2", "s192,45,10", "s1,1,a"));
+        assertTrue(MultiPeriodPayroll.isInPeriodOrder(sorted.toString()));
+        Path unsorted = tempDir.resolve("unsorted.csv");
+        Files.write(unsorted, List.of(MultiPeriodPayroll.TIME_CARD_HEADER,
+                "s192,45,10", "s193,0,2"));
+        assertFalse(MultiPeriodPayroll.isInPeriodOrder(unsorted.toString()));
+    }
+
+    @Test
+    void invalidCardChangesNothing() throws IOException {
+        List<String> roster = List.of(FileUtil.EMPLOYEE_HEADER,
+                "HOURLY,Luffy,s192,30.00,0,20000,4530");
+        Path employees = tempDir.resolve("employees.csv");
+        Files.write(employees, roster);
+        Path cards = tempDir.resolve("cards.csv");
+        Files.write(cards, List.of(MultiPeriodPayroll.TIME_CARD_HEADER, "s192,40,1", "s192,40"));
+        Path payStubs = tempDir.resolve("all.csv");
+
+        assertThrows(IllegalArgumentException.class, () -> MultiPeriodPayroll.run(
+                employees.toString(), cards.toString(), payStubs.toString(), null, 1));
+
+        assertEquals(roster, Files.readAllLines(employees));
+        assertFalse(Files.exists(payStubs));
+        assertFalse(Files.exists(tempDir.resolve("all.csv.tmp")));
+    }
+}
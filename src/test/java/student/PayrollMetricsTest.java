@@ -0,0 +1,92 @@
+package student;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PayrollMetricsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void runRecordsPhasesAndCounts() throws IOException {
+        Path employees = tempDir.resolve("employees.csv");
+        Path timeCards = tempDir.resolve("time_cards.csv");
+        Path payStubs = tempDir.resolve("pay_stubs.csv");
+        Files.write(employees, List.of(FileUtil.EMPLOYEE_HEADER,
+                "HOURLY,Luffy,s192,30.00,0,20000,4530",
+                "SALARY,Nami,s193,200000,1000,17017,4983",
+                "SALARY,\"Robin, Nico\",s194,150000,0,0,0"));
+        Files.write(timeCards, List.of("employee_id,hours_worked", "s192,45", "s194,0"));
+
+        PayrollMetrics metrics = new PayrollMetrics(true);
+        metrics.begin();
+        StreamingPayroll.run(employees.toString(), timeCards.toString(), payStubs.toString(),
+                null, metrics, null);
+        metrics.finish();
+
+        assertEquals(3, metrics.records());
+        for (PayrollMetrics.Phase phase : PayrollMetrics.Phase.values()) {
+            assertTrue(metrics.nanos(phase) > 0, phase.name());
+        }
+        String json = metrics.toJson("emp\"loyees");
+        assertTrue(json.startsWith("{\"run\":\"emp\\\"loyees\",\"records\":3,\"pay_stubs\":2,"),
+                json);
+        assertTrue(json.contains("\"bytes_written\":" + (Files.size(employees)
+                + Files.size(payStubs))), json);
+        assertTrue(json.contains("\"phases_ms\":{\"time_cards\":"), json);
+        assertTrue(json.endsWith("}}"), json);
+    }
+
+    /** keeps the test's allocation reachable. */
+    private static volatile byte[] sink;
+
+    @Test
+    void allocationOfExitedThreadsIsCounted() throws InterruptedException {
+        PayrollMetrics metrics = new PayrollMetrics(true);
+        metrics.begin();
+        Thread worker = new Thread(() -> sink = new byte[32 << 20]);
+        worker.start();
+        worker.join(); // the worker has exited before the run finishes
+        metrics.finish();
+
+        String json = metrics.toJson("run");
+        int start = json.indexOf("\"allocated_bytes\":") + "\"allocated_bytes\":".length();
+        long allocated = Long.parseLong(json.substring(start, json.indexOf(',', start)));
+        if (Runtime.version().feature() >= 21) { // older JVMs only count live threads
+            assertTrue(allocated == -1 || allocated >= 32 << 20, json);
+        }
+        sink = null;
+    }
+
+    @Test
+    void appendToWritesOneLinePerRun() throws IOException {
+        Path stats = tempDir.resolve("stats.jsonl");
+        for (int i = 0; i < 2; i++) {
+            PayrollMetrics metrics = new PayrollMetrics(true);
+            metrics.begin();
+            metrics.addRecords(5);
+            metrics.finish();
+            metrics.appendTo(stats.toString(), "run" + i);
+        }
+        List<String> lines = Files.readAllLines(stats);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(1).startsWith("{\"run\":\"run1\",\"records\":5,"));
+    }
+
+    @Test
+    void disabledMetricsCollectNothing() {
+        PayrollMetrics metrics = PayrollMetrics.DISABLED;
+        long start = metrics.start();
+        metrics.end(PayrollMetrics.Phase.PAY, start);
+        metrics.addRecords(10);
+        metrics.finish();
+        assertEquals(0, metrics.records());
+        assertEquals(0, metrics.nanos(PayrollMetrics.Phase.PAY));
+    }
+}
@@ -0,0 +1,91 @@
+package student;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PayrollServerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void postPaysCardsAndSavesRoster() throws IOException, InterruptedException {
+        Path employees = tempDir.resolve("employees.csv");
+        Path payStubs = tempDir.resolve("pay_stubs.csv");
+        Files.write(employees, List.of(FileUtil.EMPLOYEE_HEADER,
+                "HOURLY,Luffy,s192,30.00,0,20000,4530",
+                "SALARY,Nami,s193,200000,1000,17017,4983",
+                "HOURLY,Zoro,s194,22.5,0,100,20"));
+        PayrollServer server = PayrollServer.start(employees.toString(), payStubs.toString(), 0);
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            URI uri = URI.create("http://localhost:" + server.getPort() + "/payroll");
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri)
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            "employee_id,hours_worked\ns194,-1\ns192,30\nnobody,8\ns192,15\n"))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+
+            assertEquals(200, response.statusCode());
+            assertEquals(FileUtil.PAY_STUB_HEADER + "\nLuffy,1102.24,322.76,21102.24,4852.76\n",
+                    response.body());
+            assertEquals("1", response.headers().firstValue("X-Unmatched-Cards").orElse(""));
+            assertEquals("1", response.headers().firstValue("X-Skipped").orElse(""));
+            assertEquals(List.of(FileUtil.EMPLOYEE_HEADER,
+                    "HOURLY,Luffy,s192,30.00,0.00,21102.24,4852.76",
+                    "SALARY,Nami,s193,200000.00,1000.00,17017.00,4983.00",
+                    "HOURLY,Zoro,s194,22.50,0.00,100.00,20.00"),
+                    Files.readAllLines(employees));
+            assertEquals(List.of(FileUtil.PAY_STUB_HEADER, "Luffy,1102.24,322.76,21102.24,4852.76"),
+                    Files.readAllLines(payStubs));
+
+            HttpResponse<String> bad = client.send(HttpRequest.newBuilder(uri)
+                    .POST(HttpRequest.BodyPublishers.ofString("employee_id,hours_worked\ns193\n"))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(400, bad.statusCode());
+
+            HttpResponse<String> roster = client.send(HttpRequest.newBuilder(
+                    URI.create("http://localhost:" + server.getPort() + "/employees")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(String.join("\n", Files.readAllLines(employees)) + "\n", roster.body());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void failedSaveAnswers500AndChangesNothing() throws IOException, InterruptedException {
+        Path employees = tempDir.resolve("employees.csv");
+        List<String> roster = List.of(FileUtil.EMPLOYEE_HEADER,
+                "HOURLY,Luffy,s192,30.00,0.00,20000.00,4530.00");
+        Files.write(employees, roster);
+        // the pay stubs can't be staged in a directory that doesn't exist
+        PayrollServer server = PayrollServer.start(employees.toString(),
+                tempDir.resolve("missing").resolve("pay_stubs.csv").toString(), 0);
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(
+                    URI.create("http://localhost:" + server.getPort() + "/payroll"))
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            "employee_id,hours_worked\ns192,45\n"))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(500, response.statusCode());
+            assertEquals(roster, Files.readAllLines(employees));
+
+            HttpResponse<String> loaded = client.send(HttpRequest.newBuilder(
+                    URI.create("http://localhost:" + server.getPort() + "/employees")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(String.join("\n", roster) + "\n", loaded.body());
+        } finally {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package student;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineStageTest {
+
+    /** Collects every item, requesting the next only once it is released. */
+    private static final class SlowSubscriber implements Flow.Subscriber<Integer> {
+        final List<Integer> items = new ArrayList<>();
+        final CompletableFuture<List<Integer>> done = new CompletableFuture<>();
+        final CompletableFuture<Flow.Subscription> subscription = new CompletableFuture<>();
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription.complete(subscription);
+        }
+
+        void request(long n) throws Exception {
+            subscription.get(10, TimeUnit.SECONDS).request(n);
+        }
+
+        @Override
+        public synchronized void onNext(Integer item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            done.completeExceptionally(throwable);
+        }
+
+        @Override
+        public synchronized void onComplete() {
+            done.complete(items);
+        }
+    }
+
+    @Test
+    void slowConsumerStallsTheStage() throws Exception {
+        ExecutorService delivery = Executors.newCachedThreadPool();
+        AtomicInteger worked = new AtomicInteger();
+        try {
+            SubmissionPublisher<Integer> source = new SubmissionPublisher<>(delivery, 2);
+            PipelineStage<Integer, Integer> stage = new PipelineStage<>("test-stage", item -> {
+                worked.incrementAndGet();
+                return item * 2;
+            }, 2, delivery, 2);
+            SlowSubscriber sink = new SlowSubscriber();
+            source.subscribe(stage);
+            stage.subscribe(sink);
+
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 100; i++) {
+                    source.submit(i);
+                }
+                source.close();
+            });
+            producer.start();
+
+            // with nothing requested downstream, only the buffers and the workers fill up, and
+            // then the producer blocks
+            while (producer.getState() != Thread.State.WAITING) {
+                assertTrue(producer.isAlive(), "the producer never blocked");
+                Thread.onSpinWait();
+            }
+            assertTrue(worked.get() <= 2 + 2 + 1, "worked on " + worked.get());
+
+            sink.request(Long.MAX_VALUE);
+            List<Integer> items = sink.done.get(10, TimeUnit.SECONDS);
+            assertEquals(100, items.size());
+            assertEquals(100 * 99, items.stream().mapToInt(Integer::intValue).sum());
+        } finally {
+            delivery.shutdownNow();
+        }
+    }
+
+    @Test
+    void failedWorkIsPassedDownstream() throws Exception {
+        ExecutorService delivery = Executors.newCachedThreadPool();
+        try {
+            SubmissionPublisher<Integer> source = new SubmissionPublisher<>(delivery, 4);
+            PipelineStage<Integer, Integer> stage = new PipelineStage<>("test-stage", item -> {
+                if (item == 3) {
+                    throw new IllegalArgumentException("bad item");
+                }
+                return item;
+            }, 1, delivery, 4);
+            SlowSubscriber sink = new SlowSubscriber();
+            source.subscribe(stage);
+            stage.subscribe(sink);
+            sink.request(Long.MAX_VALUE);
+            for (int i = 0; i < 10; i++) {
+                source.submit(i);
+            }
+            source.close();
+
+            Exception e = assertThrows(Exception.class,
+                    () -> sink.done.get(10, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        } finally {
+            delivery.shutdownNow();
+        }
+    }
+
+    @Test
+    void failureWhileOtherWorkersPublishIsPassedDownstream() throws Exception {
+        ExecutorService delivery = Executors.newCachedThreadPool();
+        List<Throwable> uncaught = new ArrayList<>();
+        Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> {
+            synchronized (uncaught) {
+                uncaught.add(e);
+            }
+        });
+        try {
+            SubmissionPublisher<Integer> source = new SubmissionPublisher<>(delivery, 8);
+            SlowSubscriber sink = new SlowSubscriber();
+            PipelineStage<Integer, Integer> stage = new PipelineStage<>("failing-stage", item -> {
+                if (item == 0) {
+                    throw new IllegalArgumentException("bad item");
+                }
+                // the other workers only publish once the output has been closed by the failure
+                sink.done.exceptionally(e -> null).join();
+                return item;
+            }, 4, delivery, 8);
+            source.subscribe(stage);
+            stage.subscribe(sink);
+            sink.request(Long.MAX_VALUE);
+            for (int i = 0; i < 4; i++) {
+                source.submit(i);
+            }
+            source.close();
+
+            Exception e = assertThrows(Exception.class,
+                    () -> sink.done.get(10, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread.getName().equals("failing-stage")) {
+                    thread.join(10_000); // the workers exit once their items are dropped
+                }
+            }
+            assertEquals(List.of(), sink.items);
+            synchronized (uncaught) {
+                assertEquals(List.of(), uncaught);
+            }
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(handler);
+            delivery.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package student;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelinedPayrollTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void runMatchesStreamingRun() throws IOException {
+        List<String> employeeLines = TestRosters.employees(20000, 0);
+        List<String> timeCardLines = TestRosters.timeCards(20000, 0);
+        Path timeCards = tempDir.resolve("time_cards.csv");
+        Files.write(timeCards, timeCardLines);
+
+        Path streamingEmployees = tempDir.resolve("streaming.csv");
+        Path streamingStubs = tempDir.resolve("streaming_stubs.csv");
+        Files.write(streamingEmployees, employeeLines);
+        StreamingPayroll.run(streamingEmployees.toString(), timeCards.toString(),
+                streamingStubs.toString());
+
+        // a buffer of one chunk and uneven workers keep the stages stalling on each other
+        Path pipelinedEmployees = tempDir.resolve("pipelined.csv");
+        Path pipelinedStubs = tempDir.resolve("pipelined_stubs.csv");
+        Files.write(pipelinedEmployees, employeeLines);
+        PipelinedPayroll.run(pipelinedEmployees.toString(), timeCards.toString(),
+                pipelinedStubs.toString(), 3, 2, 1);
+
+        assertEquals(Files.readAllLines(streamingStubs), Files.readAllLines(pipelinedStubs));
+        assertEquals(Files.readAllLines(streamingEmployees),
+                Files.readAllLines(pipelinedEmployees));
+    }
+
+    @Test
+    void invalidLineStopsTheRunAndKeepsTheOriginals() throws IOException {
+        List<String> employeeLines = new ArrayList<>(List.of(FileUtil.EMPLOYEE_HEADER));
+        for (int i = 0; i < 5000; i++) {
+            employeeLines.add(i == 4000 ? "HOURLY,Broken,h" + i
+                    : "HOURLY,Hourly " + i + ",h" + i + ",20.00,0,1000,200");
+        }
+        Path employees = tempDir.resolve("employees.csv");
+        Path timeCards = tempDir.resolve("time_cards.csv");
+        Path payStubs = tempDir.resolve("pay_stubs.csv");
+        Files.write(employees, employeeLines);
+        Files.write(timeCards, List.of("employee_id,hours_worked", "h1,40"));
+
+        assertThrows(IllegalArgumentException.class, () -> PipelinedPayroll.run(
+                employees.toString(), timeCards.toString(), payStubs.toString(), 2, 2, 2));
+
+        assertEquals(employeeLines, Files.readAllLines(employees));
+        assertFalse(Files.exists(payStubs));
+    }
+}
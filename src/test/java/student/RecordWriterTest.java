@@ -0,0 +1,91 @@
+package student;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void writesHeaderAndRecords() throws IOException {
+        Path file = tempDir.resolve("pay_stubs.csv");
+        try (RecordWriter writer = RecordWriter.open(file, FileUtil.PAY_STUB_HEADER)) {
+            writer.write(PayStub.ofCents("Luffy", 110224, 32276, 2110224, 485276));
+            writer.write("Zoë,1.0,2.0,3.0,4.0");
+            assertEquals(2, writer.recordsWritten());
+        }
+        assertEquals(List.of(FileUtil.PAY_STUB_HEADER, "Luffy,1102.24,322.76,21102.24,4852.76",
+                "Zoë,1.0,2.0,3.0,4.0"), Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void writesMoreThanOneBuffer() throws IOException {
+        Path file = tempDir.resolve("employees.csv");
+        List<String> expected = new ArrayList<>(List.of(FileUtil.EMPLOYEE_HEADER));
+        try (RecordWriter writer = RecordWriter.open(file, FileUtil.EMPLOYEE_HEADER)) {
+            for (int i = 0; i < 60000; i++) {
+                IEmployee employee = new HourlyEmployee("Näme " + i, "h" + i, 20, 100, 10, 0);
+                writer.write(employee);
+                expected.add(employee.toCSV());
+            }
+            writer.write("x".repeat(RecordWriter.BUFFER_SIZE + 10));
+            expected.add("x".repeat(RecordWriter.BUFFER_SIZE + 10));
+            writer.flush();
+            assertEquals(Files.size(file), writer.bytesWritten());
+        }
+        assertEquals(expected, Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void writeBehindMatchesDirectWrites() throws IOException {
+        Path direct = tempDir.resolve("direct.csv");
+        Path behind = tempDir.resolve("behind.csv");
+        try (RecordWriter directWriter = RecordWriter.open(direct, FileUtil.PAY_STUB_HEADER);
+                RecordWriter behindWriter = RecordWriter.openWriteBehind(behind, false,
+                        FileUtil.PAY_STUB_HEADER, DurableCommit.BACKGROUND)) {
+            for (int i = 0; i < 200000; i++) {
+                String record = "Näme " + i + "," + i + ".25,1.00,2.00,3.00";
+                directWriter.write(record);
+                behindWriter.write(record);
+            }
+            behindWriter.flush();
+            assertEquals(Files.size(behind), behindWriter.bytesWritten());
+        }
+        assertArrayEquals(Files.readAllBytes(direct), Files.readAllBytes(behind));
+    }
+
+    @Test
+    void appendsGzipMembersReadAsOneFile() throws IOException {
+        Path file = tempDir.resolve("pay_stubs.csv.gz");
+        try (RecordWriter writer = RecordWriter.append(file, FileUtil.PAY_STUB_HEADER)) {
+            writer.write("Luffy,1102.24,322.76,21102.24,4852.76");
+        }
+        try (RecordWriter writer = RecordWriter.append(file, FileUtil.PAY_STUB_HEADER)) {
+            writer.write("Zoë,1.0,2.0,3.0,4.0");
+        }
+        assertEquals(List.of("Luffy,1102.24,322.76,21102.24,4852.76", "Zoë,1.0,2.0,3.0,4.0"),
+                FileUtil.readFileToList(file.toString()));
+    }
+
+    @Test
+    void poolKeepsNoMoreThanItsCap() throws IOException {
+        List<RecordWriter> writers = new ArrayList<>();
+        for (int i = 0; i < RecordWriter.MAX_POOLED + 8; i++) {
+            writers.add(RecordWriter.open(tempDir.resolve("out_" + i + ".csv"),
+                    FileUtil.PAY_STUB_HEADER));
+        }
+        for (RecordWriter writer : writers) {
+            writer.close();
+        }
+        assertEquals(RecordWriter.MAX_POOLED, RecordWriter.pooledBuffers());
+    }
+}
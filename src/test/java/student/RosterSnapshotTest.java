@@ -0,0 +1,82 @@
+package student;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RosterSnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void loadReturnsSavedTable() throws IOException {
+        Path employees = tempDir.resolve("employees.csv");
+        Files.write(employees, List.of(FileUtil.EMPLOYEE_HEADER,
+                "HOURLY,Luffy,s192,30.00,0,20000,4530",
+                "SALARY,\"Yagami, Light\",s194,200000.5,1000,17017.25,4983.01",
+                "HOURLY,Zoë,s195,18.75,12.5,0,0"));
+        EmployeeTable table = EmployeeTable.read(employees.toString());
+        Path snapshot = tempDir.resolve("roster.bin");
+        RosterSnapshot.write(table, snapshot, employees);
+
+        EmployeeTable loaded = RosterSnapshot.load(snapshot, employees);
+        assertNotNull(loaded);
+        assertEquals(table.size(), loaded.size());
+        for (int row = 0; row < table.size(); row++) {
+            assertEquals(table.toCSV(row), loaded.toCSV(row));
+        }
+        assertEquals(table.view(0).runPayroll(45).toCSV(), loaded.view(0).runPayroll(45).toCSV());
+        assertFalse(Files.exists(tempDir.resolve("roster.bin.tmp")));
+    }
+
+    @Test
+    void loadIgnoresStaleOrMissingSnapshot() throws IOException {
+        Path employees = tempDir.resolve("employees.csv");
+        Files.write(employees, List.of(FileUtil.EMPLOYEE_HEADER,
+                "HOURLY,Luffy,s192,30.00,0,20000,4530"));
+        Path snapshot = tempDir.resolve("roster.bin");
+        assertNull(RosterSnapshot.load(snapshot, employees));
+
+        RosterSnapshot.write(EmployeeTable.read(employees.toString()), snapshot, employees);
+        Files.setLastModifiedTime(employees, FileTime.fromMillis(
+                Files.getLastModifiedTime(employees).toMillis() + 1000));
+        assertNull(RosterSnapshot.load(snapshot, employees));
+
+        Files.write(snapshot, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16,
+            17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32, 33, 34, 35, 36});
+        assertNull(RosterSnapshot.load(snapshot, employees));
+    }
+
+    @Test
+    void tablePayrollMatchesStreamingPayroll() throws IOException {
+        List<String> employeeLines = List.of(FileUtil.EMPLOYEE_HEADER,
+                "HOURLY,Luffy,s192,30.00,0,20000,4530",
+                "SALARY,Nami,s193,200000,1000,17017,4983",
+                "HOURLY,Zoro,s194,22.5,10,100,20");
+        Path timeCards = tempDir.resolve("time_cards.csv");
+        Files.write(timeCards, List.of("employee_id,hours_worked", "s192,45", "s193,-1",
+                "s194,38.5"));
+        Path streamed = tempDir.resolve("streamed.csv");
+        Path tabled = tempDir.resolve("tabled.csv");
+        Files.write(streamed, employeeLines);
+        Files.write(tabled, employeeLines);
+        Path snapshot = tempDir.resolve("roster.bin");
+
+        for (int run = 0; run < 2; run++) { // the second run loads the snapshot
+            StreamingPayroll.run(streamed.toString(), timeCards.toString(),
+                    tempDir.resolve("streamed_stubs.csv").toString());
+            TablePayroll.run(tabled.toString(), timeCards.toString(),
+                    tempDir.resolve("tabled_stubs.csv").toString(), snapshot.toString(), 2);
+            assertNotNull(RosterSnapshot.load(snapshot, tabled));
+            assertEquals(Files.readAllLines(streamed), Files.readAllLines(tabled));
+            assertEquals(Files.readAllLines(tempDir.resolve("streamed_stubs.csv")),
+                    Files.readAllLines(tempDir.resolve("tabled_stubs.csv")));
+        }
+    }
+}
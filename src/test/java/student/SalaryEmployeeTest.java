@@ -71,4 +71,11 @@ class SalaryEmployeeTest {
         String expectedCSV = "SALARY,Nami,s193,200000.00,1000.00,17017.00,4983.00";
         assertEquals(expectedCSV, employee.toCSV());
     }
+
+    @Test
+    void concurrentPayrollLosesNoPay() throws Exception {
+        SalaryEmployee shared = new SalaryEmployee("Nami", "s193", 200000.00, 17017.00, 4983.00, 1000);
+        SalaryEmployee serial = new SalaryEmployee("Nami", "s193", 200000.00, 17017.00, 4983.00, 1000);
+        ConcurrentPayroll.assertLosesNoPay(shared, serial, 0);
+    }
 }
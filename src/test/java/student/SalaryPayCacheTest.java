@@ -0,0 +1,57 @@
+package student;
+
+import org.junit.jupiter.api.Test;
+import java.math.BigDecimal;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SalaryPayCacheTest {
+
+    @Test
+    void sameBandHitsAndMatchesComputedPay() {
+        SalaryPayCache cache = new SalaryPayCache(16);
+        SalaryPayCache.Entry first = cache.pay(200000, 1000);
+        SalaryPayCache.Entry second = cache.pay(200000, 1000);
+        assertSame(first, second);
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+
+        long netBeforeTax = Money.salaryNetBeforeTax(200000, 1000);
+        assertEquals(Money.netCents(netBeforeTax, Money.SALARY_SCALE), first.netPay);
+        assertEquals(Money.taxCents(netBeforeTax, Money.SALARY_SCALE), first.taxes);
+    }
+
+    @Test
+    void inexactInputsUseBigDecimal() {
+        SalaryPayCache cache = new SalaryPayCache(16);
+        SalaryPayCache.Entry pay = cache.pay(123456.78901, 0.123456);
+        BigDecimal exact = Money.salaryNetBeforeTaxExact(123456.78901, 0.123456);
+        assertEquals(Money.netCents(exact), pay.netPay);
+        assertEquals(Money.taxCents(exact), pay.taxes);
+    }
+
+    @Test
+    void newTaxTableMisses() {
+        SalaryPayCache cache = new SalaryPayCache(16);
+        SalaryPayCache.Entry flat = cache.pay(240000, 0);
+        TaxTable.setActive(TaxTable.flat(0.1));
+        try {
+            SalaryPayCache.Entry tenPercent = cache.pay(240000, 0);
+            assertEquals(2, cache.misses());
+            assertEquals(100000, tenPercent.taxes);
+            assertEquals(226500, flat.taxes);
+        } finally {
+            TaxTable.setActive(TaxTable.FLAT);
+        }
+    }
+
+    @Test
+    void employeesInOneBandKeepTheirOwnYTD() {
+        IEmployee nami = new SalaryEmployee("Nami", "s193", 200000, 17017, 4983, 1000);
+        IEmployee robin = new SalaryEmployee("Robin", "s194", 200000, 0, 0, 1000);
+        IPayStub namiStub = nami.runPayroll(0);
+        IPayStub robinStub = robin.runPayroll(0);
+        assertEquals(namiStub.getPay(), robinStub.getPay());
+        assertEquals(17017 + namiStub.getPay(), nami.getYTDEarnings(), 0.001);
+        assertEquals(robinStub.getPay(), robin.getYTDEarnings(), 0.001);
+    }
+}
@@ -0,0 +1,166 @@
+package student;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import student.ShardedPayroll.Role;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedPayrollTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final List<String> employeeLines = TestRosters.employees(3000, 0);
+
+    private final List<String> timeCardLines = TestRosters.timeCards(3000, 0);
+
+    /** Runs payroll on the roster in one process, returning the stubs and employees. */
+    private List<List<String>> streamingRun() throws IOException {
+        Path employees = tempDir.resolve("streaming.csv");
+        Path timeCards = tempDir.resolve("streaming_cards.csv");
+        Path payStubs = tempDir.resolve("streaming_stubs.csv");
+        Files.write(employees, employeeLines);
+        Files.write(timeCards, timeCardLines);
+        StreamingPayroll.run(employees.toString(), timeCards.toString(), payStubs.toString());
+        return List.of(Files.readAllLines(payStubs), Files.readAllLines(employees));
+    }
+
+    /** Runs payroll for every shard in this process, as a child process would. */
+    private static void runShardsHere(Path employees, Path timeCards, Path payStubs,
+            String shardDir, int shards) {
+        for (int shard = 0; shard < shards; shard++) {
+            String employeeShard =
+                    ShardedPayroll.shardFile(shardDir, Role.EMPLOYEES, employees.toString(), shard);
+            String cardShard = ShardedPayroll.shardFile(shardDir, Role.TIME_CARDS,
+                    timeCards.toString(), shard);
+            String payStubShard =
+                    ShardedPayroll.shardFile(shardDir, Role.PAY_STUBS, payStubs.toString(), shard);
+            assertTrue(StreamingPayroll.run(employeeShard, cardShard, payStubShard));
+        }
+    }
+
+    @Test
+    void splitRunAndMergeMatchesOneRun() throws IOException {
+        Path employees = tempDir.resolve("employees.csv");
+        Path timeCards = tempDir.resolve("time_cards.csv");
+        Path payStubs = tempDir.resolve("pay_stubs.csv");
+        Files.write(employees, employeeLines);
+        Files.write(timeCards, timeCardLines);
+        String shardDir = ShardedPayroll.shardDir(employees.toString());
+        int shards = 4;
+
+        assertTrue(ShardedPayroll.split(employees.toString(), timeCards.toString(),
+                payStubs.toString(), shardDir, shards));
+        runShardsHere(employees, timeCards, payStubs, shardDir, shards);
+        assertTrue(ShardedPayroll.merge(employees.toString(), timeCards.toString(),
+                payStubs.toString(), shardDir, shards));
+
+        List<List<String>> expected = streamingRun();
+        assertEquals(expected.get(0), Files.readAllLines(payStubs));
+        assertEquals(expected.get(1), Files.readAllLines(employees));
+    }
+
+    @Test
+    void inputsWithTheSameNameGetShardFilesOfTheirOwn() throws IOException {
+        Files.createDirectories(tempDir.resolve("roster"));
+        Files.createDirectories(tempDir.resolve("cards"));
+        Path employees = tempDir.resolve("roster").resolve("week1.csv");
+        Path timeCards = tempDir.resolve("cards").resolve("week1.csv");
+        Path payStubs = tempDir.resolve("week1.csv");
+        Files.write(employees, employeeLines);
+        Files.write(timeCards, timeCardLines);
+        String shardDir = tempDir.resolve("shards").toString();
+
+        assertTrue(ShardedPayroll.split(employees.toString(), timeCards.toString(),
+                payStubs.toString(), shardDir, 2));
+        runShardsHere(employees, timeCards, payStubs, shardDir, 2);
+        assertTrue(ShardedPayroll.merge(employees.toString(), timeCards.toString(),
+                payStubs.toString(), shardDir, 2));
+
+        List<List<String>> expected = streamingRun();
+        assertEquals(expected.get(0), Files.readAllLines(payStubs));
+        assertEquals(expected.get(1), Files.readAllLines(employees));
+        assertEquals(Path.of(shardDir, "time_cards_1.csv").toString(),
+                ShardedPayroll.shardFile(shardDir, Role.TIME_CARDS, timeCards.toString(), 1));
+    }
+
+    @Test
+    void runInChildProcessesMatchesOneRun() throws IOException {
+        Path employees = tempDir.resolve("employees.csv");
+        Path timeCards = tempDir.resolve("time_cards.csv");
+        Path payStubs = tempDir.resolve("pay_stubs.csv");
+        Path stats = tempDir.resolve("stats.jsonl");
+        Files.write(employees, employeeLines);
+        Files.write(timeCards, timeCardLines);
+        String shardDir = ShardedPayroll.shardDir(employees.toString());
+
+        // three shards, no more than two running at once, each adding its own line of stats
+        assertTrue(ShardedPayroll.split(employees.toString(), timeCards.toString(),
+                payStubs.toString(), shardDir, 3));
+        assertTrue(ShardedPayroll.runShards(employees.toString(), timeCards.toString(),
+                payStubs.toString(), shardDir, 3, List.of("-s", stats.toString()), 2));
+        assertTrue(ShardedPayroll.merge(employees.toString(), timeCards.toString(),
+                payStubs.toString(), shardDir, 3));
+
+        List<List<String>> expected = streamingRun();
+        assertEquals(expected.get(0), Files.readAllLines(payStubs));
+        assertEquals(expected.get(1), Files.readAllLines(employees));
+        assertEquals(3, Files.readAllLines(stats).size());
+    }
+
+    @Test
+    void mergeRejectsAShardThatLostAPayStub() throws IOException {
+        Path employees = tempDir.resolve("employees.csv");
+        Path timeCards = tempDir.resolve("time_cards.csv");
+        Path payStubs = tempDir.resolve("pay_stubs.csv");
+        Files.write(employees, employeeLines);
+        Files.write(timeCards, timeCardLines);
+        String shardDir = ShardedPayroll.shardDir(employees.toString());
+
+        assertTrue(ShardedPayroll.split(employees.toString(), timeCards.toString(),
+                payStubs.toString(), shardDir, 2));
+        runShardsHere(employees, timeCards, payStubs, shardDir, 2);
+        Path shardStubs =
+                Path.of(ShardedPayroll.shardFile(shardDir, Role.PAY_STUBS, payStubs.toString(), 1));
+        List<String> stubs = Files.readAllLines(shardStubs);
+        stubs.remove(stubs.size() - 1);
+        Files.write(shardStubs, stubs);
+
+        assertFalse(ShardedPayroll.merge(employees.toString(), timeCards.toString(),
+                payStubs.toString(), shardDir, 2));
+        assertEquals(employeeLines, Files.readAllLines(employees));
+        assertFalse(Files.exists(payStubs));
+    }
+
+    @Test
+    void everyCardIsInItsEmployeesShard() throws IOException {
+        Path employees = tempDir.resolve("employees.csv");
+        Path timeCards = tempDir.resolve("time_cards.csv");
+        Files.write(employees, employeeLines);
+        Files.write(timeCards, timeCardLines);
+        String shardDir = tempDir.resolve("shards").toString();
+
+        assertTrue(ShardedPayroll.split(employees.toString(), timeCards.toString(),
+                tempDir.resolve("pay_stubs.csv").toString(), shardDir, 3));
+        int employeeCount = 0;
+        int cardCount = 0;
+        for (int shard = 0; shard < 3; shard++) {
+            for (String line : FileUtil.readFileToList(ShardedPayroll.shardFile(shardDir,
+                    Role.EMPLOYEES, employees.toString(), shard))) {
+                assertEquals(shard, ShardedPayroll.shardOf(line.split(",")[2], 3));
+                employeeCount++;
+            }
+            for (String line : FileUtil.readFileToList(ShardedPayroll.shardFile(shardDir,
+                    Role.TIME_CARDS, timeCards.toString(), shard))) {
+                assertEquals(shard, ShardedPayroll.shardOf(line.split(",")[0], 3));
+                cardCount++;
+            }
+        }
+        assertEquals(employeeLines.size() - 1, employeeCount);
+        assertEquals(timeCardLines.size() - 1, cardCount);
+    }
+}
@@ -0,0 +1,105 @@
+package student;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SortMergePayrollTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void matchesHashJoinWhenSpilling() throws IOException {
+        List<String> employeeLines = TestRosters.employees(20000, 0);
+        List<String> timeCardLines = TestRosters.timeCards(20000, 0);
+        employeeLines.remove(0);
+        timeCardLines.remove(0);
+        Collections.shuffle(employeeLines, new Random(11));
+        Collections.shuffle(timeCardLines, new Random(12));
+        assertOutputsMatch(employeeLines, timeCardLines, 1 << 20);
+
+        Collections.sort(employeeLines, (a, b) -> a.split(",")[2].compareTo(b.split(",")[2]));
+        assertOutputsMatch(employeeLines, timeCardLines, 1 << 20);
+    }
+
+    @Test
+    void sumsDuplicateTimeCards() throws IOException {
+        Path employees = tempDir.resolve("employees.csv");
+        Path timeCards = tempDir.resolve("time_cards.csv");
+        Path payStubs = tempDir.resolve("pay_stubs.csv");
+        Files.write(employees, List.of(FileUtil.EMPLOYEE_HEADER,
+                "HOURLY,Luffy,s192,30.00,0,20000,4530",
+                "HOURLY,Zoro,s100,30.00,0,20000,4530"));
+        Files.write(timeCards, List.of("employee_id,hours_worked", "s192,20", "s100,45",
+                "s192,-10", "s192,25", "s100,-1")); // negative cards are skipped, not added
+        SortMergePayroll.run(employees.toString(), timeCards.toString(), payStubs.toString(),
+                1 << 20);
+        assertEquals(List.of(FileUtil.PAY_STUB_HEADER, "Luffy,1102.24,322.76,21102.24,4852.76",
+                "Zoro,1102.24,322.76,21102.24,4852.76"), Files.readAllLines(payStubs));
+    }
+
+    @Test
+    void externalSorterMergesRuns() throws IOException {
+        Random random = new Random(13);
+        List<String> keys = new ArrayList<>();
+        try (ExternalSorter sorter = new ExternalSorter(tempDir, 4096)) {
+            for (int i = 0; i < 5000; i++) {
+                String key = "k" + random.nextInt(1000);
+                keys.add(key);
+                sorter.add(key, i, "payload " + i);
+            }
+            assertTrue(sorter.runCount() > 1);
+            Collections.sort(keys);
+            Iterator<ExternalSorter.Record> sorted = sorter.sorted();
+            ExternalSorter.Record previous = null;
+            for (String key : keys) {
+                ExternalSorter.Record record = sorted.next();
+                assertEquals(key, record.key);
+                assertEquals("payload " + record.seq, record.payload);
+                if (previous != null && previous.key.equals(record.key)) {
+                    assertTrue(previous.seq < record.seq);
+                }
+                previous = record;
+            }
+            assertFalse(sorted.hasNext());
+        }
+        try (var files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private void assertOutputsMatch(List<String> employeeLines, List<String> timeCardLines,
+            long memoryBudget) throws IOException {
+        Path timeCards = tempDir.resolve("time_cards.csv");
+        List<String> cards = new ArrayList<>(List.of("employee_id,hours_worked"));
+        cards.addAll(timeCardLines);
+        Files.write(timeCards, cards);
+        List<String> roster = new ArrayList<>(List.of(FileUtil.EMPLOYEE_HEADER));
+        roster.addAll(employeeLines);
+
+        Path hashed = tempDir.resolve("hashed.csv");
+        Path merged = tempDir.resolve("merged.csv");
+        Files.write(hashed, roster);
+        Files.write(merged, roster);
+        StreamingPayroll.run(hashed.toString(), timeCards.toString(),
+                tempDir.resolve("hashed_stubs.csv").toString());
+        SortMergePayroll.run(merged.toString(), timeCards.toString(),
+                tempDir.resolve("merged_stubs.csv").toString(), memoryBudget);
+
+        assertEquals(Files.readAllLines(hashed), Files.readAllLines(merged));
+        assertEquals(Files.readAllLines(tempDir.resolve("hashed_stubs.csv")),
+                Files.readAllLines(tempDir.resolve("merged_stubs.csv")));
+        try (var files = Files.list(tempDir)) {
+            assertTrue(files.noneMatch(f -> f.getFileName().toString().startsWith("payroll-run")));
+        }
+    }
+}
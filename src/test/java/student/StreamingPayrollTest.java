@@ -0,0 +1,185 @@
+package student;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingPayrollTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void runWritesStubsAndUpdatesEmployees() throws IOException {
+        Path employees = tempDir.resolve("employees.csv");
+        Path timeCards = tempDir.resolve("time_cards.csv");
+        Path payStubs = tempDir.resolve("pay_stubs.csv");
+        Files.write(employees, List.of(FileUtil.EMPLOYEE_HEADER,
+                "HOURLY,Luffy,s192,30.00,0,20000,4530",
+                "SALARY,Nami,s193,200000,1000,17017,4983"));
+        Files.write(timeCards, List.of("employee_id,hours_worked", "s192,45"));
+
+        assertTrue(StreamingPayroll.run(employees.toString(), timeCards.toString(),
+                payStubs.toString()));
+
+        assertEquals(List.of(FileUtil.PAY_STUB_HEADER, "Luffy,1102.24,322.76,21102.24,4852.76"),
+                Files.readAllLines(payStubs));
+        assertEquals(List.of(FileUtil.EMPLOYEE_HEADER,
+                "HOURLY,Luffy,s192,30.00,0.00,21102.24,4852.76",
+                "SALARY,Nami,s193,200000.00,1000.00,17017.00,4983.00"),
+                Files.readAllLines(employees));
+        assertTrue(Files.exists(tempDir.resolve("employees.csv.bak")));
+        assertFalse(Files.exists(tempDir.resolve("employees.csv.tmp")));
+    }
+
+    @Test
+    void failedRunReportsFailureAndChangesNothing() throws IOException {
+        Path employees = tempDir.resolve("employees.csv");
+        Path timeCards = tempDir.resolve("time_cards.csv");
+        List<String> roster = List.of(FileUtil.EMPLOYEE_HEADER,
+                "HOURLY,Luffy,s192,30.00,0.00,20000.00,4530.00");
+        Files.write(employees, roster);
+        Files.write(timeCards, List.of("employee_id,hours_worked", "s192,45"));
+
+        // the pay stubs can't be staged in a directory that doesn't exist
+        assertFalse(StreamingPayroll.run(employees.toString(), timeCards.toString(),
+                tempDir.resolve("missing").resolve("pay_stubs.csv").toString()));
+
+        assertEquals(roster, Files.readAllLines(employees));
+        assertFalse(Files.exists(tempDir.resolve("employees.csv.tmp")));
+    }
+
+    @Test
+    void invalidEmployeeStopsAStrictRunAndChangesNothing() throws IOException {
+        Path employees = tempDir.resolve("employees.csv");
+        Path timeCards = tempDir.resolve("time_cards.csv");
+        Path payStubs = tempDir.resolve("pay_stubs.csv");
+        List<String> roster = List.of(FileUtil.EMPLOYEE_HEADER,
+                "HOURLY,Luffy,s192,30.00,0.00,20000.00,4530.00", "HOURLY,Zoro,s100,abc,0,0,0");
+        Files.write(employees, roster);
+        Files.write(timeCards, List.of("employee_id,hours_worked", "s192,45"));
+
+        assertThrows(IllegalArgumentException.class, () -> StreamingPayroll.run(
+                employees.toString(), timeCards.toString(), payStubs.toString()));
+
+        assertEquals(roster, Files.readAllLines(employees));
+        assertFalse(Files.exists(payStubs));
+        assertFalse(Files.exists(tempDir.resolve("employees.csv.tmp")));
+        assertFalse(Files.exists(tempDir.resolve("pay_stubs.csv.tmp")));
+    }
+
+    @Test
+    void runReadsAndWritesGzipFiles() throws IOException {
+        Path employees = tempDir.resolve("employees.csv.gz");
+        Path timeCards = tempDir.resolve("time_cards.csv.gz");
+        Path payStubs = tempDir.resolve("pay_stubs.csv.gz");
+        try (RecordWriter writer = RecordWriter.open(employees, FileUtil.EMPLOYEE_HEADER)) {
+            writer.write("HOURLY,Luffy,s192,30.00,0,20000,4530");
+            writer.write("SALARY,Nami,s193,200000,1000,17017,4983");
+        }
+        try (RecordWriter writer = RecordWriter.open(timeCards, "employee_id,hours_worked")) {
+            writer.write("s192,45");
+        }
+
+        StreamingPayroll.run(employees.toString(), timeCards.toString(), payStubs.toString());
+
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(payStubs))) {
+            assertEquals(FileUtil.PAY_STUB_HEADER + "\nLuffy,1102.24,322.76,21102.24,4852.76\n",
+                    new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals(List.of("HOURLY,Luffy,s192,30.00,0.00,21102.24,4852.76",
+                "SALARY,Nami,s193,200000.00,1000.00,17017.00,4983.00"),
+                FileUtil.readFileToList(employees.toString()));
+    }
+
+    @Test
+    void parallelRunMatchesSequentialRun() throws IOException {
+        List<String> employeeLines = TestRosters.employees(20000, 0);
+        List<String> timeCardLines = TestRosters.timeCards(20000, 0);
+        Path timeCards = tempDir.resolve("time_cards.csv");
+        Files.write(timeCards, timeCardLines);
+
+        List<List<String>> outputs = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (ForkJoinPool computeOn : new ForkJoinPool[] {null, pool}) {
+                String name = computeOn == null ? "serial" : "parallel";
+                Path employees = tempDir.resolve("employees_" + name + ".csv");
+                Path payStubs = tempDir.resolve("pay_stubs_" + name + ".csv");
+                Files.write(employees, employeeLines);
+                StreamingPayroll.run(employees.toString(), timeCards.toString(),
+                        payStubs.toString(), computeOn, PayrollMetrics.DISABLED, null);
+                outputs.add(Files.readAllLines(employees));
+                outputs.add(Files.readAllLines(payStubs));
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(outputs.get(0), outputs.get(2));
+        assertEquals(outputs.get(1), outputs.get(3));
+    }
+
+    @Test
+    void runSumsSplitShiftCards() throws IOException {
+        Path employees = tempDir.resolve("employees.csv");
+        Path timeCards = tempDir.resolve("time_cards.csv");
+        Path payStubs = tempDir.resolve("pay_stubs.csv");
+        Files.write(employees, List.of(FileUtil.EMPLOYEE_HEADER,
+                "HOURLY,Luffy,s192,30.00,0,20000,4530"));
+        Files.write(timeCards, List.of("employee_id,hours_worked", "s192,30", "s192,15"));
+
+        StreamingPayroll.run(employees.toString(), timeCards.toString(), payStubs.toString());
+
+        assertEquals(List.of(FileUtil.PAY_STUB_HEADER, "Luffy,1102.24,322.76,21102.24,4852.76"),
+                Files.readAllLines(payStubs));
+    }
+
+    @Test
+    void paySkipsMissingAndNegativeHours() {
+        IEmployee employee = new HourlyEmployee("Luffy", "s192", 30.00, 20000.00, 4530.00, 0);
+        assertNull(StreamingPayroll.pay(employee, null));
+        assertNull(StreamingPayroll.pay(employee, -1.0));
+        assertNotNull(StreamingPayroll.pay(employee, 0.0));
+    }
+
+    @Test
+    void lenientRunRejectsInvalidEmployeesAndPaysTheRest() throws IOException {
+        Path employees = tempDir.resolve("employees.csv");
+        Path timeCards = tempDir.resolve("time_cards.csv");
+        Path payStubs = tempDir.resolve("pay_stubs.csv");
+        Path rejects = tempDir.resolve("rejects.csv");
+        Files.write(employees, List.of(FileUtil.EMPLOYEE_HEADER,
+                "HOURLY,Luffy,s192,30.00,0,20000,4530",
+                "CONTRACT,Zoro,s194,1,0,0,0",
+                "SALARY,Nami,s193,lots,1000,17017,4983"));
+        Files.write(timeCards, List.of("employee_id,hours_worked", "s192,45", "s193"));
+
+        StreamingPayroll.run(employees.toString(), timeCards.toString(), payStubs.toString(),
+                null, PayrollMetrics.DISABLED, rejects.toString());
+
+        assertEquals(List.of(FileUtil.PAY_STUB_HEADER, "Luffy,1102.24,322.76,21102.24,4852.76"),
+                Files.readAllLines(payStubs));
+        assertEquals(List.of(FileUtil.EMPLOYEE_HEADER,
+                "HOURLY,Luffy,s192,30.00,0.00,21102.24,4852.76",
+                "CONTRACT,Zoro,s194,1,0,0,0",
+                "SALARY,Nami,s193,lots,1000,17017,4983"),
+                Files.readAllLines(employees));
+        assertEquals(List.of(RejectSink.HEADER,
+                timeCards + ",3,Wrong number of fields: 1,s193",
+                employees + ",3,Unknown employee type: CONTRACT,\"CONTRACT,Zoro,s194,1,0,0,0\"",
+                employees + ",4,Not a number in field 4: lots,"
+                        + "\"SALARY,Nami,s193,lots,1000,17017,4983\""),
+                Files.readAllLines(rejects));
+        assertFalse(Files.exists(tempDir.resolve("rejects.csv.tmp")));
+    }
+}
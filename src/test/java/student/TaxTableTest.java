@@ -0,0 +1,100 @@
+package student;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaxTableTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Writes a rules file and compiles it.
+     */
+    private TaxTable rules(String... lines) throws IOException {
+        Path file = tempDir.resolve("tax_rules.csv");
+        Files.write(file, List.of(lines));
+        return TaxTable.read(file.toString());
+    }
+
+    @Test
+    void flatTableMatchesFlatRate() {
+        Random random = new Random(2265);
+        for (int i = 0; i < 100000; i++) {
+            long netBeforeTax = random.nextLong() % 10_000_000_000_000L; // +-$10,000 at 9 places
+            BigDecimal exact = BigDecimal.valueOf(netBeforeTax, Money.HOURLY_SCALE);
+            BigDecimal taxes = exact.multiply(BigDecimal.valueOf(Money.TAX_RATE));
+            assertEquals(taxes.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue(),
+                    TaxTable.FLAT.taxCents(netBeforeTax, Money.HOURLY_SCALE));
+            assertEquals(exact.subtract(taxes).setScale(2, RoundingMode.HALF_UP).unscaledValue()
+                    .longValue(), TaxTable.FLAT.netCents(netBeforeTax, Money.HOURLY_SCALE));
+        }
+        assertEquals(1, TaxTable.FLAT.brackets());
+    }
+
+    @Test
+    void progressiveBracketsAndCaps() throws IOException {
+        TaxTable table = rules(TaxTable.RULES_HEADER, "federal,0,0.10,", "federal,500.00,0.15,",
+                "state,0,0.05,", "social_security,0,0.062,3000.00", "medicare,0,0.0145,");
+        // 500 * 0.10 + 500 * 0.15 + 1000 * (0.05 + 0.062 + 0.0145)
+        assertEquals(25150, table.taxCents(100_000L * 10_000_000L, Money.HOURLY_SCALE));
+        assertEquals(74850, table.netCents(100_000L * 10_000_000L, Money.HOURLY_SCALE));
+        // above the social security cap only 186 of it is paid
+        assertEquals(50 * 100 + 3500 * 15 + 4000 * 5 + 18600 + 4000 * 145 / 100,
+                table.taxCents(400_000L * 100_000_000L, Money.SALARY_SCALE));
+        // negative pay is taxed at the lowest rates
+        assertEquals(-226500, table.taxCents(-10_000L * 10_000_000_000L, Money.SALARY_SCALE));
+        assertEquals(3, table.brackets());
+    }
+
+    @Test
+    void longAndBigDecimalAgree() throws IOException {
+        TaxTable table = rules(TaxTable.RULES_HEADER, "a,0,0.1,", "a,100,0.2,", "a,1000,0.35,",
+                "b,50.50,0.0125,750.25", "c,0,0.03,");
+        Random random = new Random(18);
+        for (int i = 0; i < 100000; i++) {
+            long netBeforeTax = random.nextLong() % 900_000_000_000_000L; // within Money.limit
+            BigDecimal exact = BigDecimal.valueOf(netBeforeTax, Money.SALARY_SCALE);
+            BigDecimal taxes = table.tax(exact);
+            assertEquals(Money.cents(taxes), table.taxCents(netBeforeTax, Money.SALARY_SCALE));
+            assertEquals(Money.cents(exact.subtract(taxes)),
+                    table.netCents(netBeforeTax, Money.SALARY_SCALE));
+        }
+    }
+
+    @Test
+    void activeTableIsUsedForPayroll() throws IOException {
+        TaxTable table = rules(TaxTable.RULES_HEADER, "federal,0,0.10,");
+        assertNotEquals(TaxTable.FLAT.version(), table.version());
+        TaxTable.setActive(table);
+        try {
+            IPayStub payStub = new SalaryEmployee("Nami", "s193", 240000, 0, 0, 0)
+                    .runPayroll(0);
+            assertEquals(1000.0, payStub.getTaxesPaid());
+            assertEquals(9000.0, payStub.getPay());
+        } finally {
+            TaxTable.setActive(TaxTable.FLAT);
+        }
+    }
+
+    @Test
+    void invalidRulesAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> rules(TaxTable.RULES_HEADER, "federal,0,0.12345,"));
+        assertThrows(IllegalArgumentException.class,
+                () -> rules(TaxTable.RULES_HEADER, "federal,0,0.6,", "state,0,0.5,"));
+        assertThrows(IllegalArgumentException.class,
+                () -> rules(TaxTable.RULES_HEADER, "federal,100,0.1,50"));
+        assertThrows(IllegalArgumentException.class,
+                () -> rules(TaxTable.RULES_HEADER, "federal,0"));
+        assertThrows(IllegalArgumentException.class, () -> rules(TaxTable.RULES_HEADER));
+    }
+}
@@ -0,0 +1,62 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the large rosters and time cards that the payroll tests use to compare one way of
+ * running payroll with another.
+ */
+final class TestRosters {
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private TestRosters() {
+
+    }
+
+    /**
+     * Builds the lines of an employee file. Even rows are hourly and odd rows are salaried,
+     * with IDs h0, s1, h2 and so on. Salaried YTD earnings have a half cent, so rounding is
+     * tested as well.
+     *
+     * @param count the number of employees
+     * @param variant changes the pay rates, so rosters built with different variants differ
+     * @return the header and then one line per employee, in a list that can be changed
+     */
+    static List<String> employees(int count, int variant) {
+        List<String> lines = new ArrayList<>(List.of(FileUtil.EMPLOYEE_HEADER));
+        for (int i = 0; i < count; i++) {
+            lines.add(i % 2 == 0
+                    ? "HOURLY,Hourly " + i + ",h" + i + "," + (15 + (i + variant) % 20)
+                            + ".25,0,1000,200"
+                    : "SALARY,Salary " + i + ",s" + i + "," + (50000 + i * (variant + 1))
+                            + ",250,1000.005,200");
+        }
+        return lines;
+    }
+
+    /**
+     * Builds the lines of a time card file for a roster from {@link #employees}. One
+     * employee in seven has no card, and one in eleven has a second card of zero or negative
+     * hours.
+     *
+     * @param count the number of employees in the roster
+     * @param variant changes the hours and who has no card, so files built with different
+     *         variants differ
+     * @return the header and then the cards, in a list that can be changed
+     */
+    static List<String> timeCards(int count, int variant) {
+        List<String> lines = new ArrayList<>(List.of("employee_id,hours_worked"));
+        for (int i = 0; i < count; i++) {
+            String id = (i % 2 == 0 ? "h" : "s") + i;
+            if (i % 7 != variant % 7) {
+                lines.add(id + "," + (i + variant) % 50 + ".5");
+            }
+            if (i % 11 == 0) {
+                lines.add(id + ",-" + (i % 3));
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,94 @@
+package student;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeCardIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void matchesHashMapAndGrows() {
+        Random random = new Random(1212);
+        TimeCardIndex index = new TimeCardIndex(4);
+        Map<String, Double> expected = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            String id = "e" + random.nextInt(60000);
+            double hours = random.nextInt(100) / 2.0;
+            index.add(id, hours);
+            expected.merge(id, hours, Double::sum);
+        }
+        assertEquals(expected.size(), index.size());
+        for (Map.Entry<String, Double> entry : expected.entrySet()) {
+            assertEquals((double) entry.getValue(), index.hours(entry.getKey()));
+        }
+        assertTrue(Double.isNaN(index.hours("missing")));
+        assertFalse(index.contains("missing"));
+    }
+
+    @Test
+    void readSumsDuplicatesAndPresizes() throws IOException {
+        Path timeCards = tempDir.resolve("time_cards.csv");
+        Files.write(timeCards, List.of("employee_id,hours_worked", "s192,4.5", "s193,40",
+                "s192,3.5", "\"x,1\",-2"));
+        TimeCardIndex index = TimeCardIndex.read(timeCards.toString());
+        assertEquals(3, index.size());
+        assertEquals(8.0, index.hours("s192"));
+        assertEquals(40.0, index.hours("s193"));
+        assertEquals(-2.0, index.hours("x,1"));
+        assertTrue(index.capacity() >= 2 * index.size());
+    }
+
+    @Test
+    void negativeCardsAreNotAddedToOtherShifts() {
+        TimeCardIndex index = new TimeCardIndex(8);
+        index.add("s192", 30);
+        index.add("s192", -10);
+        index.add("s192", 15);
+        index.add("s193", -5);
+        index.add("s193", 20);
+        index.add("s194", -5);
+        index.add("s194", -1);
+        assertEquals(45.0, index.hours("s192"));
+        assertEquals(20.0, index.hours("s193"));
+        assertEquals(-5.0, index.hours("s194")); // no valid card, so still skipped
+    }
+
+    @Test
+    void readRejectsInvalidRecords() throws IOException {
+        Path timeCards = tempDir.resolve("time_cards.csv");
+        Files.write(timeCards, List.of("employee_id,hours_worked", "s192,4.5,extra"));
+        assertThrows(IllegalArgumentException.class,
+                () -> TimeCardIndex.read(timeCards.toString()));
+    }
+
+    @Test
+    void lenientReadRejectsInvalidRecords() throws IOException {
+        Path timeCards = tempDir.resolve("time_cards.csv");
+        Path rejectsFile = tempDir.resolve("rejects.csv");
+        Files.write(timeCards, List.of("employee_id,hours_worked", "s192,4.5,extra", "s193,40",
+                "s194,many"));
+        TimeCardIndex index;
+        try (RejectSink rejects = new RejectSink(RecordWriter.open(rejectsFile,
+                RejectSink.HEADER))) {
+            index = TimeCardIndex.read(timeCards.toString(), rejects);
+            assertEquals(2, rejects.count());
+        }
+        assertEquals(1, index.size());
+        assertEquals(40.0, index.hours("s193"));
+        String file = timeCards.toString();
+        assertEquals(List.of(RejectSink.HEADER,
+                file + ",2,Wrong number of fields: 3,\"s192,4.5,extra\"",
+                file + ",4,Not a number in field 2: many,\"s194,many\""),
+                Files.readAllLines(rejectsFile));
+    }
+}
@@ -0,0 +1,127 @@
+package student;
+
+import org.junit.jupiter.api.Test;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class VectorPayKernelTest {
+
+    /**
+     * Builds a roster of hourly and salary rows with the awkward values mixed in: rates and
+     * deductions with too many places, pay large enough for BigDecimal, and so on.
+     */
+    private static EmployeeTable roster(Random random, int rows) {
+        EmployeeTable table = new EmployeeTable(rows);
+        for (int row = 0; row < rows; row++) {
+            String rate;
+            switch (random.nextInt(10)) {
+                case 0:
+                    rate = "12.34567"; // not exact at four places
+                    break;
+                case 1:
+                    rate = "123456789.25"; // overflows the fast path
+                    break;
+                case 2:
+                    rate = String.valueOf(random.nextInt(2_000_000)); // past the kernel's limit
+                    break;
+                default:
+                    rate = String.format("%d.%04d", random.nextInt(200), random.nextInt(10000));
+            }
+            String deductions = random.nextInt(8) == 0 ? "0.00001"
+                    : String.format("%d.%02d", random.nextInt(500), random.nextInt(100));
+            String type = random.nextInt(4) == 0 ? "SALARY" : "HOURLY";
+            table.addCSV(type + ",n" + row + ",id" + row + "," + rate + "," + deductions
+                    + ",1000.00,200.00");
+        }
+        return table;
+    }
+
+    private static double[] hours(Random random, int rows) {
+        double[] hours = new double[rows];
+        for (int row = 0; row < rows; row++) {
+            switch (random.nextInt(12)) {
+                case 0:
+                    hours[row] = Double.NaN;
+                    break;
+                case 1:
+                    hours[row] = -random.nextInt(10);
+                    break;
+                case 2:
+                    hours[row] = -0.0;
+                    break;
+                case 3:
+                    hours[row] = 40.00005; // not exact at four places
+                    break;
+                case 4:
+                    hours[row] = 2000 + random.nextInt(1_000_000); // past the kernel's limit
+                    break;
+                default:
+                    hours[row] = random.nextInt(8000) / 100.0;
+            }
+        }
+        return hours;
+    }
+
+    private static void assertKernelMatchesScalar(long seed) {
+        Random random = new Random(seed);
+        int rows = 5003; // not a multiple of any vector length, so there is a tail
+        EmployeeTable vector = roster(new Random(seed), rows);
+        EmployeeTable scalar = roster(new Random(seed), rows);
+        double[] hours = hours(random, rows);
+        long[] vectorNet = new long[rows];
+        long[] vectorTaxes = new long[rows];
+        long[] scalarNet = new long[rows];
+        long[] scalarTaxes = new long[rows];
+
+        for (int period = 0; period < 3; period++) {
+            vector.runPayrollVector(0, rows, hours, vectorNet, vectorTaxes,
+                    TaxTable.active().flatRate());
+            scalar.runPayrollScalar(0, rows, hours, scalarNet, scalarTaxes);
+            assertArrayEquals(scalarNet, vectorNet);
+            assertArrayEquals(scalarTaxes, vectorTaxes);
+        }
+        for (int row = 0; row < rows; row++) {
+            assertEquals(scalar.toCSV(row), vector.toCSV(row));
+        }
+    }
+
+    @Test
+    void kernelMatchesScalarPathBitForBit() {
+        assumeTrue(EmployeeTable.VECTOR_KERNEL, "jdk.incubator.vector is not available");
+        assertKernelMatchesScalar(2265);
+    }
+
+    @Test
+    void kernelMatchesScalarPathWithOtherFlatRates() {
+        assumeTrue(EmployeeTable.VECTOR_KERNEL, "jdk.incubator.vector is not available");
+        try {
+            for (double rate : new double[] {0, 0.0001, 0.3333, 1}) {
+                TaxTable.setActive(TaxTable.flat(rate));
+                assertKernelMatchesScalar(Double.doubleToLongBits(rate));
+            }
+        } finally {
+            TaxTable.setActive(TaxTable.FLAT);
+        }
+    }
+
+    @Test
+    void kernelPaysOrdinaryRowsItself() {
+        assumeTrue(EmployeeTable.VECTOR_KERNEL, "jdk.incubator.vector is not available");
+        int rows = 64;
+        EmployeeTable table = new EmployeeTable(rows);
+        double[] hours = new double[rows];
+        for (int row = 0; row < rows; row++) {
+            table.addCSV("HOURLY,n" + row + ",id" + row + ",30.00,0,20000,4530");
+            hours[row] = 45;
+        }
+        long[] netPay = new long[rows];
+        long[] taxesPaid = new long[rows];
+        VectorPayKernel.payHourly(table.types(), table.scaledRates(), table.scaledDeductions(),
+                hours, 0, rows, TaxTable.FLAT.flatRate(), netPay, taxesPaid);
+        for (int row = 0; row < rows; row++) {
+            assertEquals(110224, netPay[row]);
+            assertEquals(32276, taxesPaid[row]);
+        }
+    }
+}